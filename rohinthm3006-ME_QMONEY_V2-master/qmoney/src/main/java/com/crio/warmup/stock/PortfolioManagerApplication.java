@@ -4,6 +4,8 @@ import com.crio.warmup.stock.dto.*;
 import com.crio.warmup.stock.log.UncaughtExceptionHandler;
 import com.crio.warmup.stock.portfolio.PortfolioManager;
 import com.crio.warmup.stock.portfolio.PortfolioManagerFactory;
+import com.crio.warmup.stock.quotes.QuoteProviderConfig;
+import com.crio.warmup.stock.quotes.TiingoService;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -190,7 +192,8 @@ public class PortfolioManagerApplication {
 
     public static String prepareUrl(PortfolioTrade trade, LocalDate endDate, String token) {
         return String.format(
-                "https://api.tiingo.com/tiingo/daily/%s/prices?startDate=%s&endDate=%s&token=%s",
+                "%s/tiingo/daily/%s/prices?startDate=%s&endDate=%s&token=%s",
+                QuoteProviderConfig.get("tiingo.api.baseUrl", TiingoService.DEFAULT_BASE_URL),
                 trade.getSymbol(), trade.getPurchaseDate(), endDate, token);
     }
 
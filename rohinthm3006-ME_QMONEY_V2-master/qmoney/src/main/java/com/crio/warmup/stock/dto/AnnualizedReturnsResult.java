@@ -0,0 +1,30 @@
+
+package com.crio.warmup.stock.dto;
+
+import java.util.Collections;
+import java.util.List;
+
+public class AnnualizedReturnsResult {
+
+  private final List<AnnualizedReturn> annualizedReturns;
+  private final List<TradeFailure> failures;
+
+  public AnnualizedReturnsResult(List<AnnualizedReturn> annualizedReturns,
+      List<TradeFailure> failures) {
+    this.annualizedReturns = Collections.unmodifiableList(annualizedReturns);
+    this.failures = Collections.unmodifiableList(failures);
+  }
+
+  // Successful returns, sorted by annualized return in descending order.
+  public List<AnnualizedReturn> getAnnualizedReturns() {
+    return annualizedReturns;
+  }
+
+  public List<TradeFailure> getFailures() {
+    return failures;
+  }
+
+  public boolean isComplete() {
+    return failures.isEmpty();
+  }
+}
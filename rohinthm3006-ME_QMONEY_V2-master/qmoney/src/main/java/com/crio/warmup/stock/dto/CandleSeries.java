@@ -0,0 +1,314 @@
+package com.crio.warmup.stock.dto;
+
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * An immutable, date-sorted daily price series stored column by column: one {@code int[]} of
+ * epoch days and parallel {@code double[]} arrays for open, high, low and close.
+ *
+ * <p>A twenty year history is five arrays instead of tens of thousands of candle, {@code Double}
+ * and {@link LocalDate} objects. Dates are located by binary search, and {@link #slice} shares
+ * the arrays, so reading the first open and last close of a range allocates nothing per candle.
+ * Missing prices are {@code NaN}. {@link #asCandles()} adapts a series for code that expects a
+ * {@code List<Candle>}, and {@link #of} turns such a list back into the series without copying.
+ */
+public final class CandleSeries {
+
+  private static final CandleSeries EMPTY = new CandleSeries(new int[0], new double[0],
+      new double[0], new double[0], new double[0], 0, 0);
+
+  private final int[] epochDays;
+  private final double[] open;
+  private final double[] high;
+  private final double[] low;
+  private final double[] close;
+  private final int offset;
+  private final int size;
+
+  private CandleSeries(int[] epochDays, double[] open, double[] high, double[] low,
+      double[] close, int offset, int size) {
+    this.epochDays = epochDays;
+    this.open = open;
+    this.high = high;
+    this.low = low;
+    this.close = close;
+    this.offset = offset;
+    this.size = size;
+  }
+
+  public static CandleSeries empty() {
+    return EMPTY;
+  }
+
+  public static Builder builder(int expectedSize) {
+    return new Builder(expectedSize);
+  }
+
+  /**
+   * Returns the series behind a list from {@link #asCandles()}, or copies any other list of
+   * candles into a new series. Candles without a date are dropped and missing prices become
+   * {@code NaN}.
+   */
+  public static CandleSeries of(List<? extends Candle> candles) {
+    CandleSeries view = viewOf(candles);
+    if (view != null) {
+      return view;
+    }
+    if (candles == null || candles.isEmpty()) {
+      return EMPTY;
+    }
+    Builder builder = new Builder(candles.size());
+    for (Candle candle : candles) {
+      if (candle != null && candle.getDate() != null) {
+        builder.add(candle.getDate(), valueOf(candle.getOpen()), valueOf(candle.getHigh()),
+            valueOf(candle.getLow()), valueOf(candle.getClose()));
+      }
+    }
+    return builder.build();
+  }
+
+  /**
+   * Returns the candles of both series in date order. Where both hold a candle for the same day,
+   * the one from {@code newer} is kept, and of several in {@code newer} the last one.
+   */
+  public static CandleSeries merge(CandleSeries older, CandleSeries newer) {
+    if (newer.isEmpty()) {
+      return older;
+    }
+    Builder merged = new Builder(older.size + newer.size);
+    int i = 0;
+    int j = 0;
+    while (i < older.size || j < newer.size) {
+      long olderDay = i < older.size ? older.epochDay(i) : Long.MAX_VALUE;
+      long newerDay = j < newer.size ? newer.epochDay(j) : Long.MAX_VALUE;
+      if (olderDay < newerDay) {
+        merged.add(older.epochDay(i), older.open(i), older.high(i), older.low(i), older.close(i));
+        i++;
+      } else {
+        if (olderDay == newerDay) {
+          i++;
+        }
+        while (j + 1 < newer.size && newer.epochDay(j + 1) == newerDay) {
+          j++;
+        }
+        merged.add(newer.epochDay(j), newer.open(j), newer.high(j), newer.low(j), newer.close(j));
+        j++;
+      }
+    }
+    return merged.build();
+  }
+
+  // Returns the series behind a list from asCandles(), or null for any other list.
+  public static CandleSeries viewOf(List<?> candles) {
+    return candles instanceof CandleList ? ((CandleList) candles).series : null;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public int epochDay(int index) {
+    return epochDays[offset + checkIndex(index)];
+  }
+
+  public LocalDate getDate(int index) {
+    return LocalDate.ofEpochDay(epochDay(index));
+  }
+
+  public double open(int index) {
+    return open[offset + checkIndex(index)];
+  }
+
+  public double high(int index) {
+    return high[offset + checkIndex(index)];
+  }
+
+  public double low(int index) {
+    return low[offset + checkIndex(index)];
+  }
+
+  public double close(int index) {
+    return close[offset + checkIndex(index)];
+  }
+
+  /**
+   * Returns the index of the first candle on or after {@code date}, or {@link #size()} when
+   * every candle is before it.
+   */
+  public int indexOnOrAfter(LocalDate date) {
+    return lowerBound(date.toEpochDay());
+  }
+
+  /**
+   * Returns the index of the last candle on or before {@code date}, or -1 when every candle is
+   * after it.
+   */
+  public int indexOnOrBefore(LocalDate date) {
+    return lowerBound(date.toEpochDay() + 1) - 1;
+  }
+
+  // Returns the candles within from..to, both inclusive, sharing this series' arrays.
+  public CandleSeries slice(LocalDate from, LocalDate to) {
+    int start = indexOnOrAfter(from);
+    int end = indexOnOrBefore(to) + 1;
+    if (start == 0 && end == size) {
+      return this;
+    }
+    if (start >= end) {
+      return EMPTY;
+    }
+    return new CandleSeries(epochDays, open, high, low, close, offset + start, end - start);
+  }
+
+  /**
+   * Returns a read-only list view that creates a {@link DailyCandle} for each element as it is
+   * read.
+   */
+  public List<Candle> asCandles() {
+    return new CandleList(this);
+  }
+
+  private int lowerBound(long epochDay) {
+    int lowIndex = 0;
+    int highIndex = size;
+    while (lowIndex < highIndex) {
+      int mid = (lowIndex + highIndex) >>> 1;
+      if (epochDays[offset + mid] < epochDay) {
+        lowIndex = mid + 1;
+      } else {
+        highIndex = mid;
+      }
+    }
+    return lowIndex;
+  }
+
+  private int checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+    }
+    return index;
+  }
+
+  private static double valueOf(Double value) {
+    return value == null ? Double.NaN : value;
+  }
+
+  @Override
+  public String toString() {
+    return size == 0 ? "CandleSeries{}"
+        : "CandleSeries{" + size + " candles, " + getDate(0) + ".." + getDate(size - 1) + '}';
+  }
+
+  /**
+   * Collects candles in any order. Providers usually deliver them oldest or newest first, which
+   * {@link #build()} turns around without sorting. A builder hands its arrays to the series it
+   * builds, so it is used for one series only.
+   */
+  public static final class Builder {
+
+    private int[] epochDays;
+    private double[] open;
+    private double[] high;
+    private double[] low;
+    private double[] close;
+    private int size;
+    private boolean ascending = true;
+    private boolean descending = true;
+
+    private Builder(int expectedSize) {
+      int capacity = Math.max(expectedSize, 16);
+      epochDays = new int[capacity];
+      open = new double[capacity];
+      high = new double[capacity];
+      low = new double[capacity];
+      close = new double[capacity];
+    }
+
+    public Builder add(LocalDate date, double open, double high, double low, double close) {
+      return add(Math.toIntExact(date.toEpochDay()), open, high, low, close);
+    }
+
+    public Builder add(int epochDay, double open, double high, double low, double close) {
+      if (size == epochDays.length) {
+        int capacity = size + (size >> 1);
+        epochDays = Arrays.copyOf(epochDays, capacity);
+        this.open = Arrays.copyOf(this.open, capacity);
+        this.high = Arrays.copyOf(this.high, capacity);
+        this.low = Arrays.copyOf(this.low, capacity);
+        this.close = Arrays.copyOf(this.close, capacity);
+      }
+      if (size > 0) {
+        ascending &= epochDays[size - 1] <= epochDay;
+        descending &= epochDays[size - 1] >= epochDay;
+      }
+      epochDays[size] = epochDay;
+      this.open[size] = open;
+      this.high[size] = high;
+      this.low[size] = low;
+      this.close[size] = close;
+      size++;
+      return this;
+    }
+
+    public CandleSeries build() {
+      if (size == 0) {
+        return EMPTY;
+      }
+      if (ascending) {
+        return new CandleSeries(epochDays, open, high, low, close, 0, size);
+      }
+      // Sort an index by date, packing both into one long so that no boxing is needed
+      long[] order = new long[size];
+      for (int i = 0; i < size; i++) {
+        int index = descending ? size - 1 - i : i;
+        order[i] = ((long) epochDays[index] << 32) | index;
+      }
+      if (!descending) {
+        Arrays.sort(order);
+      }
+      int[] sortedDays = new int[size];
+      double[] sortedOpen = new double[size];
+      double[] sortedHigh = new double[size];
+      double[] sortedLow = new double[size];
+      double[] sortedClose = new double[size];
+      for (int i = 0; i < size; i++) {
+        int index = (int) order[i];
+        sortedDays[i] = epochDays[index];
+        sortedOpen[i] = open[index];
+        sortedHigh[i] = high[index];
+        sortedLow[i] = low[index];
+        sortedClose[i] = close[index];
+      }
+      return new CandleSeries(sortedDays, sortedOpen, sortedHigh, sortedLow, sortedClose, 0,
+          size);
+    }
+  }
+
+  private static final class CandleList extends AbstractList<Candle> implements RandomAccess {
+
+    private final CandleSeries series;
+
+    private CandleList(CandleSeries series) {
+      this.series = series;
+    }
+
+    @Override
+    public Candle get(int index) {
+      return new DailyCandle(series.getDate(index), series.open(index), series.high(index),
+          series.low(index), series.close(index));
+    }
+
+    @Override
+    public int size() {
+      return series.size;
+    }
+  }
+}
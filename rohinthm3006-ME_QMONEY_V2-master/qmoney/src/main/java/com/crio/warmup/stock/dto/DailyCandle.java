@@ -0,0 +1,57 @@
+
+package com.crio.warmup.stock.dto;
+
+import java.time.LocalDate;
+
+public class DailyCandle implements Candle {
+
+  private final LocalDate date;
+  private final double open;
+  private final double high;
+  private final double low;
+  private final double close;
+
+  public DailyCandle(LocalDate date, double open, double high, double low, double close) {
+    this.date = date;
+    this.open = open;
+    this.high = high;
+    this.low = low;
+    this.close = close;
+  }
+
+  @Override
+  public Double getOpen() {
+    return open;
+  }
+
+  @Override
+  public Double getClose() {
+    return close;
+  }
+
+  @Override
+  public Double getHigh() {
+    return high;
+  }
+
+  @Override
+  public Double getLow() {
+    return low;
+  }
+
+  @Override
+  public LocalDate getDate() {
+    return date;
+  }
+
+  @Override
+  public String toString() {
+    return "DailyCandle{"
+            + "open=" + open
+            + ", close=" + close
+            + ", high=" + high
+            + ", low=" + low
+            + ", date=" + date
+            + '}';
+  }
+}
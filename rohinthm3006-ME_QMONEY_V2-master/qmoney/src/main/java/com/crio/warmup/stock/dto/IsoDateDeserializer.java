@@ -0,0 +1,81 @@
+package com.crio.warmup.stock.dto;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+
+/**
+ * Reads the calendar date from an ISO-8601 date or timestamp, such as Tiingo's
+ * {@code 2019-01-02T00:00:00.000Z}, straight from the parser's buffer.
+ *
+ * <p>Going through {@code DateTimeFormatter} costs several objects per value, which added up to
+ * about half of what decoding a year of candles allocated.
+ */
+public class IsoDateDeserializer extends StdDeserializer<LocalDate> {
+
+  private static final long serialVersionUID = 1L;
+
+  public IsoDateDeserializer() {
+    super(LocalDate.class);
+  }
+
+  @Override
+  public LocalDate deserialize(JsonParser parser, DeserializationContext context)
+      throws IOException {
+    if (parser.currentToken() != JsonToken.VALUE_STRING) {
+      return (LocalDate) context.handleUnexpectedToken(LocalDate.class, parser);
+    }
+    LocalDate date;
+    try {
+      date = parse(CharBuffer.wrap(parser.getTextCharacters(), parser.getTextOffset(),
+          parser.getTextLength()));
+    } catch (DateTimeException e) {
+      return (LocalDate) context.handleWeirdStringValue(LocalDate.class, parser.getText(),
+          e.getMessage());
+    }
+    if (date == null) {
+      return (LocalDate) context.handleWeirdStringValue(LocalDate.class, parser.getText(),
+          "Expected an ISO-8601 date");
+    }
+    return date;
+  }
+
+  /**
+   * Returns the date at the start of {@code text}, or null when it does not start with
+   * {@code yyyy-MM-dd} followed by nothing or a time.
+   *
+   * @throws DateTimeException if the fields are out of range, such as February 30
+   */
+  public static LocalDate parse(CharSequence text) {
+    int length = text.length();
+    if (length < 10 || text.charAt(4) != '-' || text.charAt(7) != '-'
+        || (length > 10 && text.charAt(10) != 'T')) {
+      return null;
+    }
+    int year = digits(text, 0, 4);
+    int month = digits(text, 5, 2);
+    int day = digits(text, 8, 2);
+    if (year < 0 || month < 0 || day < 0) {
+      return null;
+    }
+    return LocalDate.of(year, month, day);
+  }
+
+  // Returns -1 when any of the characters is not a digit.
+  private static int digits(CharSequence text, int offset, int count) {
+    int value = 0;
+    for (int i = offset; i < offset + count; i++) {
+      char c = text.charAt(i);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+      value = value * 10 + (c - '0');
+    }
+    return value;
+  }
+}
@@ -0,0 +1,38 @@
+package com.crio.warmup.stock.dto;
+
+import java.time.LocalDate;
+
+// One symbol and date range of a batch quote request.
+public class QuoteRequest {
+
+  private final String symbol;
+  private final LocalDate from;
+  private final LocalDate to;
+
+  public QuoteRequest(String symbol, LocalDate from, LocalDate to) {
+    this.symbol = symbol;
+    this.from = from;
+    this.to = to;
+  }
+
+  public String getSymbol() {
+    return symbol;
+  }
+
+  public LocalDate getFrom() {
+    return from;
+  }
+
+  public LocalDate getTo() {
+    return to;
+  }
+
+  @Override
+  public String toString() {
+    return "QuoteRequest{"
+            + "symbol='" + symbol + '\''
+            + ", from=" + from
+            + ", to=" + to
+            + '}';
+  }
+}
@@ -2,6 +2,7 @@
 package com.crio.warmup.stock.dto;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import java.time.LocalDate;
 
 @JsonIgnoreProperties(ignoreUnknown = true)
@@ -11,6 +12,7 @@ public class TiingoCandle implements Candle {
   private Double close;
   private Double high;
   private Double low;
+  @JsonDeserialize(using = IsoDateDeserializer.class)
   private LocalDate date;
 
   @Override
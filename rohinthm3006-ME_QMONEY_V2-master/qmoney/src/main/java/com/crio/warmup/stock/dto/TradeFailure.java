@@ -0,0 +1,42 @@
+
+package com.crio.warmup.stock.dto;
+
+public class TradeFailure {
+
+  private final PortfolioTrade trade;
+  private final String message;
+  private final Throwable cause;
+  private final boolean timedOut;
+
+  public TradeFailure(PortfolioTrade trade, String message, Throwable cause, boolean timedOut) {
+    this.trade = trade;
+    this.message = message;
+    this.cause = cause;
+    this.timedOut = timedOut;
+  }
+
+  public PortfolioTrade getTrade() {
+    return trade;
+  }
+
+  public String getMessage() {
+    return message;
+  }
+
+  public Throwable getCause() {
+    return cause;
+  }
+
+  public boolean isTimedOut() {
+    return timedOut;
+  }
+
+  @Override
+  public String toString() {
+    return "TradeFailure{"
+            + "symbol=" + trade.getSymbol()
+            + ", message=" + message
+            + ", timedOut=" + timedOut
+            + '}';
+  }
+}
@@ -0,0 +1,13 @@
+package com.crio.warmup.stock.exception;
+
+// Thrown when a provider does not know the requested symbol, for example a typo or a delisting.
+public class StockQuoteNotFoundException extends StockQuoteServiceException {
+
+  public StockQuoteNotFoundException(String message) {
+    super(message);
+  }
+
+  public StockQuoteNotFoundException(String message, Throwable cause) {
+    super(message, cause);
+  }
+}
@@ -0,0 +1,23 @@
+package com.crio.warmup.stock.exception;
+
+import java.time.Duration;
+
+// Thrown when a provider rejects a request for exceeding its rate limit or quota.
+public class StockQuoteRateLimitException extends StockQuoteServiceException {
+
+  private final Duration retryAfter;
+
+  public StockQuoteRateLimitException(String message) {
+    this(message, null, null);
+  }
+
+  public StockQuoteRateLimitException(String message, Duration retryAfter, Throwable cause) {
+    super(message, cause);
+    this.retryAfter = retryAfter;
+  }
+
+  // How long the provider asked us to wait, or null if it did not say.
+  public Duration getRetryAfter() {
+    return retryAfter;
+  }
+}
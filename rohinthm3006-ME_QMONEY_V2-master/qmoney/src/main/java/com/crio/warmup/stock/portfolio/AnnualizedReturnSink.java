@@ -0,0 +1,25 @@
+
+package com.crio.warmup.stock.portfolio;
+
+import com.crio.warmup.stock.dto.AnnualizedReturn;
+import com.crio.warmup.stock.dto.PortfolioTrade;
+import java.util.List;
+
+/**
+ * Receives annualized returns one by one as their tasks complete, in completion order. All
+ * callbacks are made from the thread that called
+ * {@link PortfolioManager#calculateAnnualizedReturnStreaming}, so implementations need not be
+ * thread-safe.
+ */
+public interface AnnualizedReturnSink {
+
+  void onResult(AnnualizedReturn annualizedReturn);
+
+  // The trade is left out of the results; the remaining trades keep streaming.
+  default void onError(PortfolioTrade trade, Throwable error) {
+  }
+
+  // Called once after every task has finished, with the successful returns sorted.
+  default void onComplete(List<AnnualizedReturn> sortedReturns) {
+  }
+}
@@ -1,13 +1,13 @@
 package com.crio.warmup.stock.portfolio;
 
 import java.time.LocalDate;
-import java.util.List;
 import java.util.concurrent.Callable;
 import com.crio.warmup.stock.dto.AnnualizedReturn;
 import com.crio.warmup.stock.dto.PortfolioTrade;
+import com.crio.warmup.stock.quotes.CandleSeriesService;
 import com.crio.warmup.stock.quotes.StockQuotesService;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.crio.warmup.stock.dto.Candle;
+import com.crio.warmup.stock.dto.CandleSeries;
 import com.crio.warmup.stock.exception.StockQuoteServiceException;
 import static java.time.temporal.ChronoUnit.DAYS;
 
@@ -23,8 +23,12 @@ public class AnnualizedReturnTask implements Callable<AnnualizedReturn> {
         this.stockQuotesService = stockQuotesService;
     }
 
+    PortfolioTrade getPortfolioTrade() {
+        return portfolioTrade;
+    }
+
     private AnnualizedReturn computeAnnualizedReturn(LocalDate endDate, PortfolioTrade trade,
-                                                     Double buyPrice, Double sellPrice) {
+                                                     double buyPrice, double sellPrice) {
         double totalNumYears = DAYS.between(trade.getPurchaseDate(), endDate) / 365.2422;
         double totalReturns = (sellPrice - buyPrice) / buyPrice;
         double annualizedReturns = Math.pow((1.0 + totalReturns), (1.0 / totalNumYears)) - 1;
@@ -37,21 +41,22 @@ public class AnnualizedReturnTask implements Callable<AnnualizedReturn> {
             throw new IllegalArgumentException("End date cannot be before purchase date.");
         }
 
-        List<Candle> candles = stockQuotesService.getStockQuote(
+        // Only the first open and the last close are read, straight from the series' columns
+        CandleSeries candles = CandleSeriesService.of(stockQuotesService).getCandleSeries(
             portfolioTrade.getSymbol(),
             portfolioTrade.getPurchaseDate(),
             endDate
         );
 
-        if (candles == null || candles.isEmpty()) {
+        if (candles.isEmpty()) {
             throw new StockQuoteServiceException("No data available for symbol: " + portfolioTrade.getSymbol());
         }
 
         return computeAnnualizedReturn(
             endDate,
             portfolioTrade,
-            candles.get(0).getOpen(),
-            candles.get(candles.size() - 1).getClose()
+            candles.open(0),
+            candles.close(candles.size() - 1)
         );
     }
 }
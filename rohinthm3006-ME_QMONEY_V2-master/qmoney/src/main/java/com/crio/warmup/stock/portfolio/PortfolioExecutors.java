@@ -0,0 +1,196 @@
+
+package com.crio.warmup.stock.portfolio;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Long-lived executors for {@link PortfolioManagerImpl#calculateAnnualizedReturnParallel}, so
+ * that a request-serving process does not create and tear down a thread pool on every call and
+ * the total number of concurrently running tasks stays bounded across all callers.
+ */
+public final class PortfolioExecutors {
+
+  public enum Mode {
+    // A fixed pool of platform threads shared by every call.
+    SHARED_POOL,
+    // One virtual thread per task (JDK 21+), with a global bound on running tasks.
+    VIRTUAL_THREADS
+  }
+
+  private PortfolioExecutors() {
+  }
+
+  public static ExecutorService newExecutor(Mode mode, int maxConcurrency) {
+    switch (mode) {
+      case VIRTUAL_THREADS:
+        return newVirtualThreadExecutor(maxConcurrency);
+      case SHARED_POOL:
+      default:
+        return newSharedPool(maxConcurrency);
+    }
+  }
+
+  public static ExecutorService newSharedPool(int threads) {
+    AtomicInteger count = new AtomicInteger();
+    ThreadFactory threadFactory = runnable -> {
+      Thread thread = new Thread(runnable, "portfolio-worker-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+    return Executors.newFixedThreadPool(threads, threadFactory);
+  }
+
+  /**
+   * Returns a virtual-thread-per-task executor that lets at most {@code maxConcurrency} tasks run
+   * at the same time. On runtimes without virtual threads it falls back to a shared pool of the
+   * same size, so callers get the same concurrency bound either way.
+   */
+  public static ExecutorService newVirtualThreadExecutor(int maxConcurrency) {
+    ExecutorService virtualThreads = virtualThreadPerTaskExecutor();
+    if (virtualThreads == null) {
+      return newSharedPool(maxConcurrency);
+    }
+    return bounded(virtualThreads, maxConcurrency);
+  }
+
+  // Runs at most maxConcurrency tasks of the delegate at once, see BoundedExecutorService.
+  static ExecutorService bounded(ExecutorService delegate, int maxConcurrency) {
+    return new BoundedExecutorService(delegate, maxConcurrency);
+  }
+
+  public static boolean isVirtualThreadSupported() {
+    return virtualThreadFactoryMethod() != null;
+  }
+
+  private static ExecutorService virtualThreadPerTaskExecutor() {
+    Method factory = virtualThreadFactoryMethod();
+    if (factory == null) {
+      return null;
+    }
+    try {
+      return (ExecutorService) factory.invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return null;
+    }
+  }
+
+  // The build targets Java 11, so the JDK 21 factory is looked up reflectively.
+  private static Method virtualThreadFactoryMethod() {
+    try {
+      return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Bounds the number of tasks running at once on an executor that would otherwise start every
+   * task immediately. Waiting for a permit happens on the task's own (virtual) thread.
+   *
+   * <p>A task still waiting for a permit belongs either to its thread, once it starts, or to
+   * {@link #shutdownNow}, which hands it back like any executor returns tasks it never started.
+   * Whichever side claims it first wins, so no task both runs and is handed back, and a permit
+   * taken for a task that was handed back is returned.
+   */
+  private static final class BoundedExecutorService extends AbstractExecutorService {
+
+    private final ExecutorService delegate;
+    private final Semaphore permits;
+    private final Set<Waiting> waiting = ConcurrentHashMap.newKeySet();
+
+    private BoundedExecutorService(ExecutorService delegate, int maxConcurrency) {
+      this.delegate = delegate;
+      this.permits = new Semaphore(maxConcurrency);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+      Waiting task = new Waiting(command);
+      waiting.add(task);
+      try {
+        delegate.execute(task);
+      } catch (RejectedExecutionException e) {
+        waiting.remove(task);
+        throw e;
+      }
+    }
+
+    @Override
+    public void shutdown() {
+      delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+      List<Runnable> notStarted = new ArrayList<>();
+      for (Waiting task : waiting) {
+        if (waiting.remove(task)) {
+          notStarted.add(task.command);
+        }
+      }
+      delegate.shutdownNow();
+      return notStarted;
+    }
+
+    @Override
+    public boolean isShutdown() {
+      return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+      return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+      return delegate.awaitTermination(timeout, unit);
+    }
+
+    private final class Waiting implements Runnable {
+
+      private final Runnable command;
+
+      private Waiting(Runnable command) {
+        this.command = command;
+      }
+
+      @Override
+      public void run() {
+        try {
+          permits.acquire();
+        } catch (InterruptedException e) {
+          // Interrupted before it could start; a future must not be left waiting forever
+          if (waiting.remove(this) && command instanceof Future) {
+            ((Future<?>) command).cancel(false);
+          }
+          Thread.currentThread().interrupt();
+          return;
+        }
+        if (!waiting.remove(this)) {
+          // Handed back by shutdownNow while this thread waited
+          permits.release();
+          return;
+        }
+        try {
+          command.run();
+        } finally {
+          permits.release();
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,272 @@
+
+package com.crio.warmup.stock.portfolio;
+
+import com.crio.warmup.stock.dto.AnnualizedReturn;
+import com.crio.warmup.stock.dto.Candle;
+import com.crio.warmup.stock.dto.CandleSeries;
+import com.crio.warmup.stock.dto.PortfolioTrade;
+import com.crio.warmup.stock.dto.QuoteRequest;
+import com.crio.warmup.stock.exception.StockQuoteServiceException;
+import com.crio.warmup.stock.quotes.AsyncStockQuotesService;
+import com.crio.warmup.stock.quotes.BatchStockQuotesService;
+import com.crio.warmup.stock.quotes.CandleSeriesService;
+import com.crio.warmup.stock.quotes.EndpointQuotesService;
+import com.crio.warmup.stock.quotes.StockQuotesService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Groups the trades of a portfolio by symbol so that each symbol's history is fetched once,
+ * from its earliest purchase date to the end date, and every lot of that symbol computes its
+ * return from the shared series. The number of provider calls is bounded by the number of
+ * distinct symbols instead of the number of trades.
+ */
+class PortfolioFetchPlan {
+
+  private final List<PortfolioTrade> trades;
+  private final Map<String, SymbolHistory> histories;
+  private final List<AnnualizedReturnTask> tasks;
+  private final LocalDate endDate;
+  // Set instead of histories when only the first and last candle of each trade are fetched.
+  private final EndpointQuotesService endpoints;
+
+  private PortfolioFetchPlan(List<PortfolioTrade> trades, Map<String, SymbolHistory> histories,
+      List<AnnualizedReturnTask> tasks, LocalDate endDate, EndpointQuotesService endpoints) {
+    this.trades = trades;
+    this.histories = histories;
+    this.tasks = tasks;
+    this.endDate = endDate;
+    this.endpoints = endpoints;
+  }
+
+  static PortfolioFetchPlan of(List<PortfolioTrade> portfolioTrades, LocalDate endDate,
+      StockQuotesService stockQuotesService) {
+    Map<String, LocalDate> earliestPurchase = new LinkedHashMap<>();
+    Map<String, String> symbols = new LinkedHashMap<>();
+    for (PortfolioTrade trade : portfolioTrades) {
+      String key = keyOf(trade);
+      symbols.putIfAbsent(key, trade.getSymbol());
+      LocalDate purchaseDate = trade.getPurchaseDate();
+      if (!purchaseDate.isAfter(endDate)) {
+        earliestPurchase.merge(key, purchaseDate, (a, b) -> a.isBefore(b) ? a : b);
+      }
+    }
+
+    Map<String, SymbolHistory> histories = new LinkedHashMap<>();
+    for (Map.Entry<String, String> symbol : symbols.entrySet()) {
+      LocalDate from = earliestPurchase.getOrDefault(symbol.getKey(), endDate);
+      histories.put(symbol.getKey(),
+          new SymbolHistory(stockQuotesService, symbol.getValue(), from, endDate));
+    }
+
+    List<AnnualizedReturnTask> tasks = new ArrayList<>();
+    for (PortfolioTrade trade : portfolioTrades) {
+      tasks.add(new AnnualizedReturnTask(trade, histories.get(keyOf(trade)), endDate));
+    }
+    return new PortfolioFetchPlan(new ArrayList<>(portfolioTrades), histories, tasks, endDate,
+        null);
+  }
+
+  /**
+   * Plans each trade to fetch only the windows around its purchase date and the end date, see
+   * {@link EndpointQuotesService}. The end window is still fetched once per symbol.
+   */
+  static PortfolioFetchPlan endpoints(List<PortfolioTrade> portfolioTrades, LocalDate endDate,
+      StockQuotesService stockQuotesService) {
+    EndpointQuotesService endpoints = new EndpointQuotesService(stockQuotesService);
+    List<AnnualizedReturnTask> tasks = new ArrayList<>();
+    for (PortfolioTrade trade : portfolioTrades) {
+      tasks.add(new AnnualizedReturnTask(trade, endpoints, endDate));
+    }
+    return new PortfolioFetchPlan(new ArrayList<>(portfolioTrades), new LinkedHashMap<>(), tasks,
+        endDate, endpoints);
+  }
+
+  List<AnnualizedReturnTask> getTasks() {
+    return Collections.unmodifiableList(tasks);
+  }
+
+  /**
+   * Returns a quote source for the trade's symbol that serves every range within the planned
+   * history from a single shared fetch.
+   */
+  StockQuotesService quotesFor(PortfolioTrade trade) {
+    if (endpoints != null) {
+      return endpoints;
+    }
+    return histories.get(keyOf(trade));
+  }
+
+  /**
+   * Starts one asynchronous fetch per symbol and returns one future per trade, in trade order,
+   * that completes with the trade's return once its symbol's history has arrived.
+   */
+  List<CompletableFuture<AnnualizedReturn>> computeAsync(
+      AsyncStockQuotesService asyncQuotesService) {
+    List<CompletableFuture<AnnualizedReturn>> results = new ArrayList<>();
+    for (int i = 0; i < trades.size(); i++) {
+      AnnualizedReturnTask task = tasks.get(i);
+      if (endpoints != null) {
+        PortfolioTrade trade = trades.get(i);
+        results.add(endpoints.getStockQuoteAsync(trade.getSymbol(), trade.getPurchaseDate(),
+            endDate).thenApply(candles ->
+                call(new AnnualizedReturnTask(trade, (symbol, from, to) -> candles, endDate))));
+        continue;
+      }
+      results.add(histories.get(keyOf(trades.get(i))).fetchAsync(asyncQuotesService)
+          .thenApply(history -> call(task)));
+    }
+    return results;
+  }
+
+  private static AnnualizedReturn call(AnnualizedReturnTask task) {
+    try {
+      return task.call();
+    } catch (JsonProcessingException e) {
+      throw new CompletionException(new StockQuoteServiceException(e.getMessage(), e));
+    }
+  }
+
+  /**
+   * Fetches every symbol history that has not been started yet with a single batch call. A
+   * symbol that failed in the batch fails its trades with the provider's error. Symbols the
+   * batch left out without an error are left alone, so they are fetched on their own when a task
+   * needs them.
+   */
+  CompletableFuture<Void> prefetchAsync(BatchStockQuotesService batchQuotesService) {
+    List<QuoteRequest> requests = new ArrayList<>();
+    for (SymbolHistory history : histories.values()) {
+      if (!history.started.get()) {
+        requests.add(new QuoteRequest(history.symbol, history.from, history.to));
+      }
+    }
+    if (requests.isEmpty()) {
+      return CompletableFuture.completedFuture(null);
+    }
+    Map<String, CompletableFuture<List<Candle>>> quotes =
+        batchQuotesService.startStockQuotes(requests);
+    List<CompletableFuture<?>> prefetched = new ArrayList<>();
+    for (SymbolHistory history : histories.values()) {
+      CompletableFuture<List<Candle>> candles = quotes.get(history.symbol);
+      if (candles != null) {
+        prefetched.add(candles.whenComplete((result, error) -> history.prefetched(result, error)));
+      }
+    }
+    return CompletableFuture.allOf(prefetched.toArray(new CompletableFuture[0]))
+        .handle((done, error) -> null);
+  }
+
+  int getSymbolCount() {
+    return histories.size();
+  }
+
+  private static String keyOf(PortfolioTrade trade) {
+    return trade.getSymbol().toUpperCase(Locale.ROOT);
+  }
+
+  /**
+   * The planned history of one symbol. The first caller performs the fetch, either blocking or
+   * through an {@link AsyncStockQuotesService}; concurrent and later callers wait for it and are
+   * served their sub-range of the shared series. The history is kept as a {@link CandleSeries},
+   * so a sub-range is a slice of the same arrays.
+   */
+  static final class SymbolHistory implements StockQuotesService, CandleSeriesService {
+
+    private final StockQuotesService stockQuotesService;
+    private final String symbol;
+    private final LocalDate from;
+    private final LocalDate to;
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final CompletableFuture<CandleSeries> history = new CompletableFuture<>();
+
+    private SymbolHistory(StockQuotesService stockQuotesService, String symbol, LocalDate from,
+        LocalDate to) {
+      this.stockQuotesService = stockQuotesService;
+      this.symbol = symbol;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    public List<Candle> getStockQuote(String symbol, LocalDate from, LocalDate to)
+        throws JsonProcessingException, StockQuoteServiceException {
+      return getCandleSeries(symbol, from, to).asCandles();
+    }
+
+    @Override
+    public CandleSeries getCandleSeries(String symbol, LocalDate from, LocalDate to)
+        throws JsonProcessingException, StockQuoteServiceException {
+      return getHistory().slice(from, to);
+    }
+
+    CandleSeries getHistory() throws JsonProcessingException {
+      if (started.compareAndSet(false, true)) {
+        try {
+          history.complete(CandleSeriesService.of(stockQuotesService)
+              .getCandleSeries(symbol, from, to));
+        } catch (JsonProcessingException | RuntimeException | Error e) {
+          history.completeExceptionally(e);
+        }
+      }
+      try {
+        return history.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new StockQuoteServiceException("Interrupted waiting for quotes of " + symbol, e);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof JsonProcessingException) {
+          throw (JsonProcessingException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        throw new StockQuoteServiceException(cause.getMessage(), cause);
+      }
+    }
+
+    // Takes a batch result unless the history was fetched some other way in the meantime.
+    private void prefetched(List<Candle> candles, Throwable error) {
+      if (error == null && candles == null) {
+        return;
+      }
+      if (started.compareAndSet(false, true)) {
+        if (error != null) {
+          history.completeExceptionally(
+              error instanceof CompletionException && error.getCause() != null
+                  ? error.getCause() : error);
+        } else {
+          history.complete(CandleSeries.of(candles));
+        }
+      }
+    }
+
+    CompletableFuture<CandleSeries> fetchAsync(AsyncStockQuotesService asyncQuotesService) {
+      if (started.compareAndSet(false, true)) {
+        asyncQuotesService.getStockQuoteAsync(symbol, from, to).whenComplete((candles, error) -> {
+          if (error != null) {
+            history.completeExceptionally(
+                error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error);
+          } else {
+            history.complete(CandleSeries.of(candles));
+          }
+        });
+      }
+      return history;
+    }
+  }
+}
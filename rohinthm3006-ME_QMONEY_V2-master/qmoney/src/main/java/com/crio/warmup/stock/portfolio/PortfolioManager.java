@@ -1,17 +1,33 @@
 package com.crio.warmup.stock.portfolio;
 
 import com.crio.warmup.stock.dto.AnnualizedReturn;
+import com.crio.warmup.stock.dto.AnnualizedReturnsResult;
 import com.crio.warmup.stock.dto.PortfolioTrade;
 import com.crio.warmup.stock.exception.StockQuoteServiceException;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
-public interface PortfolioManager {
+public interface PortfolioManager extends AutoCloseable {
 
   List<AnnualizedReturn> calculateAnnualizedReturnParallel(
       List<PortfolioTrade> portfolioTrades,
       LocalDate endDate, int numThreads) throws InterruptedException,StockQuoteServiceException;
 
+  // Hands each return to the sink as soon as its task completes, then returns the sorted
+  // snapshot that is also passed to AnnualizedReturnSink#onComplete.
+  List<AnnualizedReturn> calculateAnnualizedReturnStreaming(
+      List<PortfolioTrade> portfolioTrades, LocalDate endDate, int numThreads,
+      AnnualizedReturnSink sink) throws StockQuoteServiceException;
+
+  // Returns whatever completed within the deadlines together with one failure per trade that
+  // did not; a task running longer than taskTimeout, or anything still outstanding when
+  // overallTimeout expires, is cancelled instead of failing the whole call.
+  AnnualizedReturnsResult calculateAnnualizedReturnPartial(
+      List<PortfolioTrade> portfolioTrades, LocalDate endDate, int numThreads,
+      Duration taskTimeout, Duration overallTimeout);
+
   //CHECKSTYLE:OFF
 
 
@@ -19,5 +35,15 @@ public interface PortfolioManager {
       LocalDate endDate)
       throws StockQuoteServiceException
   ;
+
+  // Completes with the sorted returns, or exceptionally with the first
+  // StockQuoteServiceException, without blocking the calling thread.
+  CompletableFuture<List<AnnualizedReturn>> calculateAnnualizedReturnAsync(
+      List<PortfolioTrade> portfolioTrades, LocalDate endDate);
+
+  // Releases the executor owned by this manager, if any.
+  @Override
+  default void close() {
+  }
 }
 
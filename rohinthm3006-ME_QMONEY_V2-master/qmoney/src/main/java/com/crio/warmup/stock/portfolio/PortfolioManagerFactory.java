@@ -4,6 +4,7 @@ package com.crio.warmup.stock.portfolio;
 //import org.springframework.web.client.RestTemplate;
 import com.crio.warmup.stock.quotes.StockQuoteServiceFactory;
 import com.crio.warmup.stock.quotes.StockQuotesService;
+import java.util.concurrent.ExecutorService;
 import org.springframework.web.client.RestTemplate;
 
 public class PortfolioManagerFactory {
@@ -26,6 +27,31 @@ public class PortfolioManagerFactory {
     return new PortfolioManagerImpl(StockQuoteServiceFactory.INSTANCE.getService(provider, restTemplate));    
 }
 
+  // The returned manager owns a long-lived executor of the given mode; close it when done.
+  // Calculations running on it at the same time share in-flight fetches of a symbol, while
+  // the fetch plan already shares them within one calculation.
+  public static PortfolioManager getPortfolioManager(String provider, RestTemplate restTemplate,
+      PortfolioExecutors.Mode mode, int maxConcurrency) {
+    return PortfolioManagerImpl.withOwnedExecutor(
+        StockQuoteServiceFactory.INSTANCE.getCoalescingService(provider, restTemplate),
+        PortfolioExecutors.newExecutor(mode, maxConcurrency));
+  }
+
+  public static PortfolioManager getPortfolioManager(String provider, RestTemplate restTemplate,
+      PortfolioManagerImpl.FetchMode fetchMode) {
+    PortfolioManagerImpl portfolioManager = new PortfolioManagerImpl(
+        StockQuoteServiceFactory.INSTANCE.getService(provider, restTemplate));
+    portfolioManager.setFetchMode(fetchMode);
+    return portfolioManager;
+  }
+
+  // Like the owned-executor manager, concurrent calculations share in-flight fetches.
+  public static PortfolioManager getPortfolioManager(String provider, RestTemplate restTemplate,
+      ExecutorService executor) {
+    return new PortfolioManagerImpl(
+        StockQuoteServiceFactory.INSTANCE.getCoalescingService(provider, restTemplate), executor);
+  }
+
  
 
 
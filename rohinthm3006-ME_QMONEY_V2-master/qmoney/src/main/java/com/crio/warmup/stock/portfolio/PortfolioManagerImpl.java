@@ -4,30 +4,57 @@ package com.crio.warmup.stock.portfolio;
 import static java.time.temporal.ChronoUnit.DAYS;
 import static java.time.temporal.ChronoUnit.SECONDS;
 import com.crio.warmup.stock.dto.AnnualizedReturn;
+import com.crio.warmup.stock.dto.AnnualizedReturnsResult;
 import com.crio.warmup.stock.dto.Candle;
+import com.crio.warmup.stock.dto.CandleSeries;
 import com.crio.warmup.stock.dto.PortfolioTrade;
 import com.crio.warmup.stock.dto.TiingoCandle;
+import com.crio.warmup.stock.dto.TradeFailure;
 import com.crio.warmup.stock.exception.StockQuoteServiceException;
+import com.crio.warmup.stock.quotes.AsyncStockQuotesService;
+import com.crio.warmup.stock.quotes.BatchStockQuotesService;
+import com.crio.warmup.stock.quotes.CandleSeriesService;
 import com.crio.warmup.stock.quotes.StockQuotesService;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 import org.springframework.web.client.RestTemplate;
 
 public class PortfolioManagerImpl implements PortfolioManager {
 
+  public enum FetchMode {
+    // Every daily candle from purchase date to end date, one fetch per symbol.
+    FULL_SERIES,
+    // Only small windows around the purchase date and the end date of each trade.
+    ENDPOINTS
+  }
+
   private RestTemplate restTemplate;
   private StockQuotesService stockQuotesService;
+  private ExecutorService executor;
+  private boolean ownsExecutor;
+  private FetchMode fetchMode = FetchMode.FULL_SERIES;
 
   
   protected PortfolioManagerImpl(RestTemplate restTemplate) {
@@ -39,6 +66,34 @@ public class PortfolioManagerImpl implements PortfolioManager {
     this.stockQuotesService = stockQuotesService;
   }
 
+  // The executor is shared by every parallel call and managed by the caller.
+  public PortfolioManagerImpl(StockQuotesService stockQuotesService, ExecutorService executor) {
+    this.stockQuotesService = stockQuotesService;
+    this.executor = executor;
+  }
+
+  // The executor is shared by every parallel call and shut down by close().
+  static PortfolioManagerImpl withOwnedExecutor(StockQuotesService stockQuotesService,
+      ExecutorService executor) {
+    PortfolioManagerImpl portfolioManager = new PortfolioManagerImpl(stockQuotesService, executor);
+    portfolioManager.ownsExecutor = true;
+    return portfolioManager;
+  }
+
+  /**
+   * Annualized returns only need each trade's first open and last close, so
+   * {@link FetchMode#ENDPOINTS} keeps the data fetched per trade the same size however long the
+   * position was held. It costs up to two small fetches per trade instead of one full fetch per
+   * symbol, so it pays off for long holding periods.
+   */
+  public void setFetchMode(FetchMode fetchMode) {
+    this.fetchMode = fetchMode;
+  }
+
+  public FetchMode getFetchMode() {
+    return fetchMode;
+  }
+
   private Comparator<AnnualizedReturn> getComparator() {
     return Comparator.comparing(AnnualizedReturn::getAnnualizedReturn).reversed();
   }
@@ -52,16 +107,25 @@ public class PortfolioManagerImpl implements PortfolioManager {
 
 
 
-  private Double getOpeningPriceOnStartDate(List<Candle> candles) {
-    return candles.get(0).getOpen();
+  private double getOpeningPriceOnStartDate(CandleSeries candles) {
+    return candles.open(0);
+  }
+
+  private double getClosingPriceOnEndDate(CandleSeries candles) {
+    return candles.close(candles.size() - 1);
   }
 
-  private Double getClosingPriceOnEndDate(List<Candle> candles) {
-    return candles.get(candles.size() - 1).getClose();
+  // getStockQuote stays the source of the sequential path, unless the service can hand over
+  // columnar series that getStockQuote would only turn into candle objects.
+  private StockQuotesService sequentialQuotes() {
+    if (stockQuotesService instanceof CandleSeriesService) {
+      return stockQuotesService;
+    }
+    return this::getStockQuote;
   }
 
   private AnnualizedReturn calculateAnnualizedReturns(LocalDate endDate, PortfolioTrade trade,
-      Double buyPrice, Double sellPrice) {
+      double buyPrice, double sellPrice) {
     double total_num_years = DAYS.between(trade.getPurchaseDate(), endDate) / 365.2422;
     double totalReturns = (sellPrice - buyPrice) / buyPrice;
     double annualized_returns = Math.pow((1.0 + totalReturns), (1.0 / total_num_years)) - 1;
@@ -73,6 +137,8 @@ public class PortfolioManagerImpl implements PortfolioManager {
       List<PortfolioTrade> portfolioTrades, LocalDate endDate) {
       
       List<AnnualizedReturn> annualizedReturns = new ArrayList<>();
+      // One history per symbol, shared by every lot of that symbol
+      PortfolioFetchPlan plan = planFor(portfolioTrades, endDate, sequentialQuotes());
       
       for (PortfolioTrade portfolioTrade : portfolioTrades) {
           try {
@@ -80,14 +146,11 @@ public class PortfolioManagerImpl implements PortfolioManager {
               LocalDate purchaseDate = portfolioTrade.getPurchaseDate();
   
               // Fetch stock quotes using the given symbol, purchase date, and end date
-              List<Candle> candles = getStockQuote(
-                  portfolioTrade.getSymbol(),
-                  purchaseDate,
-                  endDate
-              );
+              CandleSeries candles = CandleSeriesService.of(plan.quotesFor(portfolioTrade))
+                  .getCandleSeries(portfolioTrade.getSymbol(), purchaseDate, endDate);
   
-              // Validate that the list of candles is not empty
-              if (candles == null || candles.isEmpty()) {
+              // Validate that the series of candles is not empty
+              if (candles.isEmpty()) {
                   throw new StockQuoteServiceException(
                       "No data available for symbol: " + portfolioTrade.getSymbol()
                   );
@@ -132,17 +195,19 @@ public List<AnnualizedReturn> calculateAnnualizedReturnParallel(
     List<PortfolioTrade> portfolioTrades, LocalDate endDate, int numThreads)
     throws StockQuoteServiceException {
 
-    ExecutorService executorService = Executors.newFixedThreadPool(numThreads);
+    // Without a shared executor, fall back to a pool that lives for this call only
+    ExecutorService executorService =
+        executor != null ? executor : Executors.newFixedThreadPool(numThreads);
     List<AnnualizedReturn> annualizedReturns = new ArrayList<>();
 
-    // Create tasks
-    List<AnnualizedReturnTask> tasks = portfolioTrades.stream()
-        .map(trade -> new AnnualizedReturnTask(trade, stockQuotesService, endDate))
-        .collect(Collectors.toList());
+    // Create tasks. Lots of the same symbol share one fetch covering the earliest purchase.
+    List<AnnualizedReturnTask> tasks =
+        planFor(portfolioTrades, endDate, stockQuotesService).getTasks();
 
     try {
-        // Submit tasks and get futures
-        List<Future<AnnualizedReturn>> futures = executorService.invokeAll(tasks);
+        // Submit tasks and get futures, at most numThreads of this call at a time
+        List<Future<AnnualizedReturn>> futures =
+            invokeAll(executorService, tasks, numThreads, (task, future) -> { });
 
         // Process results
         for (Future<AnnualizedReturn> future : futures) {
@@ -159,16 +224,7 @@ public List<AnnualizedReturn> calculateAnnualizedReturnParallel(
         Thread.currentThread().interrupt();
         throw new StockQuoteServiceException("Task execution interrupted: " + e.getMessage(), e);
     } finally {
-        // Graceful shutdown
-        executorService.shutdown();
-        try {
-            if (!executorService.awaitTermination(60, TimeUnit.SECONDS)) {
-                executorService.shutdownNow();
-            }
-        } catch (InterruptedException ex) {
-            executorService.shutdownNow();
-            Thread.currentThread().interrupt();
-        }
+        shutdownPerCallPool(executorService);
     }
 
     // Sort and return
@@ -177,6 +233,275 @@ public List<AnnualizedReturn> calculateAnnualizedReturnParallel(
         .collect(Collectors.toList());
 }
 
+  @Override
+  public List<AnnualizedReturn> calculateAnnualizedReturnStreaming(
+      List<PortfolioTrade> portfolioTrades, LocalDate endDate, int numThreads,
+      AnnualizedReturnSink sink) throws StockQuoteServiceException {
+    ExecutorService executorService =
+        executor != null ? executor : Executors.newFixedThreadPool(numThreads);
+    List<AnnualizedReturnTask> tasks =
+        planFor(portfolioTrades, endDate, stockQuotesService).getTasks();
+    List<AnnualizedReturn> delivered = new ArrayList<>();
+
+    try {
+      // Each result is handed to the sink as soon as its task completes
+      invokeAll(executorService, tasks, numThreads, (task, future) -> {
+        try {
+          AnnualizedReturn annualizedReturn = future.get();
+          delivered.add(annualizedReturn);
+          sink.onResult(annualizedReturn);
+        } catch (ExecutionException e) {
+          sink.onError(task.getPortfolioTrade(), e.getCause());
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      });
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new StockQuoteServiceException("Task execution interrupted: " + e.getMessage(), e);
+    } finally {
+      shutdownPerCallPool(executorService);
+    }
+
+    List<AnnualizedReturn> sortedReturns =
+        delivered.stream().sorted(getComparator()).collect(Collectors.toList());
+    sink.onComplete(sortedReturns);
+    return sortedReturns;
+  }
+
+  @Override
+  public AnnualizedReturnsResult calculateAnnualizedReturnPartial(
+      List<PortfolioTrade> portfolioTrades, LocalDate endDate, int numThreads,
+      Duration taskTimeout, Duration overallTimeout) {
+    ExecutorService executorService =
+        executor != null ? executor : Executors.newFixedThreadPool(numThreads);
+    List<AnnualizedReturnTask> tasks =
+        planFor(portfolioTrades, endDate, stockQuotesService).getTasks();
+    CompletionService<AnnualizedReturn> completionService =
+        new ExecutorCompletionService<>(executorService);
+    Map<Future<AnnualizedReturn>, DeadlineTask> running = new LinkedHashMap<>();
+    List<AnnualizedReturn> annualizedReturns = new ArrayList<>();
+    List<TradeFailure> failures = new ArrayList<>();
+    long taskTimeoutNanos = taskTimeout.toNanos();
+    long deadline = System.nanoTime() + overallTimeout.toNanos();
+    int submitted = 0;
+
+    try {
+      while (submitted < tasks.size() && submitted < Math.max(1, numThreads)) {
+        DeadlineTask task = new DeadlineTask(tasks.get(submitted++));
+        running.put(completionService.submit(task), task);
+      }
+      while (!running.isEmpty()) {
+        long now = System.nanoTime();
+        if (now - deadline >= 0) {
+          break;
+        }
+        // Wake up for the overall deadline or the earliest per-task deadline, whichever is first
+        long wait = deadline - now;
+        for (DeadlineTask task : running.values()) {
+          if (task.hasStarted()) {
+            wait = Math.min(wait, task.startedAt + taskTimeoutNanos - now);
+          }
+        }
+        Future<AnnualizedReturn> done =
+            completionService.poll(Math.max(0, wait), TimeUnit.NANOSECONDS);
+        if (done == null) {
+          // A timed out task is given up on at once: a fetch stuck in a read that ignores the
+          // interrupt may never come back, and its slot goes to the next trade
+          now = System.nanoTime();
+          Iterator<Map.Entry<Future<AnnualizedReturn>, DeadlineTask>> entries =
+              running.entrySet().iterator();
+          int timedOut = 0;
+          while (entries.hasNext()) {
+            Map.Entry<Future<AnnualizedReturn>, DeadlineTask> entry = entries.next();
+            DeadlineTask task = entry.getValue();
+            if (task.hasStarted() && now - task.startedAt >= taskTimeoutNanos) {
+              entry.getKey().cancel(true);
+              entries.remove();
+              failures.add(new TradeFailure(task.task.getPortfolioTrade(),
+                  "Timed out after " + taskTimeout.toMillis() + " ms", null, true));
+              timedOut++;
+            }
+          }
+          for (; timedOut > 0 && submitted < tasks.size(); timedOut--) {
+            DeadlineTask task = new DeadlineTask(tasks.get(submitted++));
+            running.put(completionService.submit(task), task);
+          }
+          continue;
+        }
+
+        DeadlineTask finished = running.remove(done);
+        if (finished == null) {
+          // A cancelled task, already recorded as timed out
+          continue;
+        }
+        try {
+          annualizedReturns.add(done.get());
+        } catch (CancellationException e) {
+          failures.add(new TradeFailure(finished.task.getPortfolioTrade(),
+              "Timed out after " + taskTimeout.toMillis() + " ms", null, true));
+        } catch (ExecutionException e) {
+          failures.add(new TradeFailure(finished.task.getPortfolioTrade(),
+              e.getCause().getMessage(), e.getCause(), false));
+        }
+        if (submitted < tasks.size()) {
+          DeadlineTask task = new DeadlineTask(tasks.get(submitted++));
+          running.put(completionService.submit(task), task);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      // Whatever is still outstanding has missed the overall deadline
+      for (Map.Entry<Future<AnnualizedReturn>, DeadlineTask> entry : running.entrySet()) {
+        entry.getKey().cancel(true);
+        failures.add(new TradeFailure(entry.getValue().task.getPortfolioTrade(),
+            "Overall deadline of " + overallTimeout.toMillis() + " ms expired", null, true));
+      }
+      for (int i = submitted; i < tasks.size(); i++) {
+        failures.add(new TradeFailure(tasks.get(i).getPortfolioTrade(),
+            "Not started before the overall deadline", null, true));
+      }
+      if (executorService != executor) {
+        // Do not wait for hung tasks, they have already been given up on
+        executorService.shutdownNow();
+      }
+    }
+
+    return new AnnualizedReturnsResult(
+        annualizedReturns.stream().sorted(getComparator()).collect(Collectors.toList()),
+        failures);
+  }
+
+  // Records when a task actually starts running, which is where its own deadline starts.
+  private static final class DeadlineTask implements Callable<AnnualizedReturn> {
+
+    private final AnnualizedReturnTask task;
+    private volatile long startedAt;
+    private volatile boolean started;
+
+    private DeadlineTask(AnnualizedReturnTask task) {
+      this.task = task;
+    }
+
+    boolean hasStarted() {
+      return started;
+    }
+
+    @Override
+    public AnnualizedReturn call() throws Exception {
+      startedAt = System.nanoTime();
+      started = true;
+      return task.call();
+    }
+  }
+
+  /**
+   * Like {@link ExecutorService#invokeAll}, but keeps at most {@code maxInFlight} of the tasks
+   * submitted at once so that one large portfolio cannot occupy the whole shared executor, and
+   * hands every task to {@code onCompletion} on the calling thread as soon as it is done.
+   */
+  private static List<Future<AnnualizedReturn>> invokeAll(ExecutorService executorService,
+      List<AnnualizedReturnTask> tasks, int maxInFlight,
+      BiConsumer<AnnualizedReturnTask, Future<AnnualizedReturn>> onCompletion)
+      throws InterruptedException {
+    CompletionService<AnnualizedReturn> completionService =
+        new ExecutorCompletionService<>(executorService);
+    List<Future<AnnualizedReturn>> futures = new ArrayList<>(tasks.size());
+    Map<Future<AnnualizedReturn>, AnnualizedReturnTask> taskOf = new IdentityHashMap<>();
+    boolean finished = false;
+    try {
+      int submitted = 0;
+      while (submitted < tasks.size() && submitted < Math.max(1, maxInFlight)) {
+        submit(completionService, tasks.get(submitted++), futures, taskOf);
+      }
+      for (int completed = 0; completed < tasks.size(); completed++) {
+        Future<AnnualizedReturn> done = completionService.take();
+        if (submitted < tasks.size()) {
+          submit(completionService, tasks.get(submitted++), futures, taskOf);
+        }
+        onCompletion.accept(taskOf.get(done), done);
+      }
+      finished = true;
+    } finally {
+      // Interrupted, or a callback such as a streaming sink threw: nobody waits for the rest
+      if (!finished) {
+        futures.forEach(future -> future.cancel(true));
+      }
+    }
+    return futures;
+  }
+
+  private static void submit(CompletionService<AnnualizedReturn> completionService,
+      AnnualizedReturnTask task, List<Future<AnnualizedReturn>> futures,
+      Map<Future<AnnualizedReturn>, AnnualizedReturnTask> taskOf) {
+    Future<AnnualizedReturn> future = completionService.submit(task);
+    futures.add(future);
+    taskOf.put(future, task);
+  }
+
+  // Graceful shutdown of a pool created for a single call; a shared executor stays up.
+  private void shutdownPerCallPool(ExecutorService executorService) {
+    if (executorService == executor) {
+      return;
+    }
+    executorService.shutdown();
+    try {
+      if (!executorService.awaitTermination(60, TimeUnit.SECONDS)) {
+        executorService.shutdownNow();
+      }
+    } catch (InterruptedException ex) {
+      executorService.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public void close() {
+    if (ownsExecutor) {
+      executor.shutdown();
+    }
+  }
+
+  @Override
+  public CompletableFuture<List<AnnualizedReturn>> calculateAnnualizedReturnAsync(
+      List<PortfolioTrade> portfolioTrades, LocalDate endDate) {
+    // Providers complete the futures from their HTTP callbacks, so no thread pool is involved.
+    PortfolioFetchPlan plan = fetchMode == FetchMode.ENDPOINTS
+        ? PortfolioFetchPlan.endpoints(portfolioTrades, endDate, stockQuotesService)
+        : PortfolioFetchPlan.of(portfolioTrades, endDate, stockQuotesService);
+    CompletableFuture<Void> prefetched = stockQuotesService instanceof BatchStockQuotesService
+        ? plan.prefetchAsync((BatchStockQuotesService) stockQuotesService)
+        : CompletableFuture.completedFuture(null);
+    return prefetched.thenCompose(ignored -> {
+      List<CompletableFuture<AnnualizedReturn>> results =
+          plan.computeAsync(AsyncStockQuotesService.of(stockQuotesService));
+      return CompletableFuture.allOf(results.toArray(new CompletableFuture[0]))
+          .thenApply(done -> results.stream()
+              .map(CompletableFuture::join)
+              .sorted(getComparator())
+              .collect(Collectors.toList()));
+    });
+  }
+
+  /**
+   * Plans one fetch per symbol. When the service has opted into batching, see
+   * {@link com.crio.warmup.stock.quotes.BatchingStockQuotesService}, the whole portfolio is
+   * fetched with one batch call up front; otherwise each symbol is fetched by the first task
+   * needing it.
+   */
+  private PortfolioFetchPlan planFor(List<PortfolioTrade> portfolioTrades, LocalDate endDate,
+      StockQuotesService quotes) {
+    if (fetchMode == FetchMode.ENDPOINTS) {
+      return PortfolioFetchPlan.endpoints(portfolioTrades, endDate, quotes);
+    }
+    PortfolioFetchPlan plan = PortfolioFetchPlan.of(portfolioTrades, endDate, quotes);
+    if (stockQuotesService instanceof BatchStockQuotesService) {
+      plan.prefetchAsync((BatchStockQuotesService) stockQuotesService).join();
+    }
+    return plan;
+  }
+
 
 }
 
@@ -0,0 +1,149 @@
+
+package com.crio.warmup.stock.quotes;
+
+import com.crio.warmup.stock.dto.CandleSeries;
+import com.crio.warmup.stock.dto.IsoDateDeserializer;
+import com.crio.warmup.stock.exception.StockQuoteNotFoundException;
+import com.crio.warmup.stock.exception.StockQuoteRateLimitException;
+import com.crio.warmup.stock.exception.StockQuoteServiceException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.util.Locale;
+
+/**
+ * Decodes a TIME_SERIES_DAILY response token by token into a {@link CandleSeries}, keeping only
+ * the candles within {@code from..to}.
+ *
+ * <p>Dates are compared as ISO strings, so days outside the range are skipped without creating a
+ * candle or a {@link LocalDate}. Alphavantage lists the series newest first, so decoding stops at
+ * the first day before {@code from} and the rest of a full-history response is never read.
+ * Throttling notices and the "Error Message" sent for unknown symbols become
+ * {@link StockQuoteRateLimitException} and {@link StockQuoteNotFoundException}.
+ */
+public final class AlphavantageDailyDecoder {
+
+  private static final String TIME_SERIES = "Time Series (Daily)";
+
+  private AlphavantageDailyDecoder() {
+  }
+
+  public static CandleSeries decode(String json, LocalDate from, LocalDate to)
+      throws StockQuoteServiceException {
+    if (json == null) {
+      throw new StockQuoteServiceException("Invalid Response Found");
+    }
+    try (JsonParser parser = QuoteResponses.jsonFactory().createParser(json)) {
+      return decode(parser, from, to);
+    } catch (IOException e) {
+      throw new StockQuoteServiceException(e.getMessage(), e);
+    }
+  }
+
+  public static CandleSeries decode(InputStream json, LocalDate from, LocalDate to)
+      throws StockQuoteServiceException {
+    try (JsonParser parser = QuoteResponses.jsonFactory().createParser(json)) {
+      return decode(parser, from, to);
+    } catch (IOException e) {
+      throw new StockQuoteServiceException(e.getMessage(), e);
+    }
+  }
+
+  private static CandleSeries decode(JsonParser parser, LocalDate from, LocalDate to)
+      throws IOException {
+    if (parser.nextToken() != JsonToken.START_OBJECT) {
+      throw new StockQuoteServiceException("Invalid Response Found");
+    }
+    String notice = null;
+    String error = null;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      JsonToken value = parser.nextToken();
+      if (TIME_SERIES.equals(field) && value == JsonToken.START_OBJECT) {
+        return readSeries(parser, from.toString(), to.toString());
+      }
+      if (("Note".equals(field) || "Information".equals(field)) && notice == null) {
+        notice = parser.getValueAsString();
+      } else if ("Error Message".equals(field)) {
+        error = parser.getValueAsString();
+      }
+      parser.skipChildren();
+    }
+    if (isRateLimitMessage(notice)) {
+      throw new StockQuoteRateLimitException(notice);
+    }
+    if (error != null) {
+      // The symbol is the only part of the query that varies, so it is the one not recognised
+      throw new StockQuoteNotFoundException(error);
+    }
+    throw new StockQuoteServiceException("Invalid Response Found");
+  }
+
+  private static CandleSeries readSeries(JsonParser parser, String from, String to)
+      throws IOException {
+    CandleSeries.Builder candles = CandleSeries.builder(0);
+    String previous = null;
+    boolean newestFirst = true;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String date = parser.getCurrentName();
+      parser.nextToken();
+      newestFirst &= previous == null || date.compareTo(previous) < 0;
+      previous = date;
+      if (date.compareTo(from) < 0 && newestFirst) {
+        // Everything after this day is older still
+        break;
+      }
+      if (date.compareTo(from) < 0 || date.compareTo(to) > 0) {
+        parser.skipChildren();
+        continue;
+      }
+      LocalDate day = IsoDateDeserializer.parse(date);
+      if (day == null) {
+        throw new StockQuoteServiceException("Invalid date in response: " + date);
+      }
+      readCandle(parser, day, candles);
+    }
+    return candles.build();
+  }
+
+  private static void readCandle(JsonParser parser, LocalDate date,
+      CandleSeries.Builder candles) throws IOException {
+    double open = Double.NaN;
+    double high = Double.NaN;
+    double low = Double.NaN;
+    double close = Double.NaN;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      parser.nextToken();
+      switch (field) {
+        case "1. open":
+          open = QuoteResponses.readPrice(parser);
+          break;
+        case "2. high":
+          high = QuoteResponses.readPrice(parser);
+          break;
+        case "3. low":
+          low = QuoteResponses.readPrice(parser);
+          break;
+        case "4. close":
+          close = QuoteResponses.readPrice(parser);
+          break;
+        default:
+          parser.skipChildren();
+      }
+    }
+    candles.add(date, open, high, low, close);
+  }
+
+  // Alphavantage answers throttled requests with 200 and a "Note" or "Information" message
+  // instead of a 429. The same fields also carry other notices, such as demo key warnings.
+  static boolean isRateLimitMessage(String message) {
+    if (message == null) {
+      return false;
+    }
+    String lowerCase = message.toLowerCase(Locale.ROOT);
+    return lowerCase.contains("call frequency") || lowerCase.contains("rate limit");
+  }
+}
@@ -2,71 +2,126 @@
 package com.crio.warmup.stock.quotes;
 
 
-import com.crio.warmup.stock.dto.AlphavantageCandle;
-import com.crio.warmup.stock.dto.AlphavantageDailyResponse;
 import com.crio.warmup.stock.dto.Candle;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.crio.warmup.stock.dto.CandleSeries;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.time.LocalDate;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
-import java.util.Random;
-import com.crio.warmup.stock.dto.AlphavantageDailyResponse;
-import com.crio.warmup.stock.dto.Candle;
+import java.util.concurrent.CompletableFuture;
+import com.crio.warmup.stock.exception.StockQuoteRateLimitException;
 import com.crio.warmup.stock.exception.StockQuoteServiceException;
-import java.util.stream.Collectors;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.client.RestClientResponseException;
 import org.springframework.web.client.RestTemplate;
 
-public class AlphavantageService implements StockQuotesService {
+public class AlphavantageService implements StockQuotesService, AsyncStockQuotesService,
+    CandleSeriesService {
+
+  // About 85 trading days, comfortably inside the 100 of a compact response
+  static final int COMPACT_CALENDAR_DAYS = 120;
 
- 
+  public static final String DEFAULT_BASE_URL = "https://www.alphavantage.co";
 
   private RestTemplate restTemplate;
+  private HttpClient httpClient;
+  private NegativeQuoteCache negativeCache = new NegativeQuoteCache();
+  // Overridden with alphavantage.api.baseUrl, for instance to point at a test LocalQuoteServer.
+  private String baseUrl = QuoteProviderConfig.get("alphavantage.api.baseUrl", DEFAULT_BASE_URL);
 
   public AlphavantageService(RestTemplate restTemplate) {
+    this(restTemplate, QuoteHttpClients.shared());
+  }
+
+  public AlphavantageService(RestTemplate restTemplate, HttpClient httpClient) {
     this.restTemplate = restTemplate;
+    this.httpClient = httpClient;
   }
 
   @Override
   public List<Candle> getStockQuote(String symbol, LocalDate from, LocalDate to)
       throws StockQuoteServiceException {
- 
-    String responseString = restTemplate.getForObject(buildURL(symbol), String.class);
-
-    AlphavantageDailyResponse alphavantageDailyResponse;
-    try {
-      alphavantageDailyResponse =
-          getObjectMapper().readValue(responseString, AlphavantageDailyResponse.class);
-      if (alphavantageDailyResponse.getCandles() == null || responseString == null)
-        throw new StockQuoteServiceException("Invalid Response Found");
-    } catch (JsonProcessingException e) {
-      throw new StockQuoteServiceException(e.getMessage());
-    }
-    List<Candle> alphavantageCandles = new ArrayList<>();
-    Map<LocalDate, AlphavantageCandle> mapOFDateAndAlphavantageCandle =
-        alphavantageDailyResponse.getCandles();
-    for (LocalDate localDate : mapOFDateAndAlphavantageCandle.keySet()) {
-      if (localDate.isAfter(from.minusDays(1)) && localDate.isBefore(to.plusDays(1))) {
-        AlphavantageCandle alphavantageCandle =
-            alphavantageDailyResponse.getCandles().get(localDate);
-        alphavantageCandle.setDate(localDate);
-        alphavantageCandles.add(alphavantageCandle);
-      }
-    }
-    return alphavantageCandles.stream().sorted(Comparator.comparing(Candle::getDate))
-        .collect(Collectors.toList());
+    return getCandleSeries(symbol, from, to).asCandles();
   }
 
+  // Throttling and unknown symbols arrive as messages in a 200 response, so a known answer
+  // saves a full round trip as well as a call against the small daily quota.
+  @Override
+  public CandleSeries getCandleSeries(String symbol, LocalDate from, LocalDate to)
+      throws StockQuoteServiceException {
+    return negativeCache.fetch(symbol, from, to, () -> restTemplate.execute(
+        URI.create(buildURL(symbol, outputSizeFor(from))), HttpMethod.GET,
+        QuoteResponses.acceptGzipJson(),
+        QuoteResponses.decoding(body -> AlphavantageDailyDecoder.decode(body, from, to))));
+  }
+
+  @Override
+  public CompletableFuture<List<Candle>> getStockQuoteAsync(String symbol, LocalDate from,
+      LocalDate to) {
+    return negativeCache.fetchAsync(symbol, from, to,
+        () -> fetchCandleSeriesAsync(symbol, from, to)).thenApply(CandleSeries::asCandles);
+  }
+
+  private CompletableFuture<CandleSeries> fetchCandleSeriesAsync(String symbol, LocalDate from,
+      LocalDate to) {
+    HttpRequest request = QuoteResponses.acceptGzipJson(
+        HttpRequest.newBuilder(URI.create(buildURL(symbol, outputSizeFor(from))))).GET().build();
+    return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+        .thenApply(response -> {
+          if (response.statusCode() == 429) {
+            throw new StockQuoteRateLimitException("Alphavantage returned status 429 for " + symbol,
+                RateLimiter.parseRetryAfter(
+                    response.headers().firstValue("Retry-After").orElse(null)), null);
+          }
+          if (response.statusCode() >= 400) {
+            // Carries the status like the blocking path's RestClientResponseException
+            String message =
+                "Alphavantage returned status " + response.statusCode() + " for " + symbol;
+            throw new StockQuoteServiceException(message, new RestClientResponseException(
+                message, response.statusCode(), "", null, null, null));
+          }
+          return QuoteResponses.decode(response,
+              body -> AlphavantageDailyDecoder.decode(body, from, to));
+        });
+  }
+
+  // A compact response only holds the latest 100 trading days, so it is used when the range
+  // starts well within them, leaving room for holidays and a late refresh.
+  static String outputSizeFor(LocalDate from) {
+    return outputSizeFor(from, LocalDate.now());
+  }
+
+  static String outputSizeFor(LocalDate from, LocalDate today) {
+    return from.isBefore(today.minusDays(COMPACT_CALENDAR_DAYS)) ? "full" : "compact";
+  }
+
+  public String getBaseUrl() {
+    return baseUrl;
+  }
+
+  public void setBaseUrl(String baseUrl) {
+    this.baseUrl = baseUrl;
+  }
+
+  public NegativeQuoteCache getNegativeCache() {
+    return negativeCache;
+  }
+
+  public void setNegativeCache(NegativeQuoteCache negativeCache) {
+    this.negativeCache = negativeCache;
+  }
 
   // https://www.alphavantage.co/query?function=TIME_SERIES_DAILY&symbol=IBM&outputsize=full&apikey=demo
   // Method to Build URL
   protected String buildURL(String symbol) {
-    String uriTemplate = "https://www.alphavantage.co/query?function=TIME_SERIES_DAILY&symbol="
-        + symbol + "&outputsize=full&apikey=" + getToken();
+    return buildURL(symbol, "full");
+  }
+
+  protected String buildURL(String symbol, String outputSize) {
+    String uriTemplate = baseUrl + "/query?function=TIME_SERIES_DAILY&symbol="
+        + symbol + "&outputsize=" + outputSize + "&apikey=" + getToken();
     return uriTemplate;
   }
 
@@ -75,12 +130,4 @@ public class AlphavantageService implements StockQuotesService {
     return "O5BAY5ZAY65G6UB6";
 }
 
-
-  private static ObjectMapper getObjectMapper() {
-    ObjectMapper objectMapper = new ObjectMapper();
-    objectMapper.registerModule(new JavaTimeModule());
-    return objectMapper;
-  }
-  
-
 }
@@ -0,0 +1,280 @@
+package com.crio.warmup.stock.quotes;
+
+import com.crio.warmup.stock.exception.StockQuoteRateLimitException;
+import com.crio.warmup.stock.exception.StockQuoteServiceException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands out API keys for one provider so that load is spread evenly and spent keys are skipped.
+ *
+ * <p>Every key counts its requests for the current UTC day and is passed over once it reaches the
+ * daily quota. A key the provider rejected can be quarantined for a while, after which it is
+ * handed out again. Keys are picked round-robin or, with {@link Strategy#LEAST_USED}, by fewest
+ * requests today.
+ *
+ * <p>Providers pace each key on its own, so with {@link #setKeyRateLimit} every key gets its own
+ * {@link RateLimiter}. The pool then prefers keys that can be used right away, and a pool of n
+ * keys sustains n times the rate of a single key.
+ */
+public class ApiKeyPool {
+
+  public enum Strategy {
+    ROUND_ROBIN,
+    LEAST_USED
+  }
+
+  private final List<KeyState> keys = new ArrayList<>();
+  private final Strategy strategy;
+  private final long dailyQuotaPerKey;
+  private int next;
+  private LocalDate quotaDay;
+  private double keyPermitsPerSecond;
+  private int keyBurst;
+
+  // A dailyQuotaPerKey of zero or less means keys have no daily quota.
+  public ApiKeyPool(List<String> keys, Strategy strategy, long dailyQuotaPerKey) {
+    for (String key : keys) {
+      this.keys.add(new KeyState(key));
+    }
+    this.strategy = strategy;
+    this.dailyQuotaPerKey = dailyQuotaPerKey;
+  }
+
+  /**
+   * Builds the pool for a provider from {@link QuoteProviderConfig}: the keys come from
+   * {@code <provider>.api.keys}, the strategy from {@code <provider>.api.keyStrategy}, the
+   * per-key quota from {@code <provider>.api.keyDailyQuota} and the per-key rate from
+   * {@code <provider>.api.keyRequestsPerSecond} and {@code <provider>.api.keyBurst}.
+   */
+  public static ApiKeyPool fromConfig(String provider) {
+    String prefix = provider.toLowerCase(Locale.ROOT) + ".api.";
+    ApiKeyPool pool = new ApiKeyPool(QuoteProviderConfig.getList(prefix + "keys"),
+        Strategy.valueOf(QuoteProviderConfig.get(prefix + "keyStrategy", "ROUND_ROBIN")
+            .toUpperCase(Locale.ROOT)),
+        QuoteProviderConfig.getLong(prefix + "keyDailyQuota", 0));
+    String keyRate = QuoteProviderConfig.get(prefix + "keyRequestsPerSecond");
+    if (keyRate != null) {
+      pool.setKeyRateLimit(Double.parseDouble(keyRate),
+          (int) QuoteProviderConfig.getLong(prefix + "keyBurst", 1));
+    }
+    return pool;
+  }
+
+  /**
+   * Gives every key its own {@link RateLimiter}. Daily quotas stay with the pool, so the
+   * limiters only pace requests.
+   */
+  public synchronized void setKeyRateLimit(double permitsPerSecond, int burst) {
+    if (permitsPerSecond <= 0 || burst < 1) {
+      throw new IllegalArgumentException("permitsPerSecond and burst must be positive");
+    }
+    this.keyPermitsPerSecond = permitsPerSecond;
+    this.keyBurst = burst;
+    for (KeyState state : keys) {
+      state.rateLimiter = new RateLimiter(permitsPerSecond, burst, 0);
+    }
+  }
+
+  // Requests per second allowed for each key, or 0 without per-key rate limits.
+  public synchronized double getKeyPermitsPerSecond() {
+    return keyPermitsPerSecond;
+  }
+
+  public synchronized int getKeyBurst() {
+    return keyBurst;
+  }
+
+  /**
+   * Returns the next key to use and counts a request against it, waiting for the key's rate
+   * limit if every key is busy. Fails with {@link StockQuoteRateLimitException} when every key
+   * is quarantined or out of quota.
+   */
+  public String acquire() {
+    Lease lease = reserve();
+    if (lease.getWaitNanos() > 0) {
+      try {
+        TimeUnit.NANOSECONDS.sleep(lease.getWaitNanos());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new StockQuoteServiceException("Interrupted while waiting for an API key", e);
+      }
+    }
+    return lease.getKey();
+  }
+
+  /**
+   * Like {@link #acquire()}, but leaves the waiting to the caller, which lets asynchronous
+   * callers delay their request instead of blocking a thread.
+   */
+  public synchronized Lease reserve() {
+    if (keys.isEmpty()) {
+      throw new StockQuoteServiceException("No API keys configured");
+    }
+    resetIfNewDay();
+    long now = System.nanoTime();
+    KeyState chosen = null;
+    long chosenWait = 0;
+    for (int i = 0; i < keys.size(); i++) {
+      KeyState candidate = keys.get((next + i) % keys.size());
+      if (!isAvailable(candidate, now)) {
+        continue;
+      }
+      // The key that is free soonest wins; the strategy breaks ties
+      long wait = candidate.rateLimiter == null ? 0
+          : candidate.rateLimiter.getWaitTime().toNanos();
+      if (chosen == null || wait < chosenWait || (wait == chosenWait
+          && strategy == Strategy.LEAST_USED && candidate.usedToday < chosen.usedToday)) {
+        chosen = candidate;
+        chosenWait = wait;
+      }
+    }
+    if (chosen == null) {
+      throw new StockQuoteRateLimitException(
+          "All " + keys.size() + " API keys are quarantined or out of quota",
+          earliestRelease(now), null);
+    }
+    next = (keys.indexOf(chosen) + 1) % keys.size();
+    chosen.usedToday++;
+    chosen.usedTotal++;
+    return new Lease(chosen.key,
+        chosen.rateLimiter == null ? 0 : chosen.rateLimiter.reserve());
+  }
+
+  // Keeps the key out of rotation, e.g. after the provider answered 429 or 401 for it.
+  public synchronized void quarantine(String key, Duration duration) {
+    KeyState state = find(key);
+    if (state != null) {
+      state.quarantinedUntil = Math.max(state.quarantinedUntil, System.nanoTime()
+          + duration.toNanos());
+      state.quarantined = true;
+    }
+  }
+
+  public synchronized boolean isQuarantined(String key) {
+    KeyState state = find(key);
+    return state != null && state.quarantined && state.quarantinedUntil - System.nanoTime() > 0;
+  }
+
+  public synchronized long getUsageToday(String key) {
+    resetIfNewDay();
+    KeyState state = find(key);
+    return state == null ? 0 : state.usedToday;
+  }
+
+  public synchronized long getTotalUsage(String key) {
+    KeyState state = find(key);
+    return state == null ? 0 : state.usedTotal;
+  }
+
+  // Requests left today for the key, or Long.MAX_VALUE without a daily quota.
+  public synchronized long getRemainingQuota(String key) {
+    if (dailyQuotaPerKey <= 0) {
+      return Long.MAX_VALUE;
+    }
+    return Math.max(0, dailyQuotaPerKey - getUsageToday(key));
+  }
+
+  public synchronized int getAvailableKeyCount() {
+    resetIfNewDay();
+    long now = System.nanoTime();
+    int available = 0;
+    for (KeyState state : keys) {
+      if (isAvailable(state, now)) {
+        available++;
+      }
+    }
+    return available;
+  }
+
+  public synchronized List<String> getKeys() {
+    List<String> names = new ArrayList<>();
+    for (KeyState state : keys) {
+      names.add(state.key);
+    }
+    return Collections.unmodifiableList(names);
+  }
+
+  private boolean isAvailable(KeyState state, long now) {
+    if (state.quarantined && state.quarantinedUntil - now > 0) {
+      return false;
+    }
+    state.quarantined = false;
+    return dailyQuotaPerKey <= 0 || state.usedToday < dailyQuotaPerKey;
+  }
+
+  // When the first key becomes usable again: the end of its quarantine or the next UTC day.
+  private Duration earliestRelease(long now) {
+    long earliest = Long.MAX_VALUE;
+    for (KeyState state : keys) {
+      if (dailyQuotaPerKey <= 0 || state.usedToday < dailyQuotaPerKey) {
+        earliest = Math.min(earliest, state.quarantinedUntil - now);
+      }
+    }
+    if (earliest == Long.MAX_VALUE) {
+      return Duration.between(LocalDateTime.now(ZoneOffset.UTC),
+          quotaDay.plusDays(1).atStartOfDay());
+    }
+    return Duration.ofNanos(Math.max(0, earliest));
+  }
+
+  private void resetIfNewDay() {
+    LocalDate today = LocalDate.now(ZoneOffset.UTC);
+    if (!today.equals(quotaDay)) {
+      quotaDay = today;
+      for (KeyState state : keys) {
+        state.usedToday = 0;
+      }
+    }
+  }
+
+  private KeyState find(String key) {
+    for (KeyState state : keys) {
+      if (state.key.equals(key)) {
+        return state;
+      }
+    }
+    return null;
+  }
+
+  // A key handed out by reserve(), usable once getWaitNanos() have passed.
+  public static final class Lease {
+
+    private final String key;
+    private final long waitNanos;
+
+    private Lease(String key, long waitNanos) {
+      this.key = key;
+      this.waitNanos = waitNanos;
+    }
+
+    public String getKey() {
+      return key;
+    }
+
+    public long getWaitNanos() {
+      return waitNanos;
+    }
+  }
+
+  private static final class KeyState {
+
+    private final String key;
+    private long usedToday;
+    private long usedTotal;
+    private boolean quarantined;
+    private long quarantinedUntil;
+    private RateLimiter rateLimiter;
+
+    private KeyState(String key) {
+      this.key = key;
+    }
+  }
+}
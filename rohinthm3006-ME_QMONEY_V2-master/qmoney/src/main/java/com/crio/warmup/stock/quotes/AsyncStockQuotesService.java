@@ -0,0 +1,36 @@
+
+package com.crio.warmup.stock.quotes;
+
+import com.crio.warmup.stock.dto.Candle;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking sibling of {@link StockQuotesService}. Implementations complete the returned
+ * future from their I/O callbacks instead of holding a thread per request, and fail it with a
+ * {@link com.crio.warmup.stock.exception.StockQuoteServiceException} on invalid responses.
+ */
+public interface AsyncStockQuotesService {
+
+  CompletableFuture<List<Candle>> getStockQuoteAsync(String symbol, LocalDate from,
+      LocalDate to);
+
+  /**
+   * Returns the service itself when it is already asynchronous, otherwise an adapter that calls
+   * the blocking service on the caller's thread and returns an already completed future.
+   */
+  static AsyncStockQuotesService of(StockQuotesService stockQuotesService) {
+    if (stockQuotesService instanceof AsyncStockQuotesService) {
+      return (AsyncStockQuotesService) stockQuotesService;
+    }
+    return (symbol, from, to) -> {
+      try {
+        return CompletableFuture.completedFuture(
+            stockQuotesService.getStockQuote(symbol, from, to));
+      } catch (Exception e) {
+        return CompletableFuture.failedFuture(e);
+      }
+    };
+  }
+}
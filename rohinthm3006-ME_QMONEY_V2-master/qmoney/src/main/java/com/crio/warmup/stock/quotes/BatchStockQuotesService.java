@@ -0,0 +1,111 @@
+
+package com.crio.warmup.stock.quotes;
+
+import com.crio.warmup.stock.dto.Candle;
+import com.crio.warmup.stock.dto.QuoteRequest;
+import com.crio.warmup.stock.exception.StockQuoteServiceException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Fetches the quotes of many symbols in one call, for providers that can do better than one
+ * round trip per symbol.
+ *
+ * <p>The result maps each requested symbol, as spelled in its first request, to its candles.
+ * Requests for the same symbol are merged into one covering their combined range. A symbol whose
+ * fetch failed is left out of the map rather than failing the batch, so callers can retry it on
+ * its own and get the provider's error.
+ *
+ * <p>Neither provider has a multi-symbol endpoint, so batching is opt-in through
+ * {@link BatchingStockQuotesService} rather than built into the providers.
+ */
+public interface BatchStockQuotesService {
+
+  CompletableFuture<Map<String, List<Candle>>> getStockQuotesAsync(List<QuoteRequest> requests);
+
+  default Map<String, List<Candle>> getStockQuotes(List<QuoteRequest> requests)
+      throws StockQuoteServiceException {
+    try {
+      return getStockQuotesAsync(requests).join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new StockQuoteServiceException(e.getMessage(), e.getCause());
+    }
+  }
+
+  /**
+   * Starts the batch and returns one future per merged symbol, keyed as in the batch result.
+   * Implementations that know why a symbol failed fail its future with the provider's error, so
+   * callers need not fetch it again. By default a symbol left out of the batch completes with
+   * null.
+   */
+  default Map<String, CompletableFuture<List<Candle>>> startStockQuotes(
+      List<QuoteRequest> requests) {
+    CompletableFuture<Map<String, List<Candle>>> batch = getStockQuotesAsync(requests);
+    Map<String, CompletableFuture<List<Candle>>> quotes = new LinkedHashMap<>();
+    for (QuoteRequest request : merge(requests)) {
+      quotes.put(request.getSymbol(),
+          batch.handle((candles, error) -> candles == null ? null
+              : candles.get(request.getSymbol())));
+    }
+    return quotes;
+  }
+
+  // One request per symbol, ignoring case, covering the combined range of its requests.
+  static List<QuoteRequest> merge(List<QuoteRequest> requests) {
+    Map<String, QuoteRequest> merged = new LinkedHashMap<>();
+    for (QuoteRequest request : requests) {
+      merged.merge(request.getSymbol().toUpperCase(Locale.ROOT), request,
+          (a, b) -> new QuoteRequest(a.getSymbol(), min(a.getFrom(), b.getFrom()),
+              max(a.getTo(), b.getTo())));
+    }
+    return new ArrayList<>(merged.values());
+  }
+
+  /**
+   * Default batch implementation: merges the requests per symbol and sends them all at once
+   * through the asynchronous API, so every fetch is in flight at the same time.
+   */
+  static CompletableFuture<Map<String, List<Candle>>> fanOut(
+      AsyncStockQuotesService asyncQuotesService, List<QuoteRequest> requests) {
+    List<QuoteRequest> symbols = merge(requests);
+    List<CompletableFuture<List<Candle>>> fetches = new ArrayList<>();
+    for (QuoteRequest request : symbols) {
+      CompletableFuture<List<Candle>> fetch;
+      try {
+        fetch = asyncQuotesService.getStockQuoteAsync(request.getSymbol(), request.getFrom(),
+            request.getTo());
+      } catch (RuntimeException e) {
+        fetch = CompletableFuture.failedFuture(e);
+      }
+      fetches.add(fetch.exceptionally(error -> null));
+    }
+    return CompletableFuture.allOf(fetches.toArray(new CompletableFuture[0]))
+        .thenApply(done -> {
+          Map<String, List<Candle>> quotes = new LinkedHashMap<>();
+          for (int i = 0; i < symbols.size(); i++) {
+            List<Candle> candles = fetches.get(i).join();
+            if (candles != null) {
+              quotes.put(symbols.get(i).getSymbol(), candles);
+            }
+          }
+          return quotes;
+        });
+  }
+
+  private static LocalDate min(LocalDate a, LocalDate b) {
+    return a.isBefore(b) ? a : b;
+  }
+
+  private static LocalDate max(LocalDate a, LocalDate b) {
+    return a.isAfter(b) ? a : b;
+  }
+}
@@ -0,0 +1,112 @@
+package com.crio.warmup.stock.quotes;
+
+import com.crio.warmup.stock.dto.Candle;
+import com.crio.warmup.stock.dto.CandleSeries;
+import com.crio.warmup.stock.dto.QuoteRequest;
+import com.crio.warmup.stock.exception.StockQuoteServiceException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Opts a service into {@link BatchStockQuotesService}, so that a portfolio is fetched up front
+ * with one batch call instead of symbol by symbol as its trades are computed.
+ *
+ * <p>Each symbol of a batch is fetched through the wrapped service's own blocking call, so a
+ * batch goes through the same transport, rate limiter, caches and circuit breakers as single
+ * requests. At most {@code maxInFlight} fetches run at once across all batches of this service;
+ * the rest wait in line. A symbol that fails is reported with its error rather than fetched
+ * again.
+ *
+ * <p>The fetches run on threads owned by this service; {@link #close()} releases them. Idle
+ * threads also exit on their own after a minute, so an instance that is dropped without being
+ * closed does not pin threads for the life of the JVM.
+ */
+public class BatchingStockQuotesService implements StockQuotesService, CandleSeriesService,
+    BatchStockQuotesService, AutoCloseable {
+
+  private static final AtomicInteger POOLS = new AtomicInteger();
+
+  private final StockQuotesService delegate;
+  private final ThreadPoolExecutor fetchers;
+
+  public BatchingStockQuotesService(StockQuotesService delegate, int maxInFlight) {
+    if (maxInFlight < 1) {
+      throw new IllegalArgumentException("maxInFlight must be positive");
+    }
+    this.delegate = delegate;
+    int pool = POOLS.incrementAndGet();
+    AtomicInteger count = new AtomicInteger();
+    this.fetchers = new ThreadPoolExecutor(maxInFlight, maxInFlight, 1, TimeUnit.MINUTES,
+        new LinkedBlockingQueue<>(), runnable -> {
+          Thread thread =
+              new Thread(runnable, "quote-batch-" + pool + "-" + count.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+    fetchers.allowCoreThreadTimeOut(true);
+  }
+
+  // Lets the fetches already started finish, then releases the fetch threads. Batches started
+  // after this fail with a RejectedExecutionException.
+  @Override
+  public void close() {
+    fetchers.shutdown();
+  }
+
+  @Override
+  public List<Candle> getStockQuote(String symbol, LocalDate from, LocalDate to)
+      throws JsonProcessingException, StockQuoteServiceException {
+    return delegate.getStockQuote(symbol, from, to);
+  }
+
+  @Override
+  public CandleSeries getCandleSeries(String symbol, LocalDate from, LocalDate to)
+      throws JsonProcessingException, StockQuoteServiceException {
+    return CandleSeriesService.of(delegate).getCandleSeries(symbol, from, to);
+  }
+
+  @Override
+  public CompletableFuture<Map<String, List<Candle>>> getStockQuotesAsync(
+      List<QuoteRequest> requests) {
+    Map<String, CompletableFuture<List<Candle>>> fetches = startStockQuotes(requests);
+    return CompletableFuture.allOf(fetches.values().toArray(new CompletableFuture[0]))
+        .handle((done, error) -> {
+          Map<String, List<Candle>> quotes = new LinkedHashMap<>();
+          for (Map.Entry<String, CompletableFuture<List<Candle>>> fetch : fetches.entrySet()) {
+            if (!fetch.getValue().isCompletedExceptionally()) {
+              quotes.put(fetch.getKey(), fetch.getValue().join());
+            }
+          }
+          return quotes;
+        });
+  }
+
+  @Override
+  public Map<String, CompletableFuture<List<Candle>>> startStockQuotes(
+      List<QuoteRequest> requests) {
+    Map<String, CompletableFuture<List<Candle>>> fetches = new LinkedHashMap<>();
+    for (QuoteRequest request : BatchStockQuotesService.merge(requests)) {
+      fetches.put(request.getSymbol(), CompletableFuture.supplyAsync(() -> fetch(request),
+          fetchers));
+    }
+    return fetches;
+  }
+
+  private List<Candle> fetch(QuoteRequest request) {
+    try {
+      return CandleSeriesService.of(delegate).getCandleSeries(request.getSymbol(),
+          request.getFrom(), request.getTo()).asCandles();
+    } catch (JsonProcessingException e) {
+      throw new CompletionException(new StockQuoteServiceException(e.getMessage(), e));
+    }
+  }
+}
@@ -0,0 +1,215 @@
+
+package com.crio.warmup.stock.quotes;
+
+import com.crio.warmup.stock.dto.Candle;
+import com.crio.warmup.stock.exception.StockQuoteServiceException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Wraps any {@link StockQuotesService} and keeps the candles it returns per symbol, so that a
+ * later request for an already fetched range is served from memory and a request that extends
+ * past the cached range only fetches the missing gaps from the provider.
+ *
+ * <p>The cache is bounded by a number of candles; when the budget is exceeded the least recently
+ * used symbols are evicted first.
+ */
+public class CachingStockQuotesService implements StockQuotesService {
+
+  // Roughly 100 bytes per cached candle, so the default is in the order of 200 MB.
+  public static final long DEFAULT_MAX_CACHED_CANDLES = 2_000_000L;
+
+  private final StockQuotesService delegate;
+  private final long maxCachedCandles;
+  private final LinkedHashMap<String, SymbolHistory> histories =
+      new LinkedHashMap<>(16, 0.75f, true);
+  private long cachedCandles;
+
+  public CachingStockQuotesService(StockQuotesService delegate) {
+    this(delegate, DEFAULT_MAX_CACHED_CANDLES);
+  }
+
+  public CachingStockQuotesService(StockQuotesService delegate, long maxCachedCandles) {
+    if (maxCachedCandles <= 0) {
+      throw new IllegalArgumentException("maxCachedCandles must be positive");
+    }
+    this.delegate = delegate;
+    this.maxCachedCandles = maxCachedCandles;
+  }
+
+  @Override
+  public List<Candle> getStockQuote(String symbol, LocalDate from, LocalDate to)
+      throws JsonProcessingException, StockQuoteServiceException {
+    if (from.isAfter(to)) {
+      return delegate.getStockQuote(symbol, from, to);
+    }
+    String key = symbol.toUpperCase(Locale.ROOT);
+
+    SymbolHistory known;
+    List<LocalDate[]> gaps;
+    synchronized (this) {
+      known = histories.get(key);
+      if (known == null) {
+        gaps = new ArrayList<>();
+        gaps.add(new LocalDate[] {from, to});
+      } else {
+        gaps = known.missingRanges(from, to);
+        if (gaps.isEmpty()) {
+          return known.slice(from, to);
+        }
+      }
+    }
+
+    // Provider calls happen outside the lock so that other symbols are not blocked meanwhile.
+    List<List<Candle>> fetched = new ArrayList<>();
+    for (LocalDate[] gap : gaps) {
+      fetched.add(delegate.getStockQuote(symbol, gap[0], gap[1]));
+    }
+    List<Candle> result = merge(key, known, gaps, fetched, from, to);
+    if (result != null) {
+      return result;
+    }
+
+    // The history the gaps were computed against was invalidated or evicted meanwhile, so the
+    // gaps alone would leave holes; fetch the whole range instead.
+    List<LocalDate[]> whole = new ArrayList<>();
+    whole.add(new LocalDate[] {from, to});
+    return merge(key, null, whole,
+        Collections.singletonList(delegate.getStockQuote(symbol, from, to)), from, to);
+  }
+
+  // Adds fetched gaps to the symbol's history and returns from..to, or null if the history is no
+  // longer the one the gaps were computed against and from..to would come back incomplete.
+  private synchronized List<Candle> merge(String key, SymbolHistory known,
+      List<LocalDate[]> gaps, List<List<Candle>> fetched, LocalDate from, LocalDate to) {
+    SymbolHistory history = histories.get(key);
+    if (known != null && history != known) {
+      return null;
+    }
+    if (history == null) {
+      history = new SymbolHistory();
+      histories.put(key, history);
+    }
+    int sizeBefore = history.size();
+    for (int i = 0; i < gaps.size(); i++) {
+      history.add(gaps.get(i)[0], gaps.get(i)[1], fetched.get(i));
+    }
+    cachedCandles += history.size() - sizeBefore;
+    if (!history.missingRanges(from, to).isEmpty()) {
+      return null;
+    }
+    List<Candle> result = history.slice(from, to);
+    evictIfNeeded();
+    return result;
+  }
+
+  public synchronized void invalidate(String symbol) {
+    SymbolHistory removed = histories.remove(symbol.toUpperCase(Locale.ROOT));
+    if (removed != null) {
+      cachedCandles -= removed.size();
+    }
+  }
+
+  public synchronized void clear() {
+    histories.clear();
+    cachedCandles = 0;
+  }
+
+  public synchronized long getCachedCandleCount() {
+    return cachedCandles;
+  }
+
+  public synchronized int getCachedSymbolCount() {
+    return histories.size();
+  }
+
+  private void evictIfNeeded() {
+    Iterator<Map.Entry<String, SymbolHistory>> eldest = histories.entrySet().iterator();
+    while (cachedCandles > maxCachedCandles && eldest.hasNext()) {
+      cachedCandles -= eldest.next().getValue().size();
+      eldest.remove();
+    }
+  }
+
+  /**
+   * Candles of one symbol together with the date ranges that were already asked from the
+   * provider. Ranges are kept because a fetched range may legitimately contain no candles
+   * (weekends, holidays) and must not be fetched again.
+   */
+  private static final class SymbolHistory {
+
+    private final TreeMap<LocalDate, Candle> candles = new TreeMap<>();
+    // Disjoint, non-adjacent fetched ranges keyed by their start date.
+    private final TreeMap<LocalDate, LocalDate> covered = new TreeMap<>();
+
+    int size() {
+      return candles.size();
+    }
+
+    List<Candle> slice(LocalDate from, LocalDate to) {
+      return new ArrayList<>(candles.subMap(from, true, to, true).values());
+    }
+
+    List<LocalDate[]> missingRanges(LocalDate from, LocalDate to) {
+      List<LocalDate[]> gaps = new ArrayList<>();
+      LocalDate cursor = from;
+      Map.Entry<LocalDate, LocalDate> floor = covered.floorEntry(from);
+      if (floor != null && !floor.getValue().isBefore(from)) {
+        cursor = floor.getValue().plusDays(1);
+      }
+      for (Map.Entry<LocalDate, LocalDate> range : covered.subMap(from, false, to, true)
+          .entrySet()) {
+        if (cursor.isAfter(to)) {
+          break;
+        }
+        if (range.getKey().isAfter(cursor)) {
+          gaps.add(new LocalDate[] {cursor, range.getKey().minusDays(1)});
+        }
+        if (!range.getValue().isBefore(cursor)) {
+          cursor = range.getValue().plusDays(1);
+        }
+      }
+      if (!cursor.isAfter(to)) {
+        gaps.add(new LocalDate[] {cursor, to});
+      }
+      return gaps;
+    }
+
+    void add(LocalDate from, LocalDate to, List<Candle> fetched) {
+      if (fetched != null) {
+        for (Candle candle : fetched) {
+          if (candle != null && candle.getDate() != null) {
+            candles.put(candle.getDate(), candle);
+          }
+        }
+      }
+      LocalDate start = from;
+      LocalDate end = to;
+      Map.Entry<LocalDate, LocalDate> floor = covered.floorEntry(start);
+      if (floor != null && !floor.getValue().isBefore(start.minusDays(1))) {
+        start = floor.getKey();
+        if (floor.getValue().isAfter(end)) {
+          end = floor.getValue();
+        }
+      }
+      Iterator<Map.Entry<LocalDate, LocalDate>> overlapping =
+          covered.subMap(start, true, end.plusDays(1), true).entrySet().iterator();
+      while (overlapping.hasNext()) {
+        LocalDate rangeEnd = overlapping.next().getValue();
+        if (rangeEnd.isAfter(end)) {
+          end = rangeEnd;
+        }
+        overlapping.remove();
+      }
+      covered.put(start, end);
+    }
+  }
+}
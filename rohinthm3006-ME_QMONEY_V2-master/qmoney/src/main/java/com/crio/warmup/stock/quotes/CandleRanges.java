@@ -0,0 +1,44 @@
+
+package com.crio.warmup.stock.quotes;
+
+import com.crio.warmup.stock.dto.Candle;
+import com.crio.warmup.stock.dto.CandleSeries;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+public final class CandleRanges {
+
+  private CandleRanges() {
+  }
+
+  /**
+   * Returns the candles of a date-sorted list that fall within {@code from..to}, both inclusive.
+   * A {@link CandleSeries} view is sliced by binary search without copying.
+   */
+  public static List<Candle> between(List<? extends Candle> candles, LocalDate from,
+      LocalDate to) {
+    if (candles == null) {
+      return new ArrayList<>();
+    }
+    CandleSeries series = CandleSeries.viewOf(candles);
+    if (series != null) {
+      return series.slice(from, to).asCandles();
+    }
+    List<Candle> slice = new ArrayList<>();
+    for (Candle candle : candles) {
+      LocalDate date = candle.getDate();
+      if (date.isAfter(to)) {
+        break;
+      }
+      if (!date.isBefore(from)) {
+        slice.add(candle);
+      }
+    }
+    return slice;
+  }
+
+  public static boolean covers(LocalDate from, LocalDate to, LocalDate start, LocalDate end) {
+    return !from.isAfter(start) && !to.isBefore(end);
+  }
+}
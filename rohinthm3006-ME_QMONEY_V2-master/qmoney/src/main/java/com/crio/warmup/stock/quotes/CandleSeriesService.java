@@ -0,0 +1,30 @@
+package com.crio.warmup.stock.quotes;
+
+import com.crio.warmup.stock.dto.CandleSeries;
+import com.crio.warmup.stock.exception.StockQuoteServiceException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import java.time.LocalDate;
+
+/**
+ * Columnar sibling of {@link StockQuotesService}, for callers that only read prices and would
+ * rather not have a candle object per day. Providers that decode into a {@link CandleSeries}
+ * directly implement it.
+ */
+public interface CandleSeriesService {
+
+  CandleSeries getCandleSeries(String symbol, LocalDate from, LocalDate to)
+      throws JsonProcessingException, StockQuoteServiceException;
+
+  /**
+   * Returns the service itself when it already serves series, otherwise an adapter that converts
+   * the candles of the blocking service. Lists from {@link CandleSeries#asCandles()} convert
+   * without copying, so wrappers that pass a provider's list through keep the fast path.
+   */
+  static CandleSeriesService of(StockQuotesService stockQuotesService) {
+    if (stockQuotesService instanceof CandleSeriesService) {
+      return (CandleSeriesService) stockQuotesService;
+    }
+    return (symbol, from, to) ->
+        CandleSeries.of(stockQuotesService.getStockQuote(symbol, from, to));
+  }
+}
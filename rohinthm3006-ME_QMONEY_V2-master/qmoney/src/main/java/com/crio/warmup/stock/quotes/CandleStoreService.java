@@ -0,0 +1,122 @@
+
+package com.crio.warmup.stock.quotes;
+
+import com.crio.warmup.stock.dto.Candle;
+import com.crio.warmup.stock.exception.StockQuoteServiceException;
+import com.crio.warmup.stock.store.CandleStore;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Serves quotes from a local {@link CandleStore}.
+ *
+ * <p>Without an upstream service only stored candles are returned, which lets
+ * {@code PortfolioManagerImpl} run entirely against local data, for example a store filled from
+ * end-of-day snapshot files by {@link com.crio.warmup.stock.store.EodSnapshotIngester}. With an
+ * upstream service the store acts as a read-through tier: ranges outside the stored coverage are
+ * fetched from the upstream provider, merged into the store and then served from disk.
+ *
+ * <p>{@link #refresh} keeps stored histories current without fetching them again: it asks the
+ * upstream provider only for the days after the last stored date, plus a short trailing window
+ * that providers may still correct, and appends them to the store.
+ */
+public class CandleStoreService implements StockQuotesService {
+
+  // Enough to cover a week of late corrections, such as split or dividend adjustments.
+  public static final int DEFAULT_REVALIDATION_DAYS = 7;
+
+  private final CandleStore store;
+  private final StockQuotesService upstream;
+  private int revalidationDays = DEFAULT_REVALIDATION_DAYS;
+
+  public CandleStoreService(CandleStore store) {
+    this(store, null);
+  }
+
+  public CandleStoreService(CandleStore store, StockQuotesService upstream) {
+    this.store = store;
+    this.upstream = upstream;
+  }
+
+  public CandleStore getStore() {
+    return store;
+  }
+
+  public int getRevalidationDays() {
+    return revalidationDays;
+  }
+
+  public void setRevalidationDays(int revalidationDays) {
+    if (revalidationDays < 0) {
+      throw new IllegalArgumentException("revalidationDays must not be negative");
+    }
+    this.revalidationDays = revalidationDays;
+  }
+
+  /**
+   * Brings a stored symbol up to {@code to}, fetching the days after its last stored candle and
+   * the last {@link #getRevalidationDays()} days again. Returns the number of candles fetched;
+   * symbols with nothing stored yet are left alone and return zero.
+   */
+  public int refresh(String symbol, LocalDate to)
+      throws JsonProcessingException, StockQuoteServiceException {
+    if (upstream == null) {
+      throw new IllegalStateException("No upstream service to refresh from");
+    }
+    try {
+      CandleStore.Coverage coverage = store.getCoverage(symbol);
+      if (coverage == null) {
+        return 0;
+      }
+      // From the last stored candle rather than the end of the coverage, which may have been
+      // requested up to today or beyond, before those days had any candles
+      LocalDate lastStored = store.getLastStoredDate(symbol);
+      LocalDate from = lastStored == null ? coverage.getFrom()
+          : lastStored.plusDays(1).minusDays(revalidationDays);
+      if (from.isBefore(coverage.getFrom())) {
+        from = coverage.getFrom();
+      }
+      if (from.isAfter(to)) {
+        return 0;
+      }
+      List<Candle> candles = upstream.getStockQuote(symbol, from, to);
+      store.append(symbol, from, to, candles);
+      return candles.size();
+    } catch (IOException e) {
+      throw new StockQuoteServiceException("Candle store failure for " + symbol, e);
+    }
+  }
+
+  @Override
+  public List<Candle> getStockQuote(String symbol, LocalDate from, LocalDate to)
+      throws JsonProcessingException, StockQuoteServiceException {
+    try {
+      if (upstream != null && !from.isAfter(to)) {
+        fetchMissing(symbol, from, to);
+      }
+      return store.read(symbol, from, to);
+    } catch (IOException e) {
+      throw new StockQuoteServiceException("Candle store failure for " + symbol, e);
+    }
+  }
+
+  private void fetchMissing(String symbol, LocalDate from, LocalDate to)
+      throws IOException, JsonProcessingException {
+    CandleStore.Coverage coverage = store.getCoverage(symbol);
+    if (coverage == null) {
+      store.merge(symbol, from, to, upstream.getStockQuote(symbol, from, to));
+      return;
+    }
+    // Gaps are widened to touch the stored range so that the coverage stays contiguous.
+    if (from.isBefore(coverage.getFrom())) {
+      LocalDate gapEnd = coverage.getFrom().minusDays(1);
+      store.merge(symbol, from, gapEnd, upstream.getStockQuote(symbol, from, gapEnd));
+    }
+    if (to.isAfter(coverage.getTo())) {
+      LocalDate gapStart = coverage.getTo().plusDays(1);
+      store.append(symbol, gapStart, to, upstream.getStockQuote(symbol, gapStart, to));
+    }
+  }
+}
@@ -0,0 +1,143 @@
+
+package com.crio.warmup.stock.quotes;
+
+import java.time.Duration;
+
+/**
+ * Tracks the health of one quote provider from the outcome of its recent calls.
+ *
+ * <p>A call counts as failed when it throws or takes longer than the slow-call threshold. Once
+ * the failure rate over the last {@code windowSize} calls reaches the threshold the breaker opens
+ * and {@link #allowRequest} refuses every call, so callers fail over at once instead of waiting
+ * for the provider to time out. After the open duration a single probe call is let through: if it
+ * succeeds the breaker closes again, otherwise it stays open for another open duration.
+ */
+public class CircuitBreaker {
+
+  public enum State {
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+  }
+
+  public static final int DEFAULT_WINDOW_SIZE = 20;
+  public static final int DEFAULT_MINIMUM_CALLS = 5;
+  public static final double DEFAULT_FAILURE_RATE_THRESHOLD = 0.5;
+  public static final Duration DEFAULT_SLOW_CALL_THRESHOLD = Duration.ofSeconds(5);
+  public static final Duration DEFAULT_OPEN_DURATION = Duration.ofSeconds(30);
+
+  private final int minimumCalls;
+  private final double failureRateThreshold;
+  private final long slowCallNanos;
+  private final long openNanos;
+
+  // Ring buffer of the most recent outcomes, true for a failed or slow call.
+  private final boolean[] outcomes;
+  private int recorded;
+  private int failed;
+
+  private State state = State.CLOSED;
+  private long openedAt;
+  private boolean probeInFlight;
+
+  public CircuitBreaker() {
+    this(DEFAULT_WINDOW_SIZE, DEFAULT_MINIMUM_CALLS, DEFAULT_FAILURE_RATE_THRESHOLD,
+        DEFAULT_SLOW_CALL_THRESHOLD, DEFAULT_OPEN_DURATION);
+  }
+
+  public CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold,
+      Duration slowCallThreshold, Duration openDuration) {
+    this.outcomes = new boolean[windowSize];
+    this.minimumCalls = Math.min(minimumCalls, windowSize);
+    this.failureRateThreshold = failureRateThreshold;
+    this.slowCallNanos = slowCallThreshold.toNanos();
+    this.openNanos = openDuration.toNanos();
+  }
+
+  /**
+   * Returns whether a call may go to the provider now. In the half-open state only the first
+   * caller gets through, as the probe; it must report back with {@link #onSuccess} or
+   * {@link #onFailure}.
+   */
+  public synchronized boolean allowRequest() {
+    if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) {
+      state = State.HALF_OPEN;
+      probeInFlight = false;
+    }
+    switch (state) {
+      case CLOSED:
+        return true;
+      case HALF_OPEN:
+        if (probeInFlight) {
+          return false;
+        }
+        probeInFlight = true;
+        return true;
+      case OPEN:
+      default:
+        return false;
+    }
+  }
+
+  public synchronized void onSuccess(long latencyNanos) {
+    record(latencyNanos > slowCallNanos);
+  }
+
+  public synchronized void onFailure(long latencyNanos) {
+    record(true);
+  }
+
+  /**
+   * Reports a call whose outcome says nothing about the provider's health, such as an unknown
+   * symbol or a rejected quota. It is not recorded, but a half-open probe is freed for the next
+   * caller.
+   */
+  public synchronized void onIgnored() {
+    probeInFlight = false;
+  }
+
+  public synchronized State getState() {
+    return state;
+  }
+
+  public synchronized double getFailureRate() {
+    int calls = Math.min(recorded, outcomes.length);
+    return calls == 0 ? 0 : (double) failed / calls;
+  }
+
+  private void record(boolean failure) {
+    if (state == State.HALF_OPEN) {
+      probeInFlight = false;
+      if (failure) {
+        open();
+      } else {
+        reset();
+      }
+      return;
+    }
+    int slot = recorded % outcomes.length;
+    if (recorded >= outcomes.length && outcomes[slot]) {
+      failed--;
+    }
+    outcomes[slot] = failure;
+    if (failure) {
+      failed++;
+    }
+    recorded++;
+    if (state == State.CLOSED && Math.min(recorded, outcomes.length) >= minimumCalls
+        && getFailureRate() >= failureRateThreshold) {
+      open();
+    }
+  }
+
+  private void open() {
+    state = State.OPEN;
+    openedAt = System.nanoTime();
+  }
+
+  private void reset() {
+    state = State.CLOSED;
+    recorded = 0;
+    failed = 0;
+  }
+}
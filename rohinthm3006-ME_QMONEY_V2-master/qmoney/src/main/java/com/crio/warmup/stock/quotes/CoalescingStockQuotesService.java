@@ -0,0 +1,125 @@
+
+package com.crio.warmup.stock.quotes;
+
+import com.crio.warmup.stock.dto.Candle;
+import com.crio.warmup.stock.exception.StockQuoteServiceException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Lets concurrent callers share one outstanding provider call per symbol.
+ *
+ * <p>A request is registered as in flight while its provider call runs. Any concurrent request
+ * for the same symbol whose range lies within an in-flight range waits for that call and gets
+ * its own slice of the result instead of calling the provider. Requests that are wider than
+ * everything in flight start their own call, which later narrower requests can join in turn.
+ *
+ * <p>Within one portfolio calculation {@code PortfolioFetchPlan} already fetches each symbol
+ * once; this service shares fetches between calculations that run at the same time, such as
+ * those of a long-lived portfolio manager from {@code PortfolioManagerFactory}.
+ */
+public class CoalescingStockQuotesService implements StockQuotesService {
+
+  private final StockQuotesService delegate;
+  private final Map<String, List<InFlight>> inFlight = new HashMap<>();
+
+  public CoalescingStockQuotesService(StockQuotesService delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public List<Candle> getStockQuote(String symbol, LocalDate from, LocalDate to)
+      throws JsonProcessingException, StockQuoteServiceException {
+    String key = symbol.toUpperCase(Locale.ROOT);
+    InFlight joined = null;
+    InFlight leader = null;
+    synchronized (inFlight) {
+      List<InFlight> flights = inFlight.computeIfAbsent(key, k -> new ArrayList<>());
+      for (InFlight flight : flights) {
+        if (CandleRanges.covers(flight.from, flight.to, from, to)
+            && (joined == null || flight.isWiderThan(joined))) {
+          joined = flight;
+        }
+      }
+      if (joined == null) {
+        leader = new InFlight(from, to);
+        flights.add(leader);
+      }
+    }
+
+    if (leader != null) {
+      return lead(key, symbol, leader);
+    }
+    return CandleRanges.between(await(joined), from, to);
+  }
+
+  public int getInFlightCount() {
+    synchronized (inFlight) {
+      return inFlight.values().stream().mapToInt(List::size).sum();
+    }
+  }
+
+  private List<Candle> lead(String key, String symbol, InFlight flight)
+      throws JsonProcessingException {
+    try {
+      List<Candle> candles = delegate.getStockQuote(symbol, flight.from, flight.to);
+      flight.result.complete(candles);
+      return candles;
+    } catch (JsonProcessingException | RuntimeException | Error e) {
+      flight.result.completeExceptionally(e);
+      throw e;
+    } finally {
+      synchronized (inFlight) {
+        List<InFlight> flights = inFlight.get(key);
+        flights.remove(flight);
+        if (flights.isEmpty()) {
+          inFlight.remove(key);
+        }
+      }
+    }
+  }
+
+  private static List<Candle> await(InFlight flight) throws JsonProcessingException {
+    try {
+      return flight.result.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new StockQuoteServiceException("Interrupted waiting for quotes", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof JsonProcessingException) {
+        throw (JsonProcessingException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new StockQuoteServiceException(cause.getMessage(), cause);
+    }
+  }
+
+  private static final class InFlight {
+
+    private final LocalDate from;
+    private final LocalDate to;
+    private final CompletableFuture<List<Candle>> result = new CompletableFuture<>();
+
+    private InFlight(LocalDate from, LocalDate to) {
+      this.from = from;
+      this.to = to;
+    }
+
+    boolean isWiderThan(InFlight other) {
+      return to.toEpochDay() - from.toEpochDay() > other.to.toEpochDay() - other.from.toEpochDay();
+    }
+  }
+}
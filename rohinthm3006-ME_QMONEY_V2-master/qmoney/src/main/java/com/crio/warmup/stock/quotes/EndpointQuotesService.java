@@ -0,0 +1,166 @@
+
+package com.crio.warmup.stock.quotes;
+
+import static java.time.temporal.ChronoUnit.DAYS;
+
+import com.crio.warmup.stock.dto.Candle;
+import com.crio.warmup.stock.exception.StockQuoteServiceException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Returns only the first and the last candle of a range, which is all an annualized return needs,
+ * by asking the provider for small windows at both ends instead of the whole series.
+ *
+ * <p>The window starts at a week so that it spans a weekend, and grows fourfold whenever it comes
+ * back empty, which covers holidays and trading halts. The last candle before a given end date is
+ * remembered per symbol, so lots of the same symbol only fetch their own start window. Ranges
+ * shorter than two windows are fetched whole. Payload size therefore stays the same however long
+ * a position has been held. Create one instance per calculation, because the remembered end
+ * windows are not refreshed.
+ */
+public class EndpointQuotesService implements StockQuotesService, AsyncStockQuotesService {
+
+  public static final int DEFAULT_WINDOW_DAYS = 7;
+
+  // How far back the last candle is searched before the symbol counts as having no data.
+  private static final int MAX_LOOKBACK_DAYS = 366;
+
+  private final AsyncStockQuotesService blocking;
+  private final AsyncStockQuotesService async;
+  private final int windowDays;
+  private final Map<String, CompletableFuture<Candle>> lastCandles = new ConcurrentHashMap<>();
+
+  public EndpointQuotesService(StockQuotesService delegate) {
+    this(delegate, DEFAULT_WINDOW_DAYS);
+  }
+
+  public EndpointQuotesService(StockQuotesService delegate, int windowDays) {
+    // A plain StockQuotesService view, so blocking calls never go through the async client
+    StockQuotesService blockingView = delegate::getStockQuote;
+    this.blocking = AsyncStockQuotesService.of(blockingView);
+    this.async = AsyncStockQuotesService.of(delegate);
+    this.windowDays = windowDays;
+  }
+
+  @Override
+  public List<Candle> getStockQuote(String symbol, LocalDate from, LocalDate to)
+      throws JsonProcessingException, StockQuoteServiceException {
+    try {
+      return endpoints(blocking, symbol, from, to).join();
+    } catch (CompletionException e) {
+      Throwable cause = unwrap(e);
+      if (cause instanceof JsonProcessingException) {
+        throw (JsonProcessingException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new StockQuoteServiceException(cause.getMessage(), cause);
+    }
+  }
+
+  @Override
+  public CompletableFuture<List<Candle>> getStockQuoteAsync(String symbol, LocalDate from,
+      LocalDate to) {
+    return endpoints(async, symbol, from, to);
+  }
+
+  private CompletableFuture<List<Candle>> endpoints(AsyncStockQuotesService quotes,
+      String symbol, LocalDate from, LocalDate to) {
+    if (DAYS.between(from, to) < 2L * windowDays) {
+      return quotes.getStockQuoteAsync(symbol, from, to).thenApply(candles -> {
+        List<Candle> inRange = CandleRanges.between(candles, from, to);
+        return inRange.isEmpty() ? endpointsOf(null, null)
+            : endpointsOf(inRange.get(0), inRange.get(inRange.size() - 1));
+      });
+    }
+    CompletableFuture<Candle> first = firstOnOrAfter(quotes, symbol, from, to, windowDays);
+    CompletableFuture<Candle> last = lastOnOrBefore(quotes, symbol, to);
+    return first.thenCombine(last, (firstCandle, lastCandle) ->
+        lastCandle == null || lastCandle.getDate().isBefore(from)
+            ? endpointsOf(null, null) : endpointsOf(firstCandle, lastCandle));
+  }
+
+  private CompletableFuture<Candle> firstOnOrAfter(AsyncStockQuotesService quotes, String symbol,
+      LocalDate from, LocalDate to, long window) {
+    LocalDate windowEnd = from.plusDays(window - 1).isBefore(to) ? from.plusDays(window - 1) : to;
+    return quotes.getStockQuoteAsync(symbol, from, windowEnd).thenCompose(candles -> {
+      List<Candle> inWindow = CandleRanges.between(candles, from, windowEnd);
+      if (!inWindow.isEmpty()) {
+        return CompletableFuture.completedFuture(inWindow.get(0));
+      }
+      if (!windowEnd.isBefore(to)) {
+        return CompletableFuture.completedFuture(null);
+      }
+      return firstOnOrAfter(quotes, symbol, from, to, window * 4);
+    });
+  }
+
+  private CompletableFuture<Candle> lastOnOrBefore(AsyncStockQuotesService quotes, String symbol,
+      LocalDate to) {
+    String key = symbol.toUpperCase(Locale.ROOT) + "|" + to;
+    CompletableFuture<Candle> cached = lastCandles.get(key);
+    if (cached != null) {
+      return cached;
+    }
+    CompletableFuture<Candle> search = new CompletableFuture<>();
+    cached = lastCandles.putIfAbsent(key, search);
+    if (cached != null) {
+      return cached;
+    }
+    searchBackwards(quotes, symbol, to, windowDays).whenComplete((candle, error) -> {
+      if (error != null) {
+        // Let the next caller try again instead of remembering the failure
+        lastCandles.remove(key, search);
+        search.completeExceptionally(unwrap(error));
+      } else {
+        search.complete(candle);
+      }
+    });
+    return search;
+  }
+
+  private CompletableFuture<Candle> searchBackwards(AsyncStockQuotesService quotes,
+      String symbol, LocalDate to, long window) {
+    LocalDate windowStart = to.minusDays(Math.min(window, MAX_LOOKBACK_DAYS) - 1);
+    return quotes.getStockQuoteAsync(symbol, windowStart, to).thenCompose(candles -> {
+      List<Candle> inWindow = CandleRanges.between(candles, windowStart, to);
+      if (!inWindow.isEmpty()) {
+        return CompletableFuture.completedFuture(inWindow.get(inWindow.size() - 1));
+      }
+      if (window >= MAX_LOOKBACK_DAYS) {
+        return CompletableFuture.completedFuture(null);
+      }
+      return searchBackwards(quotes, symbol, to, window * 4);
+    });
+  }
+
+  private static List<Candle> endpointsOf(Candle first, Candle last) {
+    List<Candle> candles = new ArrayList<>(2);
+    if (first == null || last == null) {
+      return candles;
+    }
+    candles.add(first);
+    if (!last.getDate().equals(first.getDate())) {
+      candles.add(last);
+    }
+    return candles;
+  }
+
+  private static Throwable unwrap(Throwable error) {
+    while ((error instanceof CompletionException || error instanceof ExecutionException)
+        && error.getCause() != null) {
+      error = error.getCause();
+    }
+    return error;
+  }
+}
@@ -0,0 +1,172 @@
+
+package com.crio.warmup.stock.quotes;
+
+import com.crio.warmup.stock.dto.Candle;
+import com.crio.warmup.stock.exception.StockQuoteNotFoundException;
+import com.crio.warmup.stock.exception.StockQuoteRateLimitException;
+import com.crio.warmup.stock.exception.StockQuoteServiceException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import org.springframework.web.client.RestClientResponseException;
+
+/**
+ * Routes each request to the first provider whose {@link CircuitBreaker} allows it, falling
+ * through to the next provider when a call fails. Providers with an open circuit are skipped
+ * without being called, so an outage costs one breaker check instead of an HTTP timeout.
+ *
+ * <p>Only transport errors, 5xx responses and unreadable responses count against a provider's
+ * circuit. An unknown symbol is rethrown at once, since the next provider would not know it
+ * either. Rate limit and other 4xx rejections fall through to the next provider without being
+ * counted, as they concern the request or the caller's quota rather than the provider's health.
+ */
+public class FailoverStockQuotesService implements StockQuotesService, AsyncStockQuotesService {
+
+  private final List<Provider> providers;
+
+  public FailoverStockQuotesService(List<Provider> providers) {
+    if (providers.isEmpty()) {
+      throw new IllegalArgumentException("At least one provider is required");
+    }
+    this.providers = Collections.unmodifiableList(new ArrayList<>(providers));
+  }
+
+  @Override
+  public List<Candle> getStockQuote(String symbol, LocalDate from, LocalDate to)
+      throws JsonProcessingException, StockQuoteServiceException {
+    Exception lastError = null;
+    for (Provider provider : providers) {
+      if (!provider.circuitBreaker.allowRequest()) {
+        continue;
+      }
+      long start = System.nanoTime();
+      try {
+        List<Candle> candles = provider.service.getStockQuote(symbol, from, to);
+        provider.circuitBreaker.onSuccess(System.nanoTime() - start);
+        return candles;
+      } catch (StockQuoteNotFoundException e) {
+        provider.circuitBreaker.onIgnored();
+        throw e;
+      } catch (JsonProcessingException | RuntimeException e) {
+        record(provider, e, start);
+        lastError = e;
+      }
+    }
+    throw noProviderLeft(symbol, lastError);
+  }
+
+  @Override
+  public CompletableFuture<List<Candle>> getStockQuoteAsync(String symbol, LocalDate from,
+      LocalDate to) {
+    return attemptAsync(0, symbol, from, to, null);
+  }
+
+  public List<Provider> getProviders() {
+    return providers;
+  }
+
+  private CompletableFuture<List<Candle>> attemptAsync(int index, String symbol, LocalDate from,
+      LocalDate to, Throwable lastError) {
+    while (index < providers.size() && !providers.get(index).circuitBreaker.allowRequest()) {
+      index++;
+    }
+    if (index == providers.size()) {
+      return CompletableFuture.failedFuture(noProviderLeft(symbol, lastError));
+    }
+    Provider provider = providers.get(index);
+    int next = index + 1;
+    long start = System.nanoTime();
+    CompletableFuture<List<Candle>> call;
+    try {
+      call = AsyncStockQuotesService.of(provider.service).getStockQuoteAsync(symbol, from, to);
+    } catch (RuntimeException e) {
+      call = CompletableFuture.failedFuture(e);
+    }
+    return call
+        .handle((candles, error) -> {
+          if (error == null) {
+            provider.circuitBreaker.onSuccess(System.nanoTime() - start);
+            return CompletableFuture.completedFuture(candles);
+          }
+          Throwable cause = unwrap(error);
+          if (cause instanceof StockQuoteNotFoundException) {
+            provider.circuitBreaker.onIgnored();
+            return CompletableFuture.<List<Candle>>failedFuture(cause);
+          }
+          record(provider, cause, start);
+          return attemptAsync(next, symbol, from, to, cause);
+        })
+        .thenCompose(result -> result);
+  }
+
+  private static void record(Provider provider, Throwable error, long start) {
+    if (isProviderFailure(error)) {
+      provider.circuitBreaker.onFailure(System.nanoTime() - start);
+    } else {
+      provider.circuitBreaker.onIgnored();
+    }
+  }
+
+  // Whether the error says the provider is down or broken, rather than rejecting the request.
+  static boolean isProviderFailure(Throwable error) {
+    if (error instanceof StockQuoteNotFoundException
+        || error instanceof StockQuoteRateLimitException) {
+      return false;
+    }
+    for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+      if (cause instanceof RestClientResponseException) {
+        return ((RestClientResponseException) cause).getRawStatusCode() >= 500;
+      }
+    }
+    return true;
+  }
+
+  // Rethrows the last provider's error, or reports that every circuit was open.
+  private static RuntimeException noProviderLeft(String symbol, Throwable lastError) {
+    if (lastError instanceof StockQuoteServiceException) {
+      return (StockQuoteServiceException) lastError;
+    }
+    if (lastError != null) {
+      return new StockQuoteServiceException(lastError.getMessage(), lastError);
+    }
+    return new StockQuoteServiceException("No healthy quote provider for " + symbol);
+  }
+
+  private static Throwable unwrap(Throwable error) {
+    while ((error instanceof CompletionException || error instanceof ExecutionException)
+        && error.getCause() != null) {
+      error = error.getCause();
+    }
+    return error;
+  }
+
+  public static final class Provider {
+
+    private final String name;
+    private final StockQuotesService service;
+    private final CircuitBreaker circuitBreaker;
+
+    public Provider(String name, StockQuotesService service, CircuitBreaker circuitBreaker) {
+      this.name = name;
+      this.service = service;
+      this.circuitBreaker = circuitBreaker;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public StockQuotesService getService() {
+      return service;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+      return circuitBreaker;
+    }
+  }
+}
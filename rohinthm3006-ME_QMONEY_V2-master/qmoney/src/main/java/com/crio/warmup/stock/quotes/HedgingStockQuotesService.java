@@ -0,0 +1,218 @@
+
+package com.crio.warmup.stock.quotes;
+
+import com.crio.warmup.stock.dto.Candle;
+import com.crio.warmup.stock.dto.CandleSeries;
+import com.crio.warmup.stock.exception.StockQuoteServiceException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Sends each request to a primary provider and, if it has not answered within a hedge delay,
+ * sends the same request to a secondary provider and returns whichever answers first.
+ *
+ * <p>The hedge delay is a percentile of the primary's recent latencies, so with the default 95th
+ * percentile only about one request in twenty is hedged. Until enough latencies have been seen
+ * the initial delay is used. A primary that fails is hedged right away. Both providers' candles
+ * are returned as {@link CandleSeries} views so callers cannot tell which one answered.
+ */
+public class HedgingStockQuotesService implements StockQuotesService, AsyncStockQuotesService {
+
+  public static final double DEFAULT_PERCENTILE = 0.95;
+  public static final Duration DEFAULT_INITIAL_DELAY = Duration.ofMillis(500);
+
+  private static final int LATENCY_WINDOW = 256;
+  private static final int MIN_LATENCY_SAMPLES = 20;
+
+  private final AsyncStockQuotesService primary;
+  private final AsyncStockQuotesService secondary;
+  private final double percentile;
+  private final Duration initialDelay;
+
+  // Ring buffer of the primary's most recent successful latencies in nanoseconds.
+  private final long[] latencies = new long[LATENCY_WINDOW];
+  private int latencyCount;
+
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong hedgesFired = new AtomicLong();
+  private final AtomicLong hedgesWon = new AtomicLong();
+
+  public HedgingStockQuotesService(StockQuotesService primary, StockQuotesService secondary) {
+    this(primary, secondary, DEFAULT_PERCENTILE, DEFAULT_INITIAL_DELAY);
+  }
+
+  public HedgingStockQuotesService(StockQuotesService primary, StockQuotesService secondary,
+      double percentile, Duration initialDelay) {
+    if (percentile <= 0 || percentile > 1) {
+      throw new IllegalArgumentException("percentile must be in (0, 1]");
+    }
+    this.primary = async(primary);
+    this.secondary = async(secondary);
+    this.percentile = percentile;
+    this.initialDelay = initialDelay;
+  }
+
+  @Override
+  public List<Candle> getStockQuote(String symbol, LocalDate from, LocalDate to)
+      throws JsonProcessingException, StockQuoteServiceException {
+    try {
+      return getStockQuoteAsync(symbol, from, to).join();
+    } catch (CompletionException e) {
+      Throwable cause = unwrap(e);
+      if (cause instanceof JsonProcessingException) {
+        throw (JsonProcessingException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new StockQuoteServiceException(cause.getMessage(), cause);
+    }
+  }
+
+  @Override
+  public CompletableFuture<List<Candle>> getStockQuoteAsync(String symbol, LocalDate from,
+      LocalDate to) {
+    requests.incrementAndGet();
+    CompletableFuture<List<Candle>> result = new CompletableFuture<>();
+    AtomicReference<Throwable> primaryError = new AtomicReference<>();
+    AtomicReference<CompletableFuture<List<Candle>>> secondaryCall = new AtomicReference<>();
+    AtomicBoolean hedged = new AtomicBoolean();
+    AtomicInteger failures = new AtomicInteger();
+    long start = System.nanoTime();
+
+    CompletableFuture<List<Candle>> primaryCall = call(primary, symbol, from, to);
+
+    Runnable hedge = () -> {
+      if (result.isDone() || !hedged.compareAndSet(false, true)) {
+        return;
+      }
+      hedgesFired.incrementAndGet();
+      CompletableFuture<List<Candle>> call = call(secondary, symbol, from, to);
+      secondaryCall.set(call);
+      call.whenComplete((candles, error) -> {
+        if (error == null) {
+          if (result.complete(normalize(candles))) {
+            hedgesWon.incrementAndGet();
+            primaryCall.cancel(true);
+          }
+        } else if (failures.incrementAndGet() == 2) {
+          result.completeExceptionally(primaryError.get());
+        }
+      });
+    };
+
+    primaryCall.whenComplete((candles, error) -> {
+      if (error == null) {
+        recordLatency(System.nanoTime() - start);
+        if (result.complete(normalize(candles)) && secondaryCall.get() != null) {
+          secondaryCall.get().cancel(true);
+        }
+        return;
+      }
+      primaryError.set(unwrap(error));
+      // Fail over at once unless the hedge is already out; then its outcome decides
+      hedge.run();
+      if (!hedged.get() || failures.incrementAndGet() == 2) {
+        result.completeExceptionally(primaryError.get());
+      }
+    });
+
+    if (!result.isDone()) {
+      CompletableFuture.delayedExecutor(getHedgeDelay().toNanos(), TimeUnit.NANOSECONDS)
+          .execute(hedge);
+    }
+    return result;
+  }
+
+  // The delay after which a request still waiting on the primary is hedged.
+  public Duration getHedgeDelay() {
+    long[] samples;
+    synchronized (latencies) {
+      if (latencyCount < MIN_LATENCY_SAMPLES) {
+        return initialDelay;
+      }
+      samples = Arrays.copyOf(latencies, Math.min(latencyCount, LATENCY_WINDOW));
+    }
+    Arrays.sort(samples);
+    int index = (int) Math.ceil(percentile * samples.length) - 1;
+    return Duration.ofNanos(samples[Math.max(0, index)]);
+  }
+
+  public long getRequestCount() {
+    return requests.get();
+  }
+
+  public long getHedgesFired() {
+    return hedgesFired.get();
+  }
+
+  // Hedges whose secondary answered before the primary.
+  public long getHedgesWon() {
+    return hedgesWon.get();
+  }
+
+  private void recordLatency(long nanos) {
+    synchronized (latencies) {
+      latencies[latencyCount % LATENCY_WINDOW] = nanos;
+      latencyCount++;
+    }
+  }
+
+  private static List<Candle> normalize(List<Candle> candles) {
+    return CandleSeries.of(candles).asCandles();
+  }
+
+  // Blocking providers are run on a shared pool so that both can be waited on at once.
+  private static AsyncStockQuotesService async(StockQuotesService service) {
+    if (service instanceof AsyncStockQuotesService) {
+      return (AsyncStockQuotesService) service;
+    }
+    return (symbol, from, to) -> CompletableFuture.supplyAsync(() -> {
+      try {
+        return service.getStockQuote(symbol, from, to);
+      } catch (JsonProcessingException e) {
+        throw new CompletionException(e);
+      }
+    }, BlockingCalls.EXECUTOR);
+  }
+
+  // A provider that throws instead of returning a failed future fails or hedges like any other.
+  private static CompletableFuture<List<Candle>> call(AsyncStockQuotesService service,
+      String symbol, LocalDate from, LocalDate to) {
+    try {
+      return service.getStockQuoteAsync(symbol, from, to);
+    } catch (RuntimeException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+
+  private static Throwable unwrap(Throwable error) {
+    while ((error instanceof CompletionException || error instanceof ExecutionException)
+        && error.getCause() != null) {
+      error = error.getCause();
+    }
+    return error;
+  }
+
+  private static final class BlockingCalls {
+
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+      Thread thread = new Thread(runnable, "quote-hedge");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+}
@@ -0,0 +1,44 @@
+package com.crio.warmup.stock.quotes;
+
+import java.time.Duration;
+import java.util.Random;
+
+/**
+ * Distribution of the latency {@link ReplayStockQuotesService} adds to each response. Samples
+ * are drawn from the random source handed in, so a seeded replay delays every request the same
+ * way on every run.
+ */
+public interface LatencyDistribution {
+
+  long sampleNanos(Random random);
+
+  static LatencyDistribution none() {
+    return random -> 0;
+  }
+
+  static LatencyDistribution fixed(Duration latency) {
+    long nanos = latency.toNanos();
+    return random -> nanos;
+  }
+
+  static LatencyDistribution uniform(Duration min, Duration max) {
+    long low = min.toNanos();
+    long spread = max.toNanos() - low;
+    if (low < 0 || spread < 0) {
+      throw new IllegalArgumentException("Expected 0 <= min <= max");
+    }
+    return random -> low + (long) (random.nextDouble() * spread);
+  }
+
+  /**
+   * Log-normal latencies around a median, the long-tailed shape of real provider latencies. A
+   * sigma of 0.5 puts the 99th percentile at about three times the median.
+   */
+  static LatencyDistribution logNormal(Duration median, double sigma) {
+    long nanos = median.toNanos();
+    if (nanos < 0 || sigma < 0) {
+      throw new IllegalArgumentException("median and sigma must not be negative");
+    }
+    return random -> (long) (nanos * Math.exp(sigma * random.nextGaussian()));
+  }
+}
@@ -0,0 +1,253 @@
+package com.crio.warmup.stock.quotes;
+
+import com.crio.warmup.stock.dto.CandleSeries;
+import com.crio.warmup.stock.exception.StockQuoteNotFoundException;
+import com.crio.warmup.stock.exception.StockQuoteRateLimitException;
+import com.crio.warmup.stock.exception.StockQuoteServiceException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the requests one provider could not answer usefully, so that they are not sent
+ * again for a while.
+ *
+ * <p>How long an answer is kept depends on how likely it is to change. An unknown symbol
+ * ({@link StockQuoteNotFoundException}) is kept for a day. A past range without any candles is
+ * kept for a few hours, and also answers any range within it. A quota rejection
+ * ({@link StockQuoteRateLimitException}) holds back every symbol until the provider's
+ * Retry-After, or for a minute. A TTL of zero turns the reason off. Other failures, such as
+ * timeouts or server errors, are transient and never kept.
+ */
+public class NegativeQuoteCache {
+
+  public static final Duration DEFAULT_UNKNOWN_SYMBOL_TTL = Duration.ofDays(1);
+  public static final Duration DEFAULT_EMPTY_RANGE_TTL = Duration.ofHours(6);
+  public static final Duration DEFAULT_QUOTA_TTL = Duration.ofMinutes(1);
+
+  // Past this many symbols, expired entries are dropped and new ones are not kept.
+  private static final int MAX_SYMBOLS = 10_000;
+  // Past this many empty ranges of one symbol, the one expiring first is dropped.
+  private static final int MAX_RANGES_PER_SYMBOL = 16;
+
+  private final long unknownSymbolNanos;
+  private final long emptyRangeNanos;
+  private final long quotaNanos;
+  private final Map<String, Entry> unknownSymbols = new HashMap<>();
+  private final Map<String, List<Entry>> emptyRanges = new HashMap<>();
+  private Entry quota;
+
+  public NegativeQuoteCache() {
+    this(DEFAULT_UNKNOWN_SYMBOL_TTL, DEFAULT_EMPTY_RANGE_TTL, DEFAULT_QUOTA_TTL);
+  }
+
+  public NegativeQuoteCache(Duration unknownSymbolTtl, Duration emptyRangeTtl,
+      Duration quotaTtl) {
+    this.unknownSymbolNanos = unknownSymbolTtl.toNanos();
+    this.emptyRangeNanos = emptyRangeTtl.toNanos();
+    this.quotaNanos = quotaTtl.toNanos();
+  }
+
+  /**
+   * Returns an empty series when the range is known to hold no candles and throws the kept
+   * exception when the symbol is unknown or the quota is spent. Returns {@code null} when the
+   * request has to go to the provider.
+   */
+  public synchronized CandleSeries check(String symbol, LocalDate from, LocalDate to) {
+    long now = System.nanoTime();
+    if (quota != null && quota.expiresAt - now > 0) {
+      throw new StockQuoteRateLimitException(quota.message,
+          Duration.ofNanos(quota.expiresAt - now), null);
+    }
+    String key = key(symbol);
+    Entry unknown = unknownSymbols.get(key);
+    if (unknown != null) {
+      if (unknown.expiresAt - now > 0) {
+        throw new StockQuoteNotFoundException(unknown.message);
+      }
+      unknownSymbols.remove(key);
+    }
+    List<Entry> ranges = liveRanges(key, now);
+    if (ranges != null) {
+      for (Entry empty : ranges) {
+        if (!from.isBefore(empty.from) && !to.isAfter(empty.to)) {
+          return CandleSeries.empty();
+        }
+      }
+    }
+    return null;
+  }
+
+  // Keeps a range that came back without candles, unless it reaches today and may still fill.
+  public synchronized void recordResult(String symbol, LocalDate from, LocalDate to,
+      CandleSeries candles) {
+    if (!candles.isEmpty() || emptyRangeNanos <= 0 || !to.isBefore(LocalDate.now())) {
+      return;
+    }
+    long now = System.nanoTime();
+    String key = key(symbol);
+    List<Entry> ranges = liveRanges(key, now);
+    if (ranges == null) {
+      if (!hasRoom(emptyRanges)) {
+        return;
+      }
+      ranges = new ArrayList<>();
+      emptyRanges.put(key, ranges);
+    }
+    // Overlapping and adjacent ranges are coalesced into one, which lives as long as the
+    // oldest of them
+    Entry merged = new Entry(null, from, to, now + emptyRangeNanos);
+    Iterator<Entry> existing = ranges.iterator();
+    while (existing.hasNext()) {
+      Entry range = existing.next();
+      if (!range.from.isAfter(merged.to.plusDays(1))
+          && !merged.from.isAfter(range.to.plusDays(1))) {
+        existing.remove();
+        merged = new Entry(null, min(range.from, merged.from), max(range.to, merged.to),
+            range.expiresAt - merged.expiresAt < 0 ? range.expiresAt : merged.expiresAt);
+      }
+    }
+    ranges.add(merged);
+    if (ranges.size() > MAX_RANGES_PER_SYMBOL) {
+      Entry first = ranges.get(0);
+      for (Entry range : ranges) {
+        if (range.expiresAt - first.expiresAt < 0) {
+          first = range;
+        }
+      }
+      ranges.remove(first);
+    }
+  }
+
+  public synchronized void recordFailure(String symbol, Throwable failure) {
+    long now = System.nanoTime();
+    if (failure instanceof StockQuoteRateLimitException && quotaNanos > 0) {
+      Duration retryAfter = ((StockQuoteRateLimitException) failure).getRetryAfter();
+      quota = new Entry(failure.getMessage(), null, null,
+          now + (retryAfter != null ? retryAfter.toNanos() : quotaNanos));
+    } else if (failure instanceof StockQuoteNotFoundException && unknownSymbolNanos > 0
+        && hasRoom(unknownSymbols)) {
+      unknownSymbols.put(key(symbol),
+          new Entry(failure.getMessage(), null, null, now + unknownSymbolNanos));
+    }
+  }
+
+  /**
+   * Answers from the cache when it can, and otherwise fetches from the provider and keeps the
+   * outcome.
+   */
+  public CandleSeries fetch(String symbol, LocalDate from, LocalDate to,
+      Supplier<CandleSeries> provider) {
+    CandleSeries known = check(symbol, from, to);
+    if (known != null) {
+      return known;
+    }
+    try {
+      CandleSeries candles = provider.get();
+      recordResult(symbol, from, to, candles);
+      return candles;
+    } catch (StockQuoteServiceException e) {
+      recordFailure(symbol, e);
+      throw e;
+    }
+  }
+
+  public CompletableFuture<CandleSeries> fetchAsync(String symbol, LocalDate from, LocalDate to,
+      Supplier<CompletableFuture<CandleSeries>> provider) {
+    CandleSeries known;
+    try {
+      known = check(symbol, from, to);
+    } catch (StockQuoteServiceException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+    if (known != null) {
+      return CompletableFuture.completedFuture(known);
+    }
+    return provider.get().whenComplete((candles, failure) -> {
+      if (failure == null) {
+        recordResult(symbol, from, to, candles);
+      } else {
+        recordFailure(symbol, failure instanceof CompletionException && failure.getCause() != null
+            ? failure.getCause() : failure);
+      }
+    });
+  }
+
+  // Unexpired empty ranges kept for the symbol, after coalescing.
+  public synchronized int getEmptyRangeCount(String symbol) {
+    List<Entry> ranges = liveRanges(key(symbol), System.nanoTime());
+    return ranges == null ? 0 : ranges.size();
+  }
+
+  public synchronized void clear() {
+    unknownSymbols.clear();
+    emptyRanges.clear();
+    quota = null;
+  }
+
+  private boolean hasRoom(Map<String, ?> entries) {
+    if (entries.size() < MAX_SYMBOLS) {
+      return true;
+    }
+    long now = System.nanoTime();
+    unknownSymbols.values().removeIf(entry -> entry.expiresAt - now <= 0);
+    Iterator<List<Entry>> ranges = emptyRanges.values().iterator();
+    while (ranges.hasNext()) {
+      List<Entry> entriesOfSymbol = ranges.next();
+      entriesOfSymbol.removeIf(entry -> entry.expiresAt - now <= 0);
+      if (entriesOfSymbol.isEmpty()) {
+        ranges.remove();
+      }
+    }
+    return entries.size() < MAX_SYMBOLS;
+  }
+
+  // The symbol's unexpired empty ranges, or null if it has none left.
+  private List<Entry> liveRanges(String key, long now) {
+    List<Entry> ranges = emptyRanges.get(key);
+    if (ranges == null) {
+      return null;
+    }
+    ranges.removeIf(entry -> entry.expiresAt - now <= 0);
+    if (ranges.isEmpty()) {
+      emptyRanges.remove(key);
+      return null;
+    }
+    return ranges;
+  }
+
+  private static LocalDate min(LocalDate a, LocalDate b) {
+    return a.isBefore(b) ? a : b;
+  }
+
+  private static LocalDate max(LocalDate a, LocalDate b) {
+    return a.isAfter(b) ? a : b;
+  }
+
+  private static String key(String symbol) {
+    return symbol.toUpperCase(Locale.ROOT);
+  }
+
+  private static final class Entry {
+
+    private final String message;
+    private final LocalDate from;
+    private final LocalDate to;
+    private final long expiresAt;
+
+    private Entry(String message, LocalDate from, LocalDate to, long expiresAt) {
+      this.message = message;
+      this.from = from;
+      this.to = to;
+      this.expiresAt = expiresAt;
+    }
+  }
+}
@@ -0,0 +1,79 @@
+
+package com.crio.warmup.stock.quotes;
+
+import com.crio.warmup.stock.dto.Candle;
+import com.crio.warmup.stock.dto.CandleSeries;
+import com.crio.warmup.stock.exception.StockQuoteServiceException;
+import com.crio.warmup.stock.store.CandleStore;
+import com.crio.warmup.stock.store.OffHeapCandleCache;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Serves quotes through an {@link OffHeapCandleCache}, fetching ranges that are not cached from
+ * the upstream service.
+ *
+ * <p>Like {@link CandleStoreService}, gaps are widened to touch the cached range so that each
+ * symbol's coverage stays contiguous. Unlike {@link CachingStockQuotesService}, cached candles
+ * live outside the heap, so heap usage does not grow with the number of symbols cached.
+ */
+public class OffHeapCandleCacheService implements StockQuotesService, CandleSeriesService {
+
+  private final OffHeapCandleCache cache;
+  private final CandleSeriesService upstream;
+
+  public OffHeapCandleCacheService(OffHeapCandleCache cache, StockQuotesService upstream) {
+    this.cache = cache;
+    this.upstream = CandleSeriesService.of(upstream);
+  }
+
+  public OffHeapCandleCache getCache() {
+    return cache;
+  }
+
+  @Override
+  public List<Candle> getStockQuote(String symbol, LocalDate from, LocalDate to)
+      throws JsonProcessingException, StockQuoteServiceException {
+    return getCandleSeries(symbol, from, to).asCandles();
+  }
+
+  @Override
+  public CandleSeries getCandleSeries(String symbol, LocalDate from, LocalDate to)
+      throws JsonProcessingException, StockQuoteServiceException {
+    if (from.isAfter(to)) {
+      return CandleSeries.empty();
+    }
+    CandleSeries cached = cache.get(symbol, from, to);
+    if (cached != null) {
+      return cached;
+    }
+    // Provider calls happen outside the cache lock so that other symbols are not blocked.
+    CandleStore.Coverage coverage = cache.getCoverage(symbol);
+    if (coverage != null) {
+      CandleSeries.Builder gaps = CandleSeries.builder(0);
+      if (from.isBefore(coverage.getFrom())) {
+        addAll(gaps, upstream.getCandleSeries(symbol, from, coverage.getFrom().minusDays(1)));
+      }
+      if (to.isAfter(coverage.getTo())) {
+        addAll(gaps, upstream.getCandleSeries(symbol, coverage.getTo().plusDays(1), to));
+      }
+      synchronized (cache) {
+        // The gaps only complete the range if the symbol was not evicted meanwhile.
+        CandleStore.Coverage current = cache.getCoverage(symbol);
+        if (current != null && current.contains(coverage.getFrom(), coverage.getTo())) {
+          return cache.merge(symbol, from, to, gaps.build()).slice(from, to);
+        }
+      }
+    }
+    return cache.merge(symbol, from, to, upstream.getCandleSeries(symbol, from, to))
+        .slice(from, to);
+  }
+
+  private static void addAll(CandleSeries.Builder builder, CandleSeries candles) {
+    for (int i = 0; i < candles.size(); i++) {
+      builder.add(candles.epochDay(i), candles.open(i), candles.high(i), candles.low(i),
+          candles.close(i));
+    }
+  }
+}
@@ -0,0 +1,30 @@
+
+package com.crio.warmup.stock.quotes;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+/**
+ * Holds the JDK {@link HttpClient} shared by the asynchronous quote providers, so that every
+ * request reuses the same connection pool and HTTP/2 connections.
+ */
+public final class QuoteHttpClients {
+
+  private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+
+  private QuoteHttpClients() {
+  }
+
+  public static HttpClient shared() {
+    return Holder.CLIENT;
+  }
+
+  private static final class Holder {
+
+    private static final HttpClient CLIENT = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_2)
+        .followRedirects(HttpClient.Redirect.NORMAL)
+        .connectTimeout(CONNECT_TIMEOUT)
+        .build();
+  }
+}
@@ -0,0 +1,101 @@
+package com.crio.warmup.stock.quotes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Reads quote provider settings such as API keys. A key like {@code tiingo.api.keys} is looked up
+ * as a system property first, then as the environment variable {@code TIINGO_API_KEYS}, then in
+ * a local properties file, and finally in {@code application.properties} on the classpath.
+ *
+ * <p>The local file is {@code qmoney.local.properties} in the working directory, or whatever
+ * {@code qmoney.config} (or {@code QMONEY_CONFIG}) points at. It is not checked in, so secrets
+ * such as API keys belong there or in the environment, never in {@code application.properties}.
+ */
+public final class QuoteProviderConfig {
+
+  private static final String RESOURCE = "application.properties";
+  private static final String LOCAL_FILE_KEY = "qmoney.config";
+  private static final String DEFAULT_LOCAL_FILE = "qmoney.local.properties";
+
+  private QuoteProviderConfig() {
+  }
+
+  public static String get(String key) {
+    String value = System.getProperty(key);
+    if (value == null) {
+      value = System.getenv(key.toUpperCase(Locale.ROOT).replace('.', '_'));
+    }
+    if (value == null) {
+      value = Holder.PROPERTIES.getProperty(key);
+    }
+    return value == null || value.trim().isEmpty() ? null : value.trim();
+  }
+
+  public static String get(String key, String defaultValue) {
+    String value = get(key);
+    return value != null ? value : defaultValue;
+  }
+
+  public static long getLong(String key, long defaultValue) {
+    String value = get(key);
+    return value != null ? Long.parseLong(value) : defaultValue;
+  }
+
+  // Comma-separated values, with blanks dropped.
+  public static List<String> getList(String key) {
+    List<String> values = new ArrayList<>();
+    String value = get(key);
+    if (value != null) {
+      for (String item : value.split(",")) {
+        if (!item.trim().isEmpty()) {
+          values.add(item.trim());
+        }
+      }
+    }
+    return values;
+  }
+
+  private static final class Holder {
+
+    private static final Properties PROPERTIES = load();
+
+    private static Properties load() {
+      Properties properties = new Properties();
+      try (InputStream in =
+          QuoteProviderConfig.class.getClassLoader().getResourceAsStream(RESOURCE)) {
+        if (in != null) {
+          properties.load(in);
+        }
+      } catch (IOException e) {
+        // Fall back to system properties and the environment only.
+      }
+      // The local file overrides the bundled defaults
+      Path localFile = Paths.get(localFileName());
+      if (Files.isRegularFile(localFile)) {
+        try (InputStream in = Files.newInputStream(localFile)) {
+          properties.load(in);
+        } catch (IOException e) {
+          throw new UncheckedIOException("Cannot read " + localFile, e);
+        }
+      }
+      return properties;
+    }
+
+    private static String localFileName() {
+      String name = System.getProperty(LOCAL_FILE_KEY);
+      if (name == null) {
+        name = System.getenv(LOCAL_FILE_KEY.toUpperCase(Locale.ROOT).replace('.', '_'));
+      }
+      return name == null || name.trim().isEmpty() ? DEFAULT_LOCAL_FILE : name.trim();
+    }
+  }
+}
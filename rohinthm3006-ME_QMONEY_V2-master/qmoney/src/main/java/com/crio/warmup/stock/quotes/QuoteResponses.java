@@ -0,0 +1,96 @@
+
+package com.crio.warmup.stock.quotes;
+
+import com.crio.warmup.stock.exception.StockQuoteServiceException;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.zip.GZIPInputStream;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResponseExtractor;
+
+/**
+ * Shared plumbing for decoding provider responses straight from the HTTP body.
+ *
+ * <p>One {@link JsonFactory} is shared by every decoder, so no request pays for its setup.
+ * Requests ask for gzip, and bodies are decoded from the (inflated) byte stream without first
+ * being copied into a {@code String}. Jackson recycles its read and text buffers per thread, so a
+ * parse allocates little beyond the values it returns.
+ */
+public final class QuoteResponses {
+
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  private static final String GZIP = "gzip";
+
+  private QuoteResponses() {
+  }
+
+  public static JsonFactory jsonFactory() {
+    return JSON_FACTORY;
+  }
+
+  // RestTemplate's default request factory does not negotiate compression on its own.
+  public static RequestCallback acceptGzipJson() {
+    return request -> {
+      request.getHeaders().set(HttpHeaders.ACCEPT, "application/json");
+      request.getHeaders().set(HttpHeaders.ACCEPT_ENCODING, GZIP);
+    };
+  }
+
+  public static HttpRequest.Builder acceptGzipJson(HttpRequest.Builder request) {
+    return request.header(HttpHeaders.ACCEPT, "application/json")
+        .header(HttpHeaders.ACCEPT_ENCODING, GZIP);
+  }
+
+  /**
+   * Decodes a RestTemplate response body as it arrives. Errors reading the body are reported as
+   * {@link StockQuoteServiceException}, like any other unusable response.
+   */
+  public static <T> ResponseExtractor<T> decoding(BodyDecoder<T> decoder) {
+    return response -> {
+      try (InputStream body = inflate(response.getBody(),
+          response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING))) {
+        return decoder.decode(body);
+      } catch (IOException e) {
+        throw new StockQuoteServiceException(e.getMessage(), e);
+      }
+    };
+  }
+
+  // The JDK client buffers the body as bytes, which are parsed in place rather than as a String.
+  public static <T> T decode(HttpResponse<byte[]> response, BodyDecoder<T> decoder) {
+    try (InputStream body = inflate(new ByteArrayInputStream(response.body()),
+        response.headers().firstValue(HttpHeaders.CONTENT_ENCODING).orElse(null))) {
+      return decoder.decode(body);
+    } catch (IOException e) {
+      throw new StockQuoteServiceException(e.getMessage(), e);
+    }
+  }
+
+  // Reads a number or numeric string at the current token; null and unparseable values are NaN.
+  static double readPrice(JsonParser parser) throws IOException {
+    return parser.currentToken() == JsonToken.VALUE_NULL ? Double.NaN
+        : parser.getValueAsDouble(Double.NaN);
+  }
+
+  private static InputStream inflate(InputStream body, String contentEncoding)
+      throws IOException {
+    if (body == null) {
+      return new ByteArrayInputStream(new byte[0]);
+    }
+    return GZIP.equalsIgnoreCase(contentEncoding) ? new GZIPInputStream(body) : body;
+  }
+
+  @FunctionalInterface
+  public interface BodyDecoder<T> {
+
+    T decode(InputStream body) throws IOException;
+  }
+}
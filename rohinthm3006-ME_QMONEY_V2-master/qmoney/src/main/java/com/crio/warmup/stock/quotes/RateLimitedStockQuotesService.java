@@ -0,0 +1,131 @@
+
+package com.crio.warmup.stock.quotes;
+
+import com.crio.warmup.stock.dto.Candle;
+import com.crio.warmup.stock.exception.StockQuoteRateLimitException;
+import com.crio.warmup.stock.exception.StockQuoteServiceException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Paces calls to a quote provider through a {@link RateLimiter} shared by everything that talks
+ * to that provider, and retries requests the provider still rejects as rate limited.
+ *
+ * <p>A rejected request backs off for the provider's Retry-After if it sent one, otherwise for an
+ * exponentially growing delay with random jitter so that parallel callers do not retry in
+ * lockstep. Either delay is capped at {@code maxBackoff}, so a provider asking for an hour does
+ * not park every caller for an hour. The backoff pauses the shared limiter, so every caller
+ * slows down, not just the one that was rejected. Running out of the daily quota is not retried.
+ */
+public class RateLimitedStockQuotesService implements StockQuotesService, AsyncStockQuotesService {
+
+  public static final int DEFAULT_MAX_RETRIES = 4;
+  public static final Duration DEFAULT_BASE_BACKOFF = Duration.ofMillis(500);
+  public static final Duration DEFAULT_MAX_BACKOFF = Duration.ofSeconds(30);
+
+  private final StockQuotesService delegate;
+  private final RateLimiter rateLimiter;
+  private final int maxRetries;
+  private final Duration baseBackoff;
+  private final Duration maxBackoff;
+
+  public RateLimitedStockQuotesService(StockQuotesService delegate, RateLimiter rateLimiter) {
+    this(delegate, rateLimiter, DEFAULT_MAX_RETRIES, DEFAULT_BASE_BACKOFF, DEFAULT_MAX_BACKOFF);
+  }
+
+  public RateLimitedStockQuotesService(StockQuotesService delegate, RateLimiter rateLimiter,
+      int maxRetries, Duration baseBackoff, Duration maxBackoff) {
+    this.delegate = delegate;
+    this.rateLimiter = rateLimiter;
+    this.maxRetries = maxRetries;
+    this.baseBackoff = baseBackoff;
+    this.maxBackoff = maxBackoff;
+  }
+
+  @Override
+  public List<Candle> getStockQuote(String symbol, LocalDate from, LocalDate to)
+      throws JsonProcessingException, StockQuoteServiceException {
+    for (int attempt = 0; ; attempt++) {
+      try {
+        rateLimiter.acquire();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new StockQuoteServiceException("Interrupted while waiting to call the provider", e);
+      }
+      try {
+        List<Candle> candles = delegate.getStockQuote(symbol, from, to);
+        rateLimiter.onSuccess();
+        return candles;
+      } catch (StockQuoteRateLimitException e) {
+        if (attempt >= maxRetries) {
+          throw e;
+        }
+        rateLimiter.onThrottled(backoff(attempt, e));
+      }
+    }
+  }
+
+  @Override
+  public CompletableFuture<List<Candle>> getStockQuoteAsync(String symbol, LocalDate from,
+      LocalDate to) {
+    return attemptAsync(AsyncStockQuotesService.of(delegate), symbol, from, to, 0);
+  }
+
+  public RateLimiter getRateLimiter() {
+    return rateLimiter;
+  }
+
+  private CompletableFuture<List<Candle>> attemptAsync(AsyncStockQuotesService async,
+      String symbol, LocalDate from, LocalDate to, int attempt) {
+    long wait;
+    try {
+      wait = rateLimiter.reserve();
+    } catch (StockQuoteServiceException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+    CompletableFuture<Void> permit = wait > 0
+        ? CompletableFuture.runAsync(() -> { },
+            CompletableFuture.delayedExecutor(wait, TimeUnit.NANOSECONDS))
+        : CompletableFuture.completedFuture(null);
+    return permit
+        .thenCompose(ignored -> async.getStockQuoteAsync(symbol, from, to))
+        .handle((candles, error) -> {
+          if (error == null) {
+            rateLimiter.onSuccess();
+            return CompletableFuture.completedFuture(candles);
+          }
+          Throwable cause = unwrap(error);
+          if (cause instanceof StockQuoteRateLimitException && attempt < maxRetries) {
+            rateLimiter.onThrottled(backoff(attempt, (StockQuoteRateLimitException) cause));
+            return attemptAsync(async, symbol, from, to, attempt + 1);
+          }
+          return CompletableFuture.<List<Candle>>failedFuture(cause);
+        })
+        .thenCompose(next -> next);
+  }
+
+  // Equal jitter: half of the exponential delay is fixed, the other half random.
+  private Duration backoff(int attempt, StockQuoteRateLimitException e) {
+    if (e.getRetryAfter() != null) {
+      return e.getRetryAfter().compareTo(maxBackoff) > 0 ? maxBackoff : e.getRetryAfter();
+    }
+    long ceiling = Math.min(maxBackoff.toMillis(), baseBackoff.toMillis() << Math.min(attempt, 20));
+    long half = ceiling / 2;
+    return Duration.ofMillis(half + ThreadLocalRandom.current().nextLong(half + 1));
+  }
+
+  private static Throwable unwrap(Throwable error) {
+    while ((error instanceof CompletionException || error instanceof ExecutionException)
+        && error.getCause() != null) {
+      error = error.getCause();
+    }
+    return error;
+  }
+}
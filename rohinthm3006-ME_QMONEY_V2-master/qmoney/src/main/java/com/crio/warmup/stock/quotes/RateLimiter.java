@@ -0,0 +1,151 @@
+
+package com.crio.warmup.stock.quotes;
+
+import com.crio.warmup.stock.exception.StockQuoteRateLimitException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket pacing the requests sent to one quote provider, with an optional daily quota.
+ *
+ * <p>Permits refill continuously at the current rate up to {@code burst}. A caller that finds
+ * the bucket empty still reserves a permit and is told how long to wait for it, so concurrent
+ * callers queue up in order instead of racing. When the provider throttles a request anyway,
+ * {@link #onThrottled} halves the rate and pauses the bucket; every success then raises the rate
+ * again in small steps, which keeps the limiter close to what the provider actually sustains.
+ */
+public class RateLimiter {
+
+  private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  private final double maxPermitsPerSecond;
+  private final double minPermitsPerSecond;
+  private final double burst;
+  private final long dailyQuota;
+
+  private double permitsPerSecond;
+  private double permits;
+  // Refilling starts from here; it lies in the future while the bucket is paused.
+  private long refilledAt;
+  private LocalDate quotaDay;
+  private long usedToday;
+
+  // A dailyQuota of zero or less means there is no daily quota.
+  public RateLimiter(double permitsPerSecond, int burst, long dailyQuota) {
+    if (permitsPerSecond <= 0 || burst < 1) {
+      throw new IllegalArgumentException("permitsPerSecond and burst must be positive");
+    }
+    this.maxPermitsPerSecond = permitsPerSecond;
+    this.minPermitsPerSecond = permitsPerSecond / 16;
+    this.burst = burst;
+    this.dailyQuota = dailyQuota;
+    this.permitsPerSecond = permitsPerSecond;
+    this.permits = burst;
+    this.refilledAt = System.nanoTime();
+  }
+
+  /**
+   * Takes one permit and returns how many nanoseconds the caller has to wait before using it.
+   * Throws {@link StockQuoteRateLimitException} without taking a permit once today's quota
+   * (in UTC) is used up.
+   */
+  public synchronized long reserve() {
+    long now = System.nanoTime();
+    LocalDate today = LocalDate.now(ZoneOffset.UTC);
+    if (!today.equals(quotaDay)) {
+      quotaDay = today;
+      usedToday = 0;
+    }
+    if (dailyQuota > 0 && usedToday >= dailyQuota) {
+      Duration untilReset = Duration.between(LocalDateTime.now(ZoneOffset.UTC),
+          today.plusDays(1).atStartOfDay());
+      throw new StockQuoteRateLimitException(
+          "Daily quota of " + dailyQuota + " requests used up", untilReset, null);
+    }
+    usedToday++;
+    refill(now);
+    permits -= 1;
+    return Math.max(0, refilledAt - now) + nanosFor(-permits);
+  }
+
+  // Blocks until a permit is available.
+  public void acquire() throws InterruptedException {
+    long wait = reserve();
+    if (wait > 0) {
+      TimeUnit.NANOSECONDS.sleep(wait);
+    }
+  }
+
+  public synchronized void onSuccess() {
+    permitsPerSecond = Math.min(maxPermitsPerSecond, permitsPerSecond + maxPermitsPerSecond / 16);
+  }
+
+  // Halves the rate and stops handing out permits for the given pause.
+  public synchronized void onThrottled(Duration pause) {
+    long now = System.nanoTime();
+    refill(now);
+    permitsPerSecond = Math.max(minPermitsPerSecond, permitsPerSecond / 2);
+    permits = Math.min(permits, 0);
+    refilledAt = Math.max(refilledAt, now + pause.toNanos());
+  }
+
+  public synchronized double getAvailablePermits() {
+    refill(System.nanoTime());
+    return Math.max(0, permits);
+  }
+
+  // How long a caller reserving a permit now would have to wait.
+  public synchronized Duration getWaitTime() {
+    long now = System.nanoTime();
+    refill(now);
+    return Duration.ofNanos(Math.max(0, refilledAt - now) + nanosFor(1 - permits));
+  }
+
+  public synchronized double getPermitsPerSecond() {
+    return permitsPerSecond;
+  }
+
+  // Requests left today, or Long.MAX_VALUE without a daily quota.
+  public synchronized long getRemainingDailyQuota() {
+    if (dailyQuota <= 0) {
+      return Long.MAX_VALUE;
+    }
+    if (!LocalDate.now(ZoneOffset.UTC).equals(quotaDay)) {
+      return dailyQuota;
+    }
+    return Math.max(0, dailyQuota - usedToday);
+  }
+
+  /**
+   * Parses a Retry-After header given in seconds. The HTTP-date form is rare for API rate limits
+   * and is treated like a missing header.
+   */
+  public static Duration parseRetryAfter(String header) {
+    if (header == null) {
+      return null;
+    }
+    try {
+      return Duration.ofSeconds(Math.max(0, Long.parseLong(header.trim())));
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  private void refill(long now) {
+    if (now > refilledAt) {
+      permits = Math.min(burst,
+          permits + (now - refilledAt) * permitsPerSecond / NANOS_PER_SECOND);
+      refilledAt = now;
+    }
+  }
+
+  private long nanosFor(double missingPermits) {
+    if (missingPermits <= 0) {
+      return 0;
+    }
+    return (long) (missingPermits * NANOS_PER_SECOND / permitsPerSecond);
+  }
+}
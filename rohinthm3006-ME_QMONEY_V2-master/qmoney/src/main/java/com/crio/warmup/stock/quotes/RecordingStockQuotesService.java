@@ -0,0 +1,140 @@
+package com.crio.warmup.stock.quotes;
+
+import com.crio.warmup.stock.dto.Candle;
+import com.crio.warmup.stock.dto.CandleSeries;
+import com.crio.warmup.stock.exception.StockQuoteNotFoundException;
+import com.crio.warmup.stock.exception.StockQuoteRateLimitException;
+import com.crio.warmup.stock.exception.StockQuoteServiceException;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Passes requests through to a provider and records each answer to a directory, for
+ * {@link ReplayStockQuotesService} to serve back offline.
+ *
+ * <p>Candles are written in Tiingo's daily prices format, one file per symbol and date range, so
+ * a replay decodes them with the same parser as a live response. Unknown symbols and quota
+ * rejections are recorded too, so that a replay fails the same requests. Other failures are
+ * transient and only passed on; a replay injects those at a configurable rate instead.
+ */
+public class RecordingStockQuotesService implements StockQuotesService, CandleSeriesService {
+
+  static final String RESPONSE_SUFFIX = ".json";
+  static final String NOT_FOUND_SUFFIX = ".404";
+  static final String RATE_LIMITED_SUFFIX = ".429";
+
+  private final StockQuotesService delegate;
+  private final Path directory;
+
+  public RecordingStockQuotesService(StockQuotesService delegate, Path directory) {
+    this.delegate = delegate;
+    this.directory = directory;
+  }
+
+  @Override
+  public List<Candle> getStockQuote(String symbol, LocalDate from, LocalDate to)
+      throws JsonProcessingException, StockQuoteServiceException {
+    return getCandleSeries(symbol, from, to).asCandles();
+  }
+
+  @Override
+  public CandleSeries getCandleSeries(String symbol, LocalDate from, LocalDate to)
+      throws JsonProcessingException, StockQuoteServiceException {
+    String name = recordingName(symbol, from, to);
+    CandleSeries candles;
+    try {
+      candles = CandleSeriesService.of(delegate).getCandleSeries(symbol, from, to);
+    } catch (StockQuoteNotFoundException e) {
+      record(name + NOT_FOUND_SUFFIX, String.valueOf(e.getMessage()));
+      throw e;
+    } catch (StockQuoteRateLimitException e) {
+      record(name + RATE_LIMITED_SUFFIX, String.valueOf(e.getMessage()));
+      throw e;
+    }
+    record(name + RESPONSE_SUFFIX, candles);
+    return candles;
+  }
+
+  public Path getDirectory() {
+    return directory;
+  }
+
+  // File name of a request's recording, without the suffix telling how it was answered.
+  static String recordingName(String symbol, LocalDate from, LocalDate to) {
+    StringBuilder name = new StringBuilder();
+    for (char c : symbol.toUpperCase(Locale.ROOT).toCharArray()) {
+      if ((c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '.' || c == '-') {
+        name.append(c);
+      } else {
+        name.append('%').append(Integer.toHexString(c));
+      }
+    }
+    return name.append('_').append(from).append('_').append(to).toString();
+  }
+
+  private void record(String fileName, CandleSeries candles) {
+    write(fileName, out -> {
+      try (JsonGenerator json = QuoteResponses.jsonFactory().createGenerator(out,
+          JsonEncoding.UTF8)) {
+        json.writeStartArray();
+        for (int i = 0; i < candles.size(); i++) {
+          json.writeStartObject();
+          json.writeStringField("date", candles.getDate(i) + "T00:00:00.000Z");
+          writePrice(json, "open", candles.open(i));
+          writePrice(json, "high", candles.high(i));
+          writePrice(json, "low", candles.low(i));
+          writePrice(json, "close", candles.close(i));
+          json.writeEndObject();
+        }
+        json.writeEndArray();
+      }
+    });
+  }
+
+  private void record(String fileName, String message) {
+    write(fileName, out -> out.write(message.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private static void writePrice(JsonGenerator json, String field, double price)
+      throws IOException {
+    if (Double.isNaN(price)) {
+      json.writeNullField(field);
+    } else {
+      json.writeNumberField(field, price);
+    }
+  }
+
+  // Written to a temporary file first, so a replay never reads a half-written recording.
+  private void write(String fileName, Body body) {
+    try {
+      Files.createDirectories(directory);
+      Path temp = Files.createTempFile(directory, fileName, ".tmp");
+      try {
+        try (OutputStream out = Files.newOutputStream(temp)) {
+          body.writeTo(out);
+        }
+        Files.move(temp, directory.resolve(fileName), StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        Files.deleteIfExists(temp);
+      }
+    } catch (IOException e) {
+      throw new StockQuoteServiceException("Failed to record " + fileName, e);
+    }
+  }
+
+  private interface Body {
+
+    void writeTo(OutputStream out) throws IOException;
+  }
+}
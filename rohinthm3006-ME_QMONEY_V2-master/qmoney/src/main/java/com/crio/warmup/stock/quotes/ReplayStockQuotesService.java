@@ -0,0 +1,205 @@
+package com.crio.warmup.stock.quotes;
+
+import com.crio.warmup.stock.dto.Candle;
+import com.crio.warmup.stock.dto.CandleSeries;
+import com.crio.warmup.stock.exception.StockQuoteNotFoundException;
+import com.crio.warmup.stock.exception.StockQuoteRateLimitException;
+import com.crio.warmup.stock.exception.StockQuoteServiceException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Serves responses captured by {@link RecordingStockQuotesService}, without any network, quota
+ * or provider in the loop, so that load tests can run offline at any concurrency.
+ *
+ * <p>Each response is delayed by a sample of a {@link LatencyDistribution}, and fails with a
+ * {@link StockQuoteServiceException} or a {@link StockQuoteRateLimitException} at configurable
+ * rates. Recordings are decoded with {@link TiingoDailyDecoder} on every request, so parsing
+ * costs what it costs against the live provider.
+ *
+ * <p>The random draws for a request depend only on the seed, the request and how many times it
+ * was asked before, not on thread scheduling. Replaying the same requests with the same seed
+ * reproduces every latency and failure, whatever the concurrency. The asynchronous path waits
+ * out its latency on a timer rather than a thread.
+ */
+public class ReplayStockQuotesService implements StockQuotesService, AsyncStockQuotesService,
+    CandleSeriesService {
+
+  public static final long DEFAULT_SEED = 42;
+
+  private final Path directory;
+  private final long seed;
+  private final Map<String, Recording> recordings = new ConcurrentHashMap<>();
+  private final Map<String, AtomicInteger> requestCounts = new ConcurrentHashMap<>();
+  private volatile LatencyDistribution latency = LatencyDistribution.none();
+  private volatile double errorRate;
+  private volatile double rateLimitRate;
+
+  public ReplayStockQuotesService(Path directory) {
+    this(directory, DEFAULT_SEED);
+  }
+
+  public ReplayStockQuotesService(Path directory, long seed) {
+    this.directory = directory;
+    this.seed = seed;
+  }
+
+  @Override
+  public List<Candle> getStockQuote(String symbol, LocalDate from, LocalDate to)
+      throws StockQuoteServiceException {
+    return getCandleSeries(symbol, from, to).asCandles();
+  }
+
+  @Override
+  public CandleSeries getCandleSeries(String symbol, LocalDate from, LocalDate to)
+      throws StockQuoteServiceException {
+    String name = RecordingStockQuotesService.recordingName(symbol, from, to);
+    Random random = randomFor(name);
+    long deadline = System.nanoTime() + latency.sampleNanos(random);
+    for (long left = deadline - System.nanoTime(); left > 0;
+        left = deadline - System.nanoTime()) {
+      LockSupport.parkNanos(left);
+      if (Thread.interrupted()) {
+        Thread.currentThread().interrupt();
+        throw new StockQuoteServiceException("Interrupted while replaying " + name);
+      }
+    }
+    return respond(name, random);
+  }
+
+  @Override
+  public CompletableFuture<List<Candle>> getStockQuoteAsync(String symbol, LocalDate from,
+      LocalDate to) {
+    String name = RecordingStockQuotesService.recordingName(symbol, from, to);
+    Random random = randomFor(name);
+    long nanos = latency.sampleNanos(random);
+    return CompletableFuture.supplyAsync(() -> respond(name, random).asCandles(),
+        CompletableFuture.delayedExecutor(nanos, TimeUnit.NANOSECONDS));
+  }
+
+  public LatencyDistribution getLatency() {
+    return latency;
+  }
+
+  public void setLatency(LatencyDistribution latency) {
+    this.latency = latency;
+  }
+
+  public double getErrorRate() {
+    return errorRate;
+  }
+
+  // Fraction of requests failed with a StockQuoteServiceException, like a timeout or a 5xx.
+  public void setErrorRate(double errorRate) {
+    this.errorRate = checkRate(errorRate);
+  }
+
+  public double getRateLimitRate() {
+    return rateLimitRate;
+  }
+
+  // Fraction of requests rejected with a StockQuoteRateLimitException, like a 429.
+  public void setRateLimitRate(double rateLimitRate) {
+    this.rateLimitRate = checkRate(rateLimitRate);
+  }
+
+  // Forgets how often each request was asked, so the next run draws the same samples again.
+  public void reset() {
+    requestCounts.clear();
+  }
+
+  private CandleSeries respond(String name, Random random) {
+    double draw = random.nextDouble();
+    if (draw < rateLimitRate) {
+      throw new StockQuoteRateLimitException("Injected rate limit for " + name);
+    }
+    if (draw < rateLimitRate + errorRate) {
+      throw new StockQuoteServiceException("Injected failure for " + name);
+    }
+    Recording recording = recordings.computeIfAbsent(name, this::load);
+    if (recording.notFound != null) {
+      throw new StockQuoteNotFoundException(recording.notFound);
+    }
+    if (recording.rateLimited != null) {
+      throw new StockQuoteRateLimitException(recording.rateLimited);
+    }
+    return TiingoDailyDecoder.decode(new ByteArrayInputStream(recording.body));
+  }
+
+  private Recording load(String name) {
+    try {
+      return new Recording(read(name + RecordingStockQuotesService.RESPONSE_SUFFIX), null, null);
+    } catch (NoSuchFileException e) {
+      // Not a response, so the request was recorded failing
+    } catch (IOException e) {
+      throw new StockQuoteServiceException(e.getMessage(), e);
+    }
+    try {
+      return new Recording(null, text(name + RecordingStockQuotesService.NOT_FOUND_SUFFIX),
+          null);
+    } catch (NoSuchFileException e) {
+      // Not unknown either
+    } catch (IOException e) {
+      throw new StockQuoteServiceException(e.getMessage(), e);
+    }
+    try {
+      return new Recording(null, null,
+          text(name + RecordingStockQuotesService.RATE_LIMITED_SUFFIX));
+    } catch (IOException e) {
+      throw new StockQuoteServiceException("No recording for " + name + " in " + directory, e);
+    }
+  }
+
+  private byte[] read(String fileName) throws IOException {
+    return Files.readAllBytes(directory.resolve(fileName));
+  }
+
+  private String text(String fileName) throws IOException {
+    return new String(read(fileName), StandardCharsets.UTF_8);
+  }
+
+  private Random randomFor(String name) {
+    int count = requestCounts.computeIfAbsent(name, k -> new AtomicInteger()).getAndIncrement();
+    return new Random(mix(mix(seed ^ name.hashCode()) + count));
+  }
+
+  // SplitMix64 finalizer, so that neighbouring seeds and counts give unrelated draws.
+  private static long mix(long z) {
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+
+  private static double checkRate(double rate) {
+    if (rate < 0 || rate > 1) {
+      throw new IllegalArgumentException("rate must be in [0, 1]");
+    }
+    return rate;
+  }
+
+  private static final class Recording {
+
+    private final byte[] body;
+    private final String notFound;
+    private final String rateLimited;
+
+    private Recording(byte[] body, String notFound, String rateLimited) {
+      this.body = body;
+      this.notFound = notFound;
+      this.rateLimited = rateLimited;
+    }
+  }
+}
@@ -1,24 +1,52 @@
 package com.crio.warmup.stock.quotes;
 
+import com.crio.warmup.stock.store.CandleStore;
+import com.crio.warmup.stock.store.OffHeapCandleCache;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.springframework.web.client.RestTemplate;
 
 public enum StockQuoteServiceFactory {
 
   INSTANCE;
 
+  // Free plan limits. Tiingo's are per API key and its hourly cap is left to the adaptive backoff.
+  private static final long TIINGO_DAILY_QUOTA = 1000;
+  private static final double ALPHAVANTAGE_REQUESTS_PER_SECOND = 5.0 / 60;
+  private static final long ALPHAVANTAGE_DAILY_QUOTA = 25;
+
+  // One limiter per provider, shared by every service this factory hands out for it.
+  private final Map<String, RateLimiter> rateLimiters = new ConcurrentHashMap<>();
+
+  // One circuit breaker per provider, so every failover chain sees the same provider health.
+  private final Map<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+
+  // One negative cache per provider, so a bad symbol costs one request however many services
+  // this factory hands out.
+  private final Map<String, NegativeQuoteCache> negativeCaches = new ConcurrentHashMap<>();
+
   public StockQuotesService getService(String provider, RestTemplate restTemplate) {
     if (provider != null) {
       switch (provider.toLowerCase()) {
         case "tiingo":
-          return new TiingoService(restTemplate);
+          TiingoService tiingo = new TiingoService(restTemplate);
+          tiingo.setNegativeCache(getNegativeCache("tiingo"));
+          return tiingo;
         case "alphavantage":
-          return new AlphavantageService(restTemplate);  // Add this case
+          AlphavantageService alphavantage = new AlphavantageService(restTemplate);
+          alphavantage.setNegativeCache(getNegativeCache("alphavantage"));
+          return alphavantage;
         // Optionally handle other providers if needed
         // case "anotherProvider":
         //     return new AnotherProviderService(restTemplate);
         default:
          // throw new IllegalArgumentException("Unsupported provider: " + provider);
-         return new AlphavantageService(restTemplate); 
+         return getService("alphavantage", restTemplate);
       }
     } else {
       // If no provider is provided, you could throw an exception or return null
@@ -26,4 +54,106 @@ public enum StockQuoteServiceFactory {
     }
    return null ;
   }
+
+  /**
+   * Returns a service whose concurrent callers share one in-flight fetch per symbol, see
+   * CoalescingStockQuotesService. Hand one instance to everything that runs at the same time.
+   */
+  public StockQuotesService getCoalescingService(String provider, RestTemplate restTemplate) {
+    return new CoalescingStockQuotesService(getService(provider, restTemplate));
+  }
+
+  public StockQuotesService getCachingService(String provider, RestTemplate restTemplate,
+      long maxCachedCandles) {
+    return new CachingStockQuotesService(getService(provider, restTemplate), maxCachedCandles);
+  }
+
+  public StockQuotesService getPersistentService(String provider, RestTemplate restTemplate,
+      Path storeDirectory) {
+    return new CandleStoreService(new CandleStore(storeDirectory),
+        getService(provider, restTemplate));
+  }
+
+  // Records every answer to recordingDirectory, for a ReplayStockQuotesService to serve offline.
+  public StockQuotesService getRecordingService(String provider, RestTemplate restTemplate,
+      Path recordingDirectory) {
+    return new RecordingStockQuotesService(getService(provider, restTemplate),
+        recordingDirectory);
+  }
+
+  // Keeps candles off the heap, within maxCacheBytes of direct memory.
+  public StockQuotesService getOffHeapCachingService(String provider, RestTemplate restTemplate,
+      long maxCacheBytes) {
+    return new OffHeapCandleCacheService(new OffHeapCandleCache(maxCacheBytes),
+        getService(provider, restTemplate));
+  }
+
+  /**
+   * Returns a service that tries the given providers in order, skipping any whose circuit is
+   * open. With no providers given, Tiingo is tried before Alphavantage.
+   */
+  public StockQuotesService getFailoverService(RestTemplate restTemplate, String... providers) {
+    List<String> names = providers.length > 0 ? Arrays.asList(providers)
+        : Arrays.asList("tiingo", "alphavantage");
+    List<FailoverStockQuotesService.Provider> chain = new ArrayList<>();
+    for (String name : names) {
+      chain.add(new FailoverStockQuotesService.Provider(name, getService(name, restTemplate),
+          getCircuitBreaker(name)));
+    }
+    return new FailoverStockQuotesService(chain);
+  }
+
+  /**
+   * Returns a rate-limited service that fetches whole portfolios with one batch call, at most
+   * maxInFlight symbols at a time. See BatchingStockQuotesService. The caller owns the returned
+   * service and closes it when done, which releases its fetch threads.
+   */
+  public BatchingStockQuotesService getBatchingService(String provider, RestTemplate restTemplate,
+      int maxInFlight) {
+    return new BatchingStockQuotesService(getRateLimitedService(provider, restTemplate),
+        maxInFlight);
+  }
+
+  public CircuitBreaker getCircuitBreaker(String provider) {
+    return circuitBreakers.computeIfAbsent(provider.toLowerCase(Locale.ROOT),
+        k -> new CircuitBreaker());
+  }
+
+  // Hedges slow primary requests to the secondary provider, see HedgingStockQuotesService.
+  public HedgingStockQuotesService getHedgingService(String primaryProvider,
+      String secondaryProvider, RestTemplate restTemplate) {
+    return new HedgingStockQuotesService(getService(primaryProvider, restTemplate),
+        getService(secondaryProvider, restTemplate));
+  }
+
+  public NegativeQuoteCache getNegativeCache(String provider) {
+    String key = "tiingo".equalsIgnoreCase(provider) ? "tiingo" : "alphavantage";
+    return negativeCaches.computeIfAbsent(key, k -> k.equals("tiingo")
+        ? TiingoService.newNegativeCache() : new NegativeQuoteCache());
+  }
+
+  public StockQuotesService getRateLimitedService(String provider, RestTemplate restTemplate) {
+    return getRateLimitedService(provider, restTemplate, getRateLimiter(provider));
+  }
+
+  public StockQuotesService getRateLimitedService(String provider, RestTemplate restTemplate,
+      RateLimiter rateLimiter) {
+    return new RateLimitedStockQuotesService(getService(provider, restTemplate), rateLimiter);
+  }
+
+  public RateLimiter getRateLimiter(String provider) {
+    String key = "tiingo".equalsIgnoreCase(provider) ? "tiingo" : "alphavantage";
+    return rateLimiters.computeIfAbsent(key, k -> k.equals("tiingo")
+        ? newTiingoRateLimiter()
+        : new RateLimiter(ALPHAVANTAGE_REQUESTS_PER_SECOND, 1, ALPHAVANTAGE_DAILY_QUOTA));
+  }
+
+  // Each Tiingo key has its own limiter in the key pool, so the provider-wide limiter only has
+  // to hold the sum of them and adds the adaptive backoff on top.
+  private static RateLimiter newTiingoRateLimiter() {
+    ApiKeyPool keys = TiingoService.getKeyPool();
+    int keyCount = Math.max(1, keys.getKeys().size());
+    return new RateLimiter(keys.getKeyPermitsPerSecond() * keyCount,
+        keys.getKeyBurst() * keyCount, TIINGO_DAILY_QUOTA * keyCount);
+  }
 }
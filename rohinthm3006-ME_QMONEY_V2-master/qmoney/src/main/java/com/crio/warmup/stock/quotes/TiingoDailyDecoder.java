@@ -0,0 +1,76 @@
+package com.crio.warmup.stock.quotes;
+
+import com.crio.warmup.stock.dto.CandleSeries;
+import com.crio.warmup.stock.dto.IsoDateDeserializer;
+import com.crio.warmup.stock.exception.StockQuoteServiceException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.CharBuffer;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+
+/**
+ * Decodes Tiingo's daily prices array token by token into a {@link CandleSeries}. Only the date
+ * and the unadjusted open, high, low and close are read; numbers go straight into the series'
+ * arrays without a candle or boxed value per day.
+ */
+public final class TiingoDailyDecoder {
+
+  private TiingoDailyDecoder() {
+  }
+
+  public static CandleSeries decode(InputStream json) throws StockQuoteServiceException {
+    try (JsonParser parser = QuoteResponses.jsonFactory().createParser(json)) {
+      return decode(parser);
+    } catch (IOException | DateTimeException e) {
+      throw new StockQuoteServiceException(e.getMessage(), e);
+    }
+  }
+
+  private static CandleSeries decode(JsonParser parser) throws IOException {
+    if (parser.nextToken() != JsonToken.START_ARRAY) {
+      throw new StockQuoteServiceException("Invalid Response Found");
+    }
+    CandleSeries.Builder candles = CandleSeries.builder(0);
+    while (parser.nextToken() == JsonToken.START_OBJECT) {
+      LocalDate date = null;
+      double open = Double.NaN;
+      double high = Double.NaN;
+      double low = Double.NaN;
+      double close = Double.NaN;
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        JsonToken value = parser.nextToken();
+        switch (field) {
+          case "date":
+            if (value == JsonToken.VALUE_STRING) {
+              date = IsoDateDeserializer.parse(CharBuffer.wrap(parser.getTextCharacters(),
+                  parser.getTextOffset(), parser.getTextLength()));
+            }
+            break;
+          case "open":
+            open = QuoteResponses.readPrice(parser);
+            break;
+          case "high":
+            high = QuoteResponses.readPrice(parser);
+            break;
+          case "low":
+            low = QuoteResponses.readPrice(parser);
+            break;
+          case "close":
+            close = QuoteResponses.readPrice(parser);
+            break;
+          default:
+            parser.skipChildren();
+        }
+      }
+      if (date == null) {
+        throw new StockQuoteServiceException("Invalid Response Found");
+      }
+      candles.add(date, open, high, low, close);
+    }
+    return candles.build();
+  }
+}
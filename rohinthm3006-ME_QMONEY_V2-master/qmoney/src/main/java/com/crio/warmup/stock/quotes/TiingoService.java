@@ -2,26 +2,48 @@
 package com.crio.warmup.stock.quotes;
 
 import com.crio.warmup.stock.dto.Candle;
-import com.crio.warmup.stock.dto.TiingoCandle;
+import com.crio.warmup.stock.dto.CandleSeries;
+import com.crio.warmup.stock.exception.StockQuoteNotFoundException;
+import com.crio.warmup.stock.exception.StockQuoteRateLimitException;
 import com.crio.warmup.stock.exception.StockQuoteServiceException;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
 import java.time.LocalDate;
-import java.util.Arrays;
-import java.util.Comparator;
 import java.util.List;
-import java.util.Random;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.springframework.http.HttpMethod;
 import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientResponseException;
 import org.springframework.web.client.RestTemplate;
 
-public class TiingoService implements StockQuotesService {
+public class TiingoService implements StockQuotesService, AsyncStockQuotesService,
+    CandleSeriesService {
+
+  public static final String DEFAULT_BASE_URL = "https://api.tiingo.com";
+
+  private static final Duration RATE_LIMITED_KEY_QUARANTINE = Duration.ofHours(1);
+  private static final Duration UNAUTHORIZED_KEY_QUARANTINE = Duration.ofDays(1);
+  // Tiingo paces every key on its own; tiingo.api.keyRequestsPerSecond and keyBurst override.
+  private static final double KEY_REQUESTS_PER_SECOND = 1.0;
+  private static final int KEY_BURST = 5;
 
   private RestTemplate restTemplate;
+  private HttpClient httpClient;
+  private NegativeQuoteCache negativeCache = newNegativeCache();
+  // Overridden with tiingo.api.baseUrl, for instance to point at a test LocalQuoteServer.
+  private String baseUrl = QuoteProviderConfig.get("tiingo.api.baseUrl", DEFAULT_BASE_URL);
 
   protected TiingoService(RestTemplate restTemplate) {
+    this(restTemplate, QuoteHttpClients.shared());
+  }
+
+  protected TiingoService(RestTemplate restTemplate, HttpClient httpClient) {
     this.restTemplate = restTemplate;
+    this.httpClient = httpClient;
   }
 
 
@@ -30,24 +52,84 @@ public class TiingoService implements StockQuotesService {
   @Override
   public List<Candle> getStockQuote(String symbol, LocalDate from, LocalDate to)
       throws StockQuoteServiceException {
-    String tiingoURL = buildURL(symbol, from, to);
-    String responseString=null;
+    return getCandleSeries(symbol, from, to).asCandles();
+  }
+
+  @Override
+  public CandleSeries getCandleSeries(String symbol, LocalDate from, LocalDate to)
+      throws StockQuoteServiceException {
+    return negativeCache.fetch(symbol, from, to, () -> fetchCandleSeries(symbol, from, to));
+  }
+
+  @Override
+  public CompletableFuture<List<Candle>> getStockQuoteAsync(String symbol, LocalDate from,
+      LocalDate to) {
+    return negativeCache.fetchAsync(symbol, from, to,
+        () -> fetchCandleSeriesAsync(symbol, from, to)).thenApply(CandleSeries::asCandles);
+  }
+
+  private CandleSeries fetchCandleSeries(String symbol, LocalDate from, LocalDate to) {
+    String token = getToken();
+    String tiingoURL = buildURL(symbol, from, to, token);
     try {
-      responseString = restTemplate.getForObject(tiingoURL, String.class);
+      return restTemplate.execute(URI.create(tiingoURL), HttpMethod.GET,
+          QuoteResponses.acceptGzipJson(), QuoteResponses.decoding(TiingoDailyDecoder::decode));
     } catch (HttpClientErrorException e) {
-        throw new StockQuoteServiceException("TooManyRequests: 429 Unknown Status Code");
+      Duration retryAfter = e.getResponseHeaders() == null ? null
+          : RateLimiter.parseRetryAfter(e.getResponseHeaders().getFirst("Retry-After"));
+      quarantineIfRejected(token, e.getRawStatusCode(), retryAfter);
+      if (e.getRawStatusCode() == 429) {
+        throw new StockQuoteRateLimitException("TooManyRequests: 429 Unknown Status Code",
+            retryAfter, e);
+      }
+      if (e.getRawStatusCode() == 404) {
+        throw new StockQuoteNotFoundException("Tiingo does not know symbol " + symbol, e);
+      }
+      throw new StockQuoteServiceException(
+          "Tiingo returned status " + e.getRawStatusCode() + " for " + symbol, e);
     }
-    
-    TiingoCandle[] tiingoCandleArray;
+  }
+
+  private CompletableFuture<CandleSeries> fetchCandleSeriesAsync(String symbol, LocalDate from,
+      LocalDate to) {
+    ApiKeyPool.Lease lease;
     try {
-      tiingoCandleArray = getObjectMapper().readValue(responseString, TiingoCandle[].class);
-      if (tiingoCandleArray == null || responseString == null)
-        throw new StockQuoteServiceException("Invalid Response Found");
-    } catch (JsonProcessingException e) {
-      throw new StockQuoteServiceException(e.getMessage());
+      lease = DefaultKeyPool.INSTANCE.reserve();
+    } catch (StockQuoteServiceException e) {
+      return CompletableFuture.failedFuture(e);
     }
-    return Arrays.stream(tiingoCandleArray).sorted(Comparator.comparing(Candle::getDate))
-        .collect(Collectors.toList());
+    String token = lease.getKey();
+    HttpRequest request = QuoteResponses.acceptGzipJson(
+        HttpRequest.newBuilder(URI.create(buildURL(symbol, from, to, token))))
+        .GET()
+        .build();
+    // Waits for the key's rate limit without holding a thread
+    CompletableFuture<Void> keyReady = lease.getWaitNanos() > 0
+        ? CompletableFuture.runAsync(() -> { }, CompletableFuture.delayedExecutor(
+            lease.getWaitNanos(), TimeUnit.NANOSECONDS))
+        : CompletableFuture.completedFuture(null);
+    return keyReady
+        .thenCompose(ignored ->
+            httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray()))
+        .thenApply(response -> {
+          Duration retryAfter = RateLimiter.parseRetryAfter(
+              response.headers().firstValue("Retry-After").orElse(null));
+          quarantineIfRejected(token, response.statusCode(), retryAfter);
+          if (response.statusCode() == 429) {
+            throw new StockQuoteRateLimitException("TooManyRequests: 429 for " + symbol,
+                retryAfter, null);
+          }
+          if (response.statusCode() == 404) {
+            throw new StockQuoteNotFoundException("Tiingo does not know symbol " + symbol);
+          }
+          if (response.statusCode() >= 400) {
+            // Carries the status like the blocking path's RestClientResponseException
+            String message = "Tiingo returned status " + response.statusCode() + " for " + symbol;
+            throw new StockQuoteServiceException(message, new RestClientResponseException(
+                message, response.statusCode(), "", null, null, null));
+          }
+          return QuoteResponses.decode(response, TiingoDailyDecoder::decode);
+        });
   }
 
   // Note:
@@ -61,29 +143,60 @@ public class TiingoService implements StockQuotesService {
   // TODO: CRIO_TASK_MODULE_ADDITIONAL_REFACTOR
   // Write a method to create appropriate url to call the Tiingo API.
   protected String buildURL(String symbol, LocalDate startDate, LocalDate endDate) {
+    return buildURL(symbol, startDate, endDate, getToken());
+  }
+
+  protected String buildURL(String symbol, LocalDate startDate, LocalDate endDate,
+      String token) {
 
-    String uriTemplate = "https://api.tiingo.com/tiingo/daily/" + symbol + "/prices?" + "startDate="
-        + startDate + "&endDate=" + endDate + "&token=" + getToken();
+    String uriTemplate = baseUrl + "/tiingo/daily/" + symbol + "/prices?" + "startDate="
+        + startDate + "&endDate=" + endDate + "&token=" + token;
     return uriTemplate;
   }
 
+  // Keys come from the tiingo.api.keys setting, see QuoteProviderConfig. Blocks while every key
+  // is at its rate limit.
   protected String getToken() {
-    String[] token =
-        {"ba213dcac06ea722d054f3150e8988f3e398b015", "61ce1dff403ba4b2b40ba2db6d6e65cec1e6c187",
-            "b197a6dd821010c89ef8f1de157f9f785a1de2d7", "8f01a5a63850b10acdd7c2af98189529a3bcd575",
-            "1cc10465be8655349441703e609b2e6b103b1a0a", "4cde2b644448ec2379b2147260d78783cabeda33",
-            "953e5d1702c35f1aabd7a475fd8d256e2274d731", "dbafe4de20a19ef23df3deda52d513e373206cb0"};
-    Random random = new Random();
-    return token[random.nextInt(token.length)];
+    return DefaultKeyPool.INSTANCE.acquire();
+  }
+
+  // A 429 keeps the key out of rotation until Tiingo's limit resets; a 401 means the key itself
+  // is bad, so it stays out for a day.
+  private void quarantineIfRejected(String token, int statusCode, Duration retryAfter) {
+    if (statusCode == 429) {
+      DefaultKeyPool.INSTANCE.quarantine(token,
+          retryAfter != null ? retryAfter : RATE_LIMITED_KEY_QUARANTINE);
+    } else if (statusCode == 401) {
+      DefaultKeyPool.INSTANCE.quarantine(token, UNAUTHORIZED_KEY_QUARANTINE);
+    }
   }
 
-  private static ObjectMapper getObjectMapper() {
-    ObjectMapper objectMapper = new ObjectMapper();
-    objectMapper.registerModule(new JavaTimeModule());
-    return objectMapper;
+  public String getBaseUrl() {
+    return baseUrl;
   }
 
+  public void setBaseUrl(String baseUrl) {
+    this.baseUrl = baseUrl;
+  }
 
+  public NegativeQuoteCache getNegativeCache() {
+    return negativeCache;
+  }
+
+  public void setNegativeCache(NegativeQuoteCache negativeCache) {
+    this.negativeCache = negativeCache;
+  }
+
+  // The key pool already keeps rate limited keys out of rotation, and a 429 on one key says
+  // nothing about the others, so quota rejections are not kept.
+  static NegativeQuoteCache newNegativeCache() {
+    return new NegativeQuoteCache(NegativeQuoteCache.DEFAULT_UNKNOWN_SYMBOL_TTL,
+        NegativeQuoteCache.DEFAULT_EMPTY_RANGE_TTL, Duration.ZERO);
+  }
+
+  public static ApiKeyPool getKeyPool() {
+    return DefaultKeyPool.INSTANCE;
+  }
 
   // TODO: CRIO_TASK_MODULE_EXCEPTIONS
   // 1. Update the method signature to match the signature change in the interface.
@@ -96,6 +209,16 @@ public class TiingoService implements StockQuotesService {
 
   // CHECKSTYLE:OFF
 
+  private static final class DefaultKeyPool {
 
+    private static final ApiKeyPool INSTANCE = load();
 
+    private static ApiKeyPool load() {
+      ApiKeyPool pool = ApiKeyPool.fromConfig("tiingo");
+      if (pool.getKeyPermitsPerSecond() == 0) {
+        pool.setKeyRateLimit(KEY_REQUESTS_PER_SECOND, KEY_BURST);
+      }
+      return pool;
+    }
+  }
 }
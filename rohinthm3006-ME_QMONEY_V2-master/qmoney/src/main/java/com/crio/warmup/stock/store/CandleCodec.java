@@ -0,0 +1,299 @@
+package com.crio.warmup.stock.store;
+
+import com.crio.warmup.stock.dto.CandleSeries;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Compact, lossless binary encoding of a {@link CandleSeries}.
+ *
+ * <p>Candles are encoded in independent blocks of {@link #BLOCK_CANDLES}, preceded by an index
+ * of each block's first date and offset. A date range is read by binary searching the index and
+ * decoding only the blocks it overlaps, and blocks can be decoded in any order or in parallel.
+ *
+ * <p>Within a block, dates are stored as delta-of-delta varints, which is a single byte for
+ * almost every trading day. Each price column is stored as varint deltas of a scaled integer
+ * when every price in the block is a decimal with at most {@link #MAX_SCALE} digits, which is
+ * what providers quote; otherwise the block falls back to XOR-ing the bits of consecutive prices
+ * and storing only the bytes that changed. Either way the decoded doubles are bit-for-bit equal
+ * to the encoded ones.
+ *
+ * <pre>
+ * int count, int blockCount, blockCount x (int firstEpochDay, int offset), blocks...
+ * block: byte scale (or XOR), date deltas, open, high, low and close columns
+ * </pre>
+ */
+public final class CandleCodec {
+
+  public static final int BLOCK_CANDLES = 128;
+  public static final int MAX_SCALE = 6;
+
+  private static final int HEADER_BYTES = 2 * Integer.BYTES;
+  private static final int INDEX_ENTRY_BYTES = 2 * Integer.BYTES;
+  private static final byte XOR = -1;
+  private static final int UNCHANGED = 0x88;
+  private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6};
+
+  private CandleCodec() {
+  }
+
+  public static byte[] encode(CandleSeries candles) {
+    int count = candles.size();
+    int blockCount = (count + BLOCK_CANDLES - 1) / BLOCK_CANDLES;
+    Output out = new Output(HEADER_BYTES + blockCount * INDEX_ENTRY_BYTES + count * 10);
+    out.putInt(count);
+    out.putInt(blockCount);
+    int index = out.reserve(blockCount * INDEX_ENTRY_BYTES);
+    for (int block = 0; block < blockCount; block++) {
+      int start = block * BLOCK_CANDLES;
+      int end = Math.min(start + BLOCK_CANDLES, count);
+      out.putInt(index + block * INDEX_ENTRY_BYTES, candles.epochDay(start));
+      out.putInt(index + block * INDEX_ENTRY_BYTES + Integer.BYTES, out.size());
+      encodeBlock(candles, start, end, out);
+    }
+    return out.toByteArray();
+  }
+
+  // Decodes every candle of a series encoded at base.
+  public static CandleSeries decode(ByteBuffer buffer, int base) {
+    return decode(buffer, base, Integer.MIN_VALUE, Integer.MAX_VALUE);
+  }
+
+  // Decodes the candles within from..to, both inclusive, reading only the blocks they fall in.
+  public static CandleSeries decode(ByteBuffer buffer, int base, LocalDate from, LocalDate to) {
+    if (from.isAfter(to)) {
+      return CandleSeries.empty();
+    }
+    return decode(buffer, base, from.toEpochDay(), to.toEpochDay());
+  }
+
+  public static CandleSeries decode(byte[] encoded, LocalDate from, LocalDate to) {
+    return decode(ByteBuffer.wrap(encoded), 0, from, to);
+  }
+
+  static CandleSeries decode(ByteBuffer buffer, int base, long from, long to) {
+    int count = buffer.getInt(base);
+    int blockCount = buffer.getInt(base + Integer.BYTES);
+    int index = base + HEADER_BYTES;
+    // The last block starting on or before from may still hold candles within the range
+    int first = 0;
+    int last = blockCount - 1;
+    while (first < last) {
+      int mid = (first + last + 1) >>> 1;
+      if (buffer.getInt(index + mid * INDEX_ENTRY_BYTES) <= from) {
+        first = mid;
+      } else {
+        last = mid - 1;
+      }
+    }
+    CandleSeries.Builder candles = CandleSeries.builder(0);
+    ByteBuffer in = buffer.duplicate();
+    for (int block = first; block < blockCount; block++) {
+      int firstDay = buffer.getInt(index + block * INDEX_ENTRY_BYTES);
+      if (firstDay > to) {
+        break;
+      }
+      in.position(base + buffer.getInt(index + block * INDEX_ENTRY_BYTES + Integer.BYTES));
+      int size = Math.min(BLOCK_CANDLES, count - block * BLOCK_CANDLES);
+      decodeBlock(in, firstDay, size, from, to, candles);
+    }
+    return candles.build();
+  }
+
+  private static void encodeBlock(CandleSeries candles, int start, int end, Output out) {
+    int size = end - start;
+    double[][] columns = new double[4][size];
+    for (int i = 0; i < size; i++) {
+      columns[0][i] = candles.open(start + i);
+      columns[1][i] = candles.high(start + i);
+      columns[2][i] = candles.low(start + i);
+      columns[3][i] = candles.close(start + i);
+    }
+    int scale = scaleOf(columns);
+    out.put(scale < 0 ? XOR : (byte) scale);
+
+    long previousDelta = 1;
+    for (int i = start + 1; i < end; i++) {
+      long delta = (long) candles.epochDay(i) - candles.epochDay(i - 1);
+      out.putVarLong(zigZag(delta - previousDelta));
+      previousDelta = delta;
+    }
+    for (double[] column : columns) {
+      if (scale < 0) {
+        long previous = 0;
+        for (double value : column) {
+          long bits = Double.doubleToRawLongBits(value);
+          putXor(out, bits ^ previous);
+          previous = bits;
+        }
+      } else {
+        long previous = 0;
+        for (double value : column) {
+          long scaled = Math.round(value * POWERS_OF_TEN[scale]);
+          out.putVarLong(zigZag(scaled - previous));
+          previous = scaled;
+        }
+      }
+    }
+  }
+
+  private static void decodeBlock(ByteBuffer in, int firstDay, int size, long from, long to,
+      CandleSeries.Builder candles) {
+    byte scale = in.get();
+    int[] days = new int[size];
+    days[0] = firstDay;
+    long previousDelta = 1;
+    for (int i = 1; i < size; i++) {
+      long delta = previousDelta + unZigZag(getVarLong(in));
+      days[i] = (int) (days[i - 1] + delta);
+      previousDelta = delta;
+    }
+    double[][] columns = new double[4][size];
+    for (double[] column : columns) {
+      long previous = 0;
+      for (int i = 0; i < size; i++) {
+        if (scale == XOR) {
+          previous ^= getXor(in);
+          column[i] = Double.longBitsToDouble(previous);
+        } else {
+          previous += unZigZag(getVarLong(in));
+          column[i] = previous / POWERS_OF_TEN[scale];
+        }
+      }
+    }
+    for (int i = 0; i < size; i++) {
+      if (days[i] >= from && days[i] <= to) {
+        candles.add(days[i], columns[0][i], columns[1][i], columns[2][i], columns[3][i]);
+      }
+    }
+  }
+
+  // The fewest decimal digits that represent every price exactly, or -1 if there is none.
+  private static int scaleOf(double[][] columns) {
+    for (int scale = 0; scale <= MAX_SCALE; scale++) {
+      if (fitsScale(columns, POWERS_OF_TEN[scale])) {
+        return scale;
+      }
+    }
+    return -1;
+  }
+
+  private static boolean fitsScale(double[][] columns, double power) {
+    for (double[] column : columns) {
+      for (double value : column) {
+        double scaled = value * power;
+        // Beyond 2^53 scaled values are no longer exact integers, and NaN never matches
+        if (!(Math.abs(scaled) < 0x1p53) || Math.round(scaled) / power != value
+            || Double.doubleToRawLongBits(value) == Long.MIN_VALUE) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  // Writes the bytes between the leading and trailing zero bytes of x, after a byte counting both
+  private static void putXor(Output out, long x) {
+    if (x == 0) {
+      out.put((byte) UNCHANGED);
+      return;
+    }
+    int leading = Long.numberOfLeadingZeros(x) / Byte.SIZE;
+    int trailing = Long.numberOfTrailingZeros(x) / Byte.SIZE;
+    out.put((byte) (leading << 4 | trailing));
+    for (int shift = (7 - leading) * Byte.SIZE; shift >= trailing * Byte.SIZE;
+        shift -= Byte.SIZE) {
+      out.put((byte) (x >>> shift));
+    }
+  }
+
+  private static long getXor(ByteBuffer in) {
+    int header = in.get() & 0xff;
+    if (header == UNCHANGED) {
+      return 0;
+    }
+    int leading = header >>> 4;
+    int trailing = header & 0xf;
+    long x = 0;
+    for (int i = leading; i < Long.BYTES - trailing; i++) {
+      x = x << Byte.SIZE | (in.get() & 0xff);
+    }
+    return x << (trailing * Byte.SIZE);
+  }
+
+  private static long zigZag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  private static long unZigZag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  private static long getVarLong(ByteBuffer in) {
+    long value = 0;
+    for (int shift = 0; ; shift += 7) {
+      byte b = in.get();
+      value |= (long) (b & 0x7f) << shift;
+      if (b >= 0) {
+        return value;
+      }
+    }
+  }
+
+  private static final class Output {
+
+    private byte[] bytes;
+    private int size;
+
+    private Output(int capacity) {
+      bytes = new byte[Math.max(capacity, 16)];
+    }
+
+    int size() {
+      return size;
+    }
+
+    // Skips bytes to be filled in later with putInt(position, value), returning their position.
+    int reserve(int length) {
+      int position = size;
+      if (size + length > bytes.length) {
+        bytes = Arrays.copyOf(bytes, size + length + (bytes.length >> 1));
+      }
+      size += length;
+      return position;
+    }
+
+    void put(byte b) {
+      if (size == bytes.length) {
+        bytes = Arrays.copyOf(bytes, size + (size >> 1));
+      }
+      bytes[size++] = b;
+    }
+
+    void putInt(int value) {
+      for (int shift = 24; shift >= 0; shift -= 8) {
+        put((byte) (value >>> shift));
+      }
+    }
+
+    // Big-endian like ByteBuffer, at a position that has already been reserved.
+    void putInt(int position, int value) {
+      for (int i = 0; i < Integer.BYTES; i++) {
+        bytes[position + i] = (byte) (value >>> (24 - 8 * i));
+      }
+    }
+
+    void putVarLong(long value) {
+      while ((value & ~0x7fL) != 0) {
+        put((byte) ((value & 0x7f) | 0x80));
+        value >>>= 7;
+      }
+      put((byte) value);
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(bytes, size);
+    }
+  }
+}
@@ -0,0 +1,95 @@
+
+package com.crio.warmup.stock.store;
+
+import com.crio.warmup.stock.dto.Candle;
+import com.crio.warmup.stock.dto.DailyCandle;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+
+/**
+ * Fixed-width binary layout of a daily candle: epoch day followed by open, high, low and close,
+ * 40 bytes per record. Records are kept sorted by date so that a range can be located with a
+ * binary search directly on the buffer, whether it is memory-mapped or off-heap.
+ */
+public final class CandleRecords {
+
+  public static final int RECORD_BYTES = Long.BYTES + 4 * Double.BYTES;
+
+  private static final int OPEN_OFFSET = Long.BYTES;
+  private static final int HIGH_OFFSET = OPEN_OFFSET + Double.BYTES;
+  private static final int LOW_OFFSET = HIGH_OFFSET + Double.BYTES;
+  private static final int CLOSE_OFFSET = LOW_OFFSET + Double.BYTES;
+
+  private CandleRecords() {
+  }
+
+  public static long epochDay(ByteBuffer buffer, int base, int index) {
+    return buffer.getLong(base + index * RECORD_BYTES);
+  }
+
+  public static double open(ByteBuffer buffer, int base, int index) {
+    return buffer.getDouble(base + index * RECORD_BYTES + OPEN_OFFSET);
+  }
+
+  public static double high(ByteBuffer buffer, int base, int index) {
+    return buffer.getDouble(base + index * RECORD_BYTES + HIGH_OFFSET);
+  }
+
+  public static double low(ByteBuffer buffer, int base, int index) {
+    return buffer.getDouble(base + index * RECORD_BYTES + LOW_OFFSET);
+  }
+
+  public static double close(ByteBuffer buffer, int base, int index) {
+    return buffer.getDouble(base + index * RECORD_BYTES + CLOSE_OFFSET);
+  }
+
+  public static DailyCandle read(ByteBuffer buffer, int base, int index) {
+    int offset = base + index * RECORD_BYTES;
+    return new DailyCandle(LocalDate.ofEpochDay(buffer.getLong(offset)),
+        buffer.getDouble(offset + OPEN_OFFSET),
+        buffer.getDouble(offset + HIGH_OFFSET),
+        buffer.getDouble(offset + LOW_OFFSET),
+        buffer.getDouble(offset + CLOSE_OFFSET));
+  }
+
+  public static void write(ByteBuffer buffer, int base, int index, Candle candle) {
+    int offset = base + index * RECORD_BYTES;
+    buffer.putLong(offset, candle.getDate().toEpochDay());
+    buffer.putDouble(offset + OPEN_OFFSET, valueOf(candle.getOpen()));
+    buffer.putDouble(offset + HIGH_OFFSET, valueOf(candle.getHigh()));
+    buffer.putDouble(offset + LOW_OFFSET, valueOf(candle.getLow()));
+    buffer.putDouble(offset + CLOSE_OFFSET, valueOf(candle.getClose()));
+  }
+
+  public static void write(ByteBuffer buffer, int base, int index, long epochDay, double open,
+      double high, double low, double close) {
+    int offset = base + index * RECORD_BYTES;
+    buffer.putLong(offset, epochDay);
+    buffer.putDouble(offset + OPEN_OFFSET, open);
+    buffer.putDouble(offset + HIGH_OFFSET, high);
+    buffer.putDouble(offset + LOW_OFFSET, low);
+    buffer.putDouble(offset + CLOSE_OFFSET, close);
+  }
+
+  /**
+   * Returns the index of the first record whose date is on or after the given epoch day, or
+   * {@code count} when every record is before it.
+   */
+  public static int lowerBound(ByteBuffer buffer, int base, int count, long epochDay) {
+    int low = 0;
+    int high = count;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (epochDay(buffer, base, mid) < epochDay) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private static double valueOf(Double value) {
+    return value == null ? Double.NaN : value;
+  }
+}
@@ -0,0 +1,460 @@
+
+package com.crio.warmup.stock.store;
+
+import com.crio.warmup.stock.dto.Candle;
+import com.crio.warmup.stock.dto.CandleSeries;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Disk-backed candle store with one fixed-width binary file per symbol.
+ *
+ * <p>Each file starts with a header holding the date range that has been fetched for the symbol,
+ * followed by {@link CandleRecords} sorted by date. Files are read through a memory-mapped
+ * {@link FileChannel} and ranges are located by binary search, so reading a few candles out of
+ * a twenty year history touches only a handful of pages.
+ *
+ * <p>A compressed store writes the candles with {@link CandleCodec} instead, which takes a
+ * fraction of the space and still decodes only the blocks a range falls in. Either store reads
+ * both kinds of file, so switching rewrites each symbol the next time it is merged.
+ */
+public class CandleStore {
+
+  public static final String FILE_SUFFIX = ".candles";
+
+  private static final int MAGIC = 0x514d4353;
+  private static final int VERSION = 1;
+  private static final int COMPRESSED_VERSION = 2;
+  private static final int HEADER_BYTES = 32;
+  // Stored by writeCandles for a new file, until its coverage is committed.
+  private static final long NO_COVERAGE_FROM = Long.MAX_VALUE;
+  private static final long NO_COVERAGE_TO = Long.MIN_VALUE;
+
+  private final Path directory;
+  private final boolean compressed;
+  private final ConcurrentHashMap<String, SymbolFile> files = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, Object> locks = new ConcurrentHashMap<>();
+
+  public CandleStore(Path directory) {
+    this(directory, false);
+  }
+
+  public CandleStore(Path directory, boolean compressed) {
+    this.directory = directory;
+    this.compressed = compressed;
+  }
+
+  public Path getDirectory() {
+    return directory;
+  }
+
+  /**
+   * Returns the date range that has been stored for the symbol, or {@code null} when nothing is
+   * stored yet.
+   */
+  public Coverage getCoverage(String symbol) throws IOException {
+    SymbolFile file = open(symbol);
+    return file == null || !file.hasCoverage() ? null : file.coverage();
+  }
+
+  /**
+   * Returns the date of the last candle stored for the symbol, or {@code null} when none is.
+   * It can lie well before the end of the coverage, which also spans days without trading.
+   */
+  public LocalDate getLastStoredDate(String symbol) throws IOException {
+    SymbolFile file = open(symbol);
+    if (file == null) {
+      return null;
+    }
+    long lastEpochDay = file.lastEpochDay();
+    return lastEpochDay == Long.MIN_VALUE ? null : LocalDate.ofEpochDay(lastEpochDay);
+  }
+
+  public List<Candle> read(String symbol, LocalDate from, LocalDate to) throws IOException {
+    SymbolFile file = open(symbol);
+    if (file == null || from.isAfter(to)) {
+      return CandleSeries.empty().asCandles();
+    }
+    return file.read(from.toEpochDay(), to.toEpochDay()).asCandles();
+  }
+
+  /**
+   * Merges freshly fetched candles for {@code from..to} into the symbol's file. Candles already
+   * stored for the same date are replaced, and the stored coverage becomes the smallest range
+   * containing both the old coverage and {@code from..to}. A range that neither overlaps nor
+   * touches the stored coverage leaves it alone, as the days in between were never fetched; its
+   * candles are still stored, and count as covered once the gap has been merged too.
+   */
+  public void merge(String symbol, LocalDate from, LocalDate to, List<? extends Candle> candles)
+      throws IOException {
+    String key = key(symbol);
+    synchronized (locks.computeIfAbsent(key, k -> new Object())) {
+      SymbolFile existing = open(symbol);
+      long[] covered = widen(existing, from, to);
+      CandleSeries stored = existing == null ? CandleSeries.empty()
+          : existing.read(Long.MIN_VALUE, Long.MAX_VALUE);
+      CandleSeries merged = CandleSeries.merge(stored, CandleSeries.of(candles));
+      replace(key, encode(merged, covered[0], covered[1]));
+    }
+  }
+
+  /**
+   * Like {@link #merge}, but only writes the candles after the last stored date, past the end of
+   * the symbol's file. Stored records are never rewritten in place, so readers still holding the
+   * previous mapping keep a consistent view. Refreshing a long history with a few new days
+   * therefore writes a few records rather than the whole file. Candles re-fetched for stored
+   * dates must match what is stored; a correction, a compressed store or file, or a range that
+   * does not overlap or touch the stored coverage falls back to a merge.
+   */
+  public void append(String symbol, LocalDate from, LocalDate to, List<? extends Candle> candles)
+      throws IOException {
+    String key = key(symbol);
+    synchronized (locks.computeIfAbsent(key, k -> new Object())) {
+      SymbolFile existing = open(symbol);
+      if (existing == null || compressed || existing.compressed || !existing.hasCoverage()
+          || from.toEpochDay() < existing.coveredFrom
+          || from.toEpochDay() > existing.coveredTo + 1) {
+        merge(symbol, from, to, candles);
+        return;
+      }
+      CandleSeries incoming = CandleSeries.of(candles);
+      long lastStored = existing.lastEpochDay();
+      int firstNew = 0;
+      while (firstNew < incoming.size() && incoming.epochDay(firstNew) <= lastStored) {
+        firstNew++;
+      }
+      CandleSeries stored = from.toEpochDay() > lastStored ? CandleSeries.empty()
+          : existing.read(from.toEpochDay(), lastStored);
+      if (!matches(stored, incoming, firstNew)) {
+        merge(symbol, from, to, candles);
+        return;
+      }
+
+      try (FileChannel channel = FileChannel.open(pathOf(key), StandardOpenOption.WRITE)) {
+        writeTail(channel, existing, incoming, firstNew);
+        // The coverage is only extended once the records it promises are on disk.
+        channel.force(false);
+        writeCoverage(channel, existing.coveredFrom, Math.max(existing.coveredTo, to.toEpochDay()));
+        channel.force(false);
+      }
+      files.remove(key);
+    }
+  }
+
+  /**
+   * Stores candles without changing the symbol's coverage, for bulk loads that commit the
+   * coverage with {@link #extendCoverage} only once every part of the load has been written.
+   * Candles after the last stored date are written past the end of the file, without waiting
+   * for the disk; anything else rewrites the file as {@link #merge} does.
+   */
+  public void writeCandles(String symbol, List<? extends Candle> candles) throws IOException {
+    String key = key(symbol);
+    synchronized (locks.computeIfAbsent(key, k -> new Object())) {
+      SymbolFile existing = open(symbol);
+      CandleSeries incoming = CandleSeries.of(candles);
+      if (existing != null && !compressed && !existing.compressed && !incoming.isEmpty()
+          && incoming.epochDay(0) > existing.lastEpochDay()) {
+        try (FileChannel channel = FileChannel.open(pathOf(key), StandardOpenOption.WRITE)) {
+          writeTail(channel, existing, incoming, 0);
+        }
+        files.remove(key);
+        return;
+      }
+      CandleSeries stored = existing == null ? CandleSeries.empty()
+          : existing.read(Long.MIN_VALUE, Long.MAX_VALUE);
+      replace(key, encode(CandleSeries.merge(stored, incoming),
+          existing == null ? NO_COVERAGE_FROM : existing.coveredFrom,
+          existing == null ? NO_COVERAGE_TO : existing.coveredTo));
+    }
+  }
+
+  /**
+   * Extends the symbol's coverage over {@code from..to} once the candles written by
+   * {@link #writeCandles} are on disk, as {@link #merge} would. Does nothing when nothing is
+   * stored for the symbol.
+   */
+  public void extendCoverage(String symbol, LocalDate from, LocalDate to) throws IOException {
+    String key = key(symbol);
+    synchronized (locks.computeIfAbsent(key, k -> new Object())) {
+      SymbolFile existing = open(symbol);
+      if (existing == null) {
+        return;
+      }
+      long[] covered = widen(existing, from, to);
+      if (covered[0] == existing.coveredFrom && covered[1] == existing.coveredTo) {
+        return;
+      }
+      try (FileChannel channel = FileChannel.open(pathOf(key), StandardOpenOption.WRITE)) {
+        channel.force(false);
+        writeCoverage(channel, covered[0], covered[1]);
+        channel.force(false);
+      }
+      files.remove(key);
+    }
+  }
+
+  // The coverage after merging from..to: widened only over a range that overlaps or touches it.
+  private static long[] widen(SymbolFile existing, LocalDate from, LocalDate to) {
+    long coveredFrom = from.toEpochDay();
+    long coveredTo = to.toEpochDay();
+    if (existing == null || !existing.hasCoverage()) {
+      return new long[] {coveredFrom, coveredTo};
+    }
+    if (coveredFrom <= existing.coveredTo + 1 && coveredTo >= existing.coveredFrom - 1) {
+      return new long[] {Math.min(coveredFrom, existing.coveredFrom),
+          Math.max(coveredTo, existing.coveredTo)};
+    }
+    return new long[] {existing.coveredFrom, existing.coveredTo};
+  }
+
+  // Writes candles from index first on past the last whole record of the file.
+  private static void writeTail(FileChannel channel, SymbolFile existing, CandleSeries candles,
+      int first) throws IOException {
+    ByteBuffer records =
+        ByteBuffer.allocate((candles.size() - first) * CandleRecords.RECORD_BYTES);
+    for (int i = first; i < candles.size(); i++) {
+      CandleRecords.write(records, 0, i - first, candles.epochDay(i), candles.open(i),
+          candles.high(i), candles.low(i), candles.close(i));
+    }
+    writeFully(channel, records,
+        HEADER_BYTES + (long) existing.count * CandleRecords.RECORD_BYTES);
+  }
+
+  // Mappings read the header when they are opened, under the symbol lock, so rewriting it in
+  // place leaves the old ones their coverage.
+  private static void writeCoverage(FileChannel channel, long coveredFrom, long coveredTo)
+      throws IOException {
+    ByteBuffer coverage = ByteBuffer.allocate(2 * Long.BYTES);
+    coverage.putLong(0, coveredFrom);
+    coverage.putLong(Long.BYTES, coveredTo);
+    writeFully(channel, coverage, 8);
+  }
+
+  // Whether the first count candles of incoming are exactly the stored ones.
+  private static boolean matches(CandleSeries stored, CandleSeries incoming, int count) {
+    if (stored.size() != count) {
+      return false;
+    }
+    for (int i = 0; i < count; i++) {
+      if (stored.epochDay(i) != incoming.epochDay(i)
+          || Double.compare(stored.open(i), incoming.open(i)) != 0
+          || Double.compare(stored.high(i), incoming.high(i)) != 0
+          || Double.compare(stored.low(i), incoming.low(i)) != 0
+          || Double.compare(stored.close(i), incoming.close(i)) != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private SymbolFile open(String symbol) throws IOException {
+    String key = key(symbol);
+    SymbolFile file = files.get(key);
+    if (file != null) {
+      return file;
+    }
+    // Mapped under the writers' lock, so a mapping of a file being replaced is never cached
+    // after the writer has dropped the old one.
+    synchronized (locks.computeIfAbsent(key, k -> new Object())) {
+      file = files.get(key);
+      if (file != null) {
+        return file;
+      }
+      Path path = pathOf(key);
+      if (!Files.exists(path)) {
+        return null;
+      }
+      try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        file = SymbolFile.of(path, buffer);
+      } catch (NoSuchFileException e) {
+        return null;
+      }
+      files.put(key, file);
+      return file;
+    }
+  }
+
+  private void replace(String key, ByteBuffer contents) throws IOException {
+    Files.createDirectories(directory);
+    Path target = pathOf(key);
+    Path temp = Files.createTempFile(directory, key, ".tmp");
+    try {
+      try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+        contents.position(0);
+        while (contents.hasRemaining()) {
+          channel.write(contents);
+        }
+        channel.force(true);
+      }
+      Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+    // Readers holding the previous mapping keep a consistent view of the old file.
+    files.remove(key);
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer contents, long position)
+      throws IOException {
+    while (contents.hasRemaining()) {
+      position += channel.write(contents, position);
+    }
+  }
+
+  private ByteBuffer encode(CandleSeries candles, long coveredFrom, long coveredTo) {
+    return compressed ? encodeCompressed(candles, coveredFrom, coveredTo)
+        : encodeRecords(candles, coveredFrom, coveredTo);
+  }
+
+  private static ByteBuffer encodeRecords(CandleSeries candles, long coveredFrom,
+      long coveredTo) {
+    ByteBuffer buffer =
+        ByteBuffer.allocate(HEADER_BYTES + candles.size() * CandleRecords.RECORD_BYTES);
+    writeHeader(buffer, VERSION, coveredFrom, coveredTo);
+    for (int i = 0; i < candles.size(); i++) {
+      CandleRecords.write(buffer, HEADER_BYTES, i, candles.epochDay(i), candles.open(i),
+          candles.high(i), candles.low(i), candles.close(i));
+    }
+    return buffer;
+  }
+
+  private static ByteBuffer encodeCompressed(CandleSeries candles, long coveredFrom,
+      long coveredTo) {
+    byte[] encoded = CandleCodec.encode(candles);
+    ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + encoded.length);
+    writeHeader(buffer, COMPRESSED_VERSION, coveredFrom, coveredTo);
+    buffer.position(HEADER_BYTES);
+    buffer.put(encoded);
+    return buffer;
+  }
+
+  private static void writeHeader(ByteBuffer buffer, int version, long coveredFrom,
+      long coveredTo) {
+    buffer.putInt(0, MAGIC);
+    buffer.putInt(4, version);
+    buffer.putLong(8, coveredFrom);
+    buffer.putLong(16, coveredTo);
+  }
+
+  private Path pathOf(String key) {
+    return directory.resolve(key + FILE_SUFFIX);
+  }
+
+  private static String key(String symbol) {
+    StringBuilder key = new StringBuilder();
+    for (char c : symbol.toUpperCase(Locale.ROOT).toCharArray()) {
+      if ((c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '.' || c == '-' || c == '_') {
+        key.append(c);
+      } else {
+        key.append('%').append(Integer.toHexString(c));
+      }
+    }
+    return key.toString();
+  }
+
+  public static final class Coverage {
+
+    private final LocalDate from;
+    private final LocalDate to;
+
+    Coverage(LocalDate from, LocalDate to) {
+      this.from = from;
+      this.to = to;
+    }
+
+    public LocalDate getFrom() {
+      return from;
+    }
+
+    public LocalDate getTo() {
+      return to;
+    }
+
+    public boolean contains(LocalDate start, LocalDate end) {
+      return !start.isBefore(from) && !end.isAfter(to);
+    }
+  }
+
+  private static final class SymbolFile {
+
+    private final ByteBuffer buffer;
+    private final boolean compressed;
+    private final int count;
+    private final long coveredFrom;
+    private final long coveredTo;
+
+    private SymbolFile(ByteBuffer buffer, boolean compressed, int count, long coveredFrom,
+        long coveredTo) {
+      this.buffer = buffer;
+      this.compressed = compressed;
+      this.count = count;
+      this.coveredFrom = coveredFrom;
+      this.coveredTo = coveredTo;
+    }
+
+    static SymbolFile of(Path path, ByteBuffer buffer) throws IOException {
+      if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+        throw new IOException("Corrupt candle file: " + path);
+      }
+      if (buffer.getInt(4) == COMPRESSED_VERSION) {
+        return new SymbolFile(buffer, true, 0, buffer.getLong(8), buffer.getLong(16));
+      }
+      if (buffer.getInt(4) != VERSION) {
+        throw new IOException("Corrupt candle file: " + path);
+      }
+      // A partial record left by an interrupted append is ignored and later overwritten.
+      return new SymbolFile(buffer, false,
+          (buffer.capacity() - HEADER_BYTES) / CandleRecords.RECORD_BYTES, buffer.getLong(8),
+          buffer.getLong(16));
+    }
+
+    boolean hasCoverage() {
+      return coveredFrom <= coveredTo;
+    }
+
+    // Epoch day of the last stored candle, or Long.MIN_VALUE when there is none.
+    long lastEpochDay() {
+      if (!compressed) {
+        return count == 0 ? Long.MIN_VALUE
+            : CandleRecords.epochDay(buffer, HEADER_BYTES, count - 1);
+      }
+      CandleSeries candles = read(Long.MIN_VALUE, Long.MAX_VALUE);
+      return candles.isEmpty() ? Long.MIN_VALUE : candles.epochDay(candles.size() - 1);
+    }
+
+    Coverage coverage() {
+      return new Coverage(LocalDate.ofEpochDay(coveredFrom), LocalDate.ofEpochDay(coveredTo));
+    }
+
+    CandleSeries read(long from, long to) {
+      if (compressed) {
+        return CandleCodec.decode(buffer, HEADER_BYTES, from, to);
+      }
+      int start = CandleRecords.lowerBound(buffer, HEADER_BYTES, count, from);
+      int end = to == Long.MAX_VALUE ? count
+          : CandleRecords.lowerBound(buffer, HEADER_BYTES, count, to + 1);
+      CandleSeries.Builder candles = CandleSeries.builder(end - start);
+      for (int i = start; i < end; i++) {
+        candles.add((int) CandleRecords.epochDay(buffer, HEADER_BYTES, i),
+            CandleRecords.open(buffer, HEADER_BYTES, i),
+            CandleRecords.high(buffer, HEADER_BYTES, i),
+            CandleRecords.low(buffer, HEADER_BYTES, i),
+            CandleRecords.close(buffer, HEADER_BYTES, i));
+      }
+      return candles.build();
+    }
+  }
+}
@@ -0,0 +1,474 @@
+package com.crio.warmup.stock.store;
+
+import com.crio.warmup.stock.dto.CandleSeries;
+import com.crio.warmup.stock.dto.IsoDateDeserializer;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Loads full-market end-of-day price files into a {@link CandleStore}, so that a
+ * {@code CandleStoreService} without an upstream provider can serve every symbol locally.
+ *
+ * <p>Files hold one row per symbol per day, either as CSV with a header row naming at least the
+ * {@code symbol} (or {@code ticker}), {@code date}, {@code open}, {@code high}, {@code low} and
+ * {@code close} columns, or as JSON lines with the same fields. Other columns are ignored and
+ * empty or {@code null} prices are stored as missing.
+ *
+ * <p>A file is split into chunks at line boundaries. Each chunk is memory-mapped, parsed and
+ * written to the store by one of a fixed number of threads, so the heap holds at most one chunk's
+ * rows per thread whatever the size of the file. Chunks only write candles; the coverage of
+ * every symbol in the file is committed once all chunks have succeeded, with one sync to disk
+ * per symbol, so a failed ingest never marks unloaded days as stored. Snapshots are taken as
+ * complete: a symbol without a row on some day did not trade that day, so its stored coverage
+ * is extended over the days between what was stored and what is ingested.
+ */
+public class EodSnapshotIngester {
+
+  public static final int DEFAULT_CHUNK_BYTES = 64 << 20;
+
+  private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8,
+      1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15};
+  private static final JsonFactory JSON = new JsonFactory();
+
+  private final CandleStore store;
+  private final int parallelism;
+  private final int chunkBytes;
+
+  public EodSnapshotIngester(CandleStore store) {
+    this(store, Runtime.getRuntime().availableProcessors(), DEFAULT_CHUNK_BYTES);
+  }
+
+  public EodSnapshotIngester(CandleStore store, int parallelism, int chunkBytes) {
+    if (parallelism <= 0 || chunkBytes <= 0) {
+      throw new IllegalArgumentException("parallelism and chunkBytes must be positive");
+    }
+    this.store = store;
+    this.parallelism = parallelism;
+    this.chunkBytes = chunkBytes;
+  }
+
+  /**
+   * Ingests every {@code .csv}, {@code .jsonl} and {@code .ndjson} file in the directory in name
+   * order, and returns the number of rows stored.
+   */
+  public long ingestDirectory(Path directory) throws IOException {
+    List<Path> files;
+    try (Stream<Path> listing = Files.list(directory)) {
+      files = listing.filter(file -> isCsv(file) || isJsonLines(file)).sorted()
+          .collect(Collectors.toList());
+    }
+    long rows = 0;
+    for (Path file : files) {
+      rows += ingest(file);
+    }
+    return rows;
+  }
+
+  // Ingests one CSV or JSON lines file and returns the number of rows stored.
+  public long ingest(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      long start = 0;
+      int[] columns = null;
+      if (!isJsonLines(file)) {
+        start = nextLineStart(channel, 0, size);
+        columns = parseHeader(readAscii(channel, 0, start), file);
+      }
+      Map<String, long[]> ranges = new ConcurrentHashMap<>();
+      List<Future<Long>> chunks = new ArrayList<>();
+      ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+      try {
+        while (start < size) {
+          long end = nextLineStart(channel, Math.min(start + chunkBytes, size), size);
+          long chunkStart = start;
+          int[] chunkColumns = columns;
+          chunks.add(executor.submit(
+              () -> ingestChunk(channel, chunkStart, end, chunkColumns, file, ranges)));
+          start = end;
+        }
+        long rows = 0;
+        for (Future<Long> chunk : chunks) {
+          rows += chunk.get();
+        }
+        for (Map.Entry<String, long[]> range : ranges.entrySet()) {
+          commitCoverage(range.getKey(), LocalDate.ofEpochDay(range.getValue()[0]),
+              LocalDate.ofEpochDay(range.getValue()[1]));
+        }
+        return rows;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while ingesting " + file, e);
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof IOException) {
+          throw (IOException) e.getCause();
+        }
+        throw new IOException("Failed to ingest " + file, e.getCause());
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+  }
+
+  private long ingestChunk(FileChannel channel, long start, long end, int[] columns, Path file,
+      Map<String, long[]> ranges) throws IOException {
+    ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+    ChunkParser parser = new ChunkParser(buffer);
+    int lineStart = 0;
+    for (int i = 0; i <= buffer.limit(); i++) {
+      if (i < buffer.limit() && buffer.get(i) != '\n') {
+        continue;
+      }
+      int lineEnd = i > lineStart && buffer.get(i - 1) == '\r' ? i - 1 : i;
+      if (lineEnd > lineStart) {
+        try {
+          if (columns == null) {
+            parser.parseJsonLine(lineStart, lineEnd);
+          } else {
+            parser.parseCsvLine(lineStart, lineEnd, columns);
+          }
+        } catch (IOException | RuntimeException e) {
+          throw new IOException("Malformed row at byte " + (start + lineStart) + " of " + file
+              + ": " + e.getMessage(), e);
+        }
+      }
+      lineStart = i + 1;
+    }
+    for (Map.Entry<String, CandleSeries.Builder> symbol : parser.symbols.entrySet()) {
+      CandleSeries candles = symbol.getValue().build();
+      store.writeCandles(symbol.getKey(), candles.asCandles());
+      ranges.merge(symbol.getKey(),
+          new long[] {candles.epochDay(0), candles.epochDay(candles.size() - 1)},
+          (a, b) -> new long[] {Math.min(a[0], b[0]), Math.max(a[1], b[1])});
+    }
+    return parser.rows;
+  }
+
+  private void commitCoverage(String symbol, LocalDate from, LocalDate to) throws IOException {
+    CandleStore.Coverage coverage = store.getCoverage(symbol);
+    if (coverage != null && coverage.getTo().isBefore(from)) {
+      from = coverage.getTo().plusDays(1);
+    } else if (coverage != null && coverage.getFrom().isAfter(to)) {
+      to = coverage.getFrom().minusDays(1);
+    }
+    store.extendCoverage(symbol, from, to);
+  }
+
+  // Column indexes of symbol, date, open, high, low and close, followed by the column count.
+  private static int[] parseHeader(String header, Path file) throws IOException {
+    List<String> names = splitCsv(header.trim().toLowerCase(Locale.ROOT));
+    String[] wanted = {"symbol", "date", "open", "high", "low", "close"};
+    int[] columns = new int[wanted.length + 1];
+    for (int k = 0; k < wanted.length; k++) {
+      columns[k] = -1;
+      for (int i = 0; i < names.size(); i++) {
+        String name = unquote(names.get(i).trim());
+        if (name.equals(wanted[k]) || (k == 0 && name.equals("ticker"))) {
+          columns[k] = i;
+        }
+      }
+      if (columns[k] < 0) {
+        throw new IOException("No " + wanted[k] + " column in the header of " + file);
+      }
+    }
+    columns[wanted.length] = names.size();
+    return columns;
+  }
+
+  // Splits on the commas outside double quotes, as ChunkParser does for the rows.
+  private static List<String> splitCsv(String line) {
+    List<String> fields = new ArrayList<>();
+    boolean quoted = false;
+    int start = 0;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (c == '"') {
+        quoted = !quoted;
+      } else if (c == ',' && !quoted) {
+        fields.add(line.substring(start, i));
+        start = i + 1;
+      }
+    }
+    fields.add(line.substring(start));
+    return fields;
+  }
+
+  private static String unquote(String value) {
+    return value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")
+        ? value.substring(1, value.length() - 1) : value;
+  }
+
+  private static long nextLineStart(FileChannel channel, long position, long size)
+      throws IOException {
+    ByteBuffer probe = ByteBuffer.allocate(4096);
+    while (position < size) {
+      probe.clear();
+      int read = channel.read(probe, position);
+      if (read <= 0) {
+        break;
+      }
+      for (int i = 0; i < read; i++) {
+        if (probe.get(i) == '\n') {
+          return position + i + 1;
+        }
+      }
+      position += read;
+    }
+    return size;
+  }
+
+  private static String readAscii(FileChannel channel, long from, long to) throws IOException {
+    ByteBuffer bytes = ByteBuffer.allocate((int) (to - from));
+    while (bytes.hasRemaining() && channel.read(bytes, from + bytes.position()) > 0) {
+      // Keep reading until the line is complete
+    }
+    return new String(bytes.array(), 0, bytes.position(), StandardCharsets.ISO_8859_1);
+  }
+
+  private static boolean isCsv(Path file) {
+    return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv");
+  }
+
+  private static boolean isJsonLines(Path file) {
+    String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+    return name.endsWith(".jsonl") || name.endsWith(".ndjson");
+  }
+
+  /**
+   * Parses the rows of one chunk into a series per symbol. Plain decimals are parsed straight
+   * from the mapped bytes, and a snapshot's few distinct dates are converted once each.
+   */
+  private static final class ChunkParser {
+
+    private final ByteBuffer buffer;
+    private final Map<String, CandleSeries.Builder> symbols = new HashMap<>();
+    private int[] fieldStarts = new int[0];
+    private int[] fieldEnds = new int[0];
+    private byte[] line = new byte[256];
+    private int lastDateKey = -1;
+    private int lastEpochDay;
+    private long rows;
+
+    private ChunkParser(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    void parseCsvLine(int from, int to, int[] columns) throws IOException {
+      int count = columns[columns.length - 1];
+      if (fieldStarts.length < count) {
+        fieldStarts = new int[count];
+        fieldEnds = new int[count];
+      }
+      int field = 0;
+      fieldStarts[0] = from;
+      // A comma inside a quoted field such as "Apple, Inc." is part of the value. An escaped
+      // quote ("") flips the state twice, so it needs no special case.
+      boolean quoted = false;
+      for (int i = from; i < to && field < count; i++) {
+        byte b = buffer.get(i);
+        if (b == '"') {
+          quoted = !quoted;
+        } else if (b == ',' && !quoted) {
+          fieldEnds[field++] = i;
+          if (field < count) {
+            fieldStarts[field] = i + 1;
+          }
+        }
+      }
+      if (field < count) {
+        fieldEnds[field++] = to;
+      }
+      if (field < count) {
+        throw new IOException("expected " + count + " fields but found " + field);
+      }
+      for (int k = 0; k < count; k++) {
+        // Strip surrounding quotes
+        if (fieldEnds[k] - fieldStarts[k] >= 2 && buffer.get(fieldStarts[k]) == '"'
+            && buffer.get(fieldEnds[k] - 1) == '"') {
+          fieldStarts[k]++;
+          fieldEnds[k]--;
+        }
+      }
+      String symbol = ascii(fieldStarts[columns[0]], fieldEnds[columns[0]]);
+      int epochDay = epochDay(fieldStarts[columns[1]], fieldEnds[columns[1]]);
+      add(symbol, epochDay, price(fieldStarts[columns[2]], fieldEnds[columns[2]]),
+          price(fieldStarts[columns[3]], fieldEnds[columns[3]]),
+          price(fieldStarts[columns[4]], fieldEnds[columns[4]]),
+          price(fieldStarts[columns[5]], fieldEnds[columns[5]]));
+    }
+
+    void parseJsonLine(int from, int to) throws IOException {
+      int length = to - from;
+      if (line.length < length) {
+        line = new byte[Math.max(length, line.length * 2)];
+      }
+      for (int i = 0; i < length; i++) {
+        line[i] = buffer.get(from + i);
+      }
+      String symbol = null;
+      LocalDate date = null;
+      double open = Double.NaN;
+      double high = Double.NaN;
+      double low = Double.NaN;
+      double close = Double.NaN;
+      try (JsonParser parser = JSON.createParser(line, 0, length)) {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+          throw new IOException("not a JSON object");
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          String field = parser.getCurrentName();
+          JsonToken value = parser.nextToken();
+          switch (field) {
+            case "symbol":
+            case "ticker":
+              symbol = parser.getValueAsString();
+              break;
+            case "date":
+              if (value == JsonToken.VALUE_STRING) {
+                date = IsoDateDeserializer.parse(CharBuffer.wrap(parser.getTextCharacters(),
+                    parser.getTextOffset(), parser.getTextLength()));
+              }
+              break;
+            case "open":
+              open = price(parser, value);
+              break;
+            case "high":
+              high = price(parser, value);
+              break;
+            case "low":
+              low = price(parser, value);
+              break;
+            case "close":
+              close = price(parser, value);
+              break;
+            default:
+              parser.skipChildren();
+          }
+        }
+      }
+      if (symbol == null || symbol.isEmpty() || date == null) {
+        throw new IOException("missing symbol or date");
+      }
+      add(symbol, Math.toIntExact(date.toEpochDay()), open, high, low, close);
+    }
+
+    private void add(String symbol, int epochDay, double open, double high, double low,
+        double close) throws IOException {
+      if (symbol.isEmpty()) {
+        throw new IOException("missing symbol");
+      }
+      symbols.computeIfAbsent(symbol.toUpperCase(Locale.ROOT), k -> CandleSeries.builder(0))
+          .add(epochDay, open, high, low, close);
+      rows++;
+    }
+
+    private String ascii(int from, int to) {
+      byte[] bytes = new byte[to - from];
+      for (int i = 0; i < bytes.length; i++) {
+        bytes[i] = buffer.get(from + i);
+      }
+      return new String(bytes, StandardCharsets.ISO_8859_1).trim();
+    }
+
+    // Reads yyyy-MM-dd, ignoring any time of day that follows it.
+    private int epochDay(int from, int to) throws IOException {
+      if (to - from < 10 || buffer.get(from + 4) != '-' || buffer.get(from + 7) != '-') {
+        throw new IOException("expected a yyyy-MM-dd date but found " + ascii(from, to));
+      }
+      int key = digits(from, 4) * 10000 + digits(from + 5, 2) * 100 + digits(from + 8, 2);
+      if (key != lastDateKey) {
+        try {
+          lastEpochDay = Math.toIntExact(
+              LocalDate.of(key / 10000, key / 100 % 100, key % 100).toEpochDay());
+        } catch (DateTimeException e) {
+          throw new IOException("invalid date " + ascii(from, to), e);
+        }
+        lastDateKey = key;
+      }
+      return lastEpochDay;
+    }
+
+    private int digits(int from, int count) throws IOException {
+      int value = 0;
+      for (int i = from; i < from + count; i++) {
+        byte b = buffer.get(i);
+        if (b < '0' || b > '9') {
+          throw new IOException("expected a digit at " + i);
+        }
+        value = value * 10 + (b - '0');
+      }
+      return value;
+    }
+
+    /**
+     * Parses a plain decimal with up to 15 digits exactly as {@link Double#parseDouble} would:
+     * both the digits and the power of ten are exact doubles, so their quotient is correctly
+     * rounded. Anything else goes through {@code parseDouble}.
+     */
+    private double price(int from, int to) {
+      int i = from;
+      boolean negative = i < to && buffer.get(i) == '-';
+      if (negative) {
+        i++;
+      }
+      long mantissa = 0;
+      int digits = 0;
+      int scale = -1;
+      for (; i < to; i++) {
+        byte b = buffer.get(i);
+        if (b >= '0' && b <= '9' && digits < 15) {
+          mantissa = mantissa * 10 + (b - '0');
+          digits++;
+          if (scale >= 0) {
+            scale++;
+          }
+        } else if (b == '.' && scale < 0) {
+          scale = 0;
+        } else {
+          return parsePrice(ascii(from, to));
+        }
+      }
+      if (digits == 0) {
+        return parsePrice(ascii(from, to));
+      }
+      double value = scale <= 0 ? mantissa : mantissa / POWERS_OF_TEN[scale];
+      return negative ? -value : value;
+    }
+
+    private static double price(JsonParser parser, JsonToken value) throws IOException {
+      if (value == JsonToken.VALUE_NUMBER_INT || value == JsonToken.VALUE_NUMBER_FLOAT) {
+        return parser.getDoubleValue();
+      }
+      return value == JsonToken.VALUE_STRING ? parsePrice(parser.getText().trim()) : Double.NaN;
+    }
+
+    private static double parsePrice(String text) {
+      if (text.isEmpty() || text.equalsIgnoreCase("null") || text.equalsIgnoreCase("nan")) {
+        return Double.NaN;
+      }
+      return Double.parseDouble(text);
+    }
+  }
+}
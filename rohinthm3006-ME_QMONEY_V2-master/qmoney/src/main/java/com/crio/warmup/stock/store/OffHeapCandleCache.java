@@ -0,0 +1,248 @@
+package com.crio.warmup.stock.store;
+
+import com.crio.warmup.stock.dto.CandleSeries;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Candle cache kept outside the Java heap, with a hard ceiling on the memory it uses.
+ *
+ * <p>Memory is reserved as direct {@link ByteBuffer} arenas, up to the ceiling and only as it is
+ * needed, and handed out in fixed-size blocks of {@link CandleRecords}. A symbol's candles fill a
+ * chain of blocks in date order, together with the date range that was fetched for it. When a
+ * symbol does not fit, the least recently used symbols are evicted and their blocks reused, so
+ * the direct memory never grows past the ceiling and is never released to the garbage collector.
+ *
+ * <p>The heap holds one small index entry per symbol and the free block list, so cached candles
+ * add nothing for the collector to trace or copy. Reads copy only the requested range onto the
+ * heap. Arenas are kept for the lifetime of the cache; the JVM's
+ * {@code -XX:MaxDirectMemorySize} must leave room for the configured ceiling.
+ */
+public class OffHeapCandleCache {
+
+  public static final int BLOCK_BYTES = 4096;
+
+  private static final int RECORDS_PER_BLOCK = BLOCK_BYTES / CandleRecords.RECORD_BYTES;
+  // Arenas stay well below the 2 GB a single ByteBuffer can address.
+  private static final int BLOCKS_PER_ARENA = (1 << 30) / BLOCK_BYTES;
+
+  private final long maxBytes;
+  private final int totalBlocks;
+  private final ByteBuffer[] arenas;
+  private final int[] freeBlocks;
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private int freeCount;
+  private int nextUnusedBlock;
+  private int usedBlocks;
+
+  public OffHeapCandleCache(long maxBytes) {
+    if (maxBytes < BLOCK_BYTES) {
+      throw new IllegalArgumentException("maxBytes must be at least " + BLOCK_BYTES);
+    }
+    if (maxBytes / BLOCK_BYTES > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("maxBytes is too large: " + maxBytes);
+    }
+    this.maxBytes = maxBytes;
+    this.totalBlocks = (int) (maxBytes / BLOCK_BYTES);
+    this.arenas = new ByteBuffer[(totalBlocks + BLOCKS_PER_ARENA - 1) / BLOCKS_PER_ARENA];
+    this.freeBlocks = new int[totalBlocks];
+  }
+
+  /**
+   * Returns the cached candles within {@code from..to}, or {@code null} when that range has not
+   * been cached for the symbol.
+   */
+  public synchronized CandleSeries get(String symbol, LocalDate from, LocalDate to) {
+    Entry entry = entries.get(key(symbol));
+    if (entry == null || from.toEpochDay() < entry.coveredFrom
+        || to.toEpochDay() > entry.coveredTo) {
+      return null;
+    }
+    if (from.isAfter(to)) {
+      return CandleSeries.empty();
+    }
+    int start = lowerBound(entry, from.toEpochDay());
+    int end = lowerBound(entry, to.toEpochDay() + 1);
+    CandleSeries.Builder candles = CandleSeries.builder(end - start);
+    for (int i = start; i < end; i++) {
+      copyTo(candles, entry, i);
+    }
+    return candles.build();
+  }
+
+  /**
+   * Returns the date range cached for the symbol, or {@code null} when nothing is cached.
+   */
+  public synchronized CandleStore.Coverage getCoverage(String symbol) {
+    Entry entry = entries.get(key(symbol));
+    return entry == null ? null : new CandleStore.Coverage(
+        LocalDate.ofEpochDay(entry.coveredFrom), LocalDate.ofEpochDay(entry.coveredTo));
+  }
+
+  /**
+   * Merges freshly fetched candles for {@code from..to} into the symbol's cached candles and
+   * returns everything now cached for it. As with {@link CandleStore#merge}, candles already
+   * cached for the same date are replaced, and a range that neither overlaps nor touches what is
+   * cached leaves the coverage alone, as the days in between were never fetched. A symbol that
+   * alone exceeds the ceiling is returned but not cached.
+   */
+  public synchronized CandleSeries merge(String symbol, LocalDate from, LocalDate to,
+      CandleSeries candles) {
+    String key = key(symbol);
+    Entry existing = entries.remove(key);
+    long coveredFrom = from.toEpochDay();
+    long coveredTo = to.toEpochDay();
+    int existingCount = 0;
+    if (existing != null) {
+      if (coveredFrom <= existing.coveredTo + 1 && coveredTo >= existing.coveredFrom - 1) {
+        coveredFrom = Math.min(coveredFrom, existing.coveredFrom);
+        coveredTo = Math.max(coveredTo, existing.coveredTo);
+      } else {
+        coveredFrom = existing.coveredFrom;
+        coveredTo = existing.coveredTo;
+      }
+      existingCount = existing.count;
+    }
+
+    CandleSeries.Builder cached = CandleSeries.builder(existingCount);
+    for (int i = 0; i < existingCount; i++) {
+      copyTo(cached, existing, i);
+    }
+    CandleSeries series = CandleSeries.merge(cached.build(), candles);
+    if (existing != null) {
+      release(existing);
+    }
+    store(key, series, coveredFrom, coveredTo);
+    return series;
+  }
+
+  public synchronized void invalidate(String symbol) {
+    Entry removed = entries.remove(key(symbol));
+    if (removed != null) {
+      release(removed);
+    }
+  }
+
+  public synchronized void clear() {
+    for (Entry entry : entries.values()) {
+      release(entry);
+    }
+    entries.clear();
+  }
+
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  public synchronized long getUsedBytes() {
+    return (long) usedBlocks * BLOCK_BYTES;
+  }
+
+  public synchronized int getCachedSymbolCount() {
+    return entries.size();
+  }
+
+  private void store(String key, CandleSeries series, long coveredFrom, long coveredTo) {
+    int blocksNeeded = (series.size() + RECORDS_PER_BLOCK - 1) / RECORDS_PER_BLOCK;
+    if (blocksNeeded > totalBlocks) {
+      return;
+    }
+    Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+    while (freeCount + totalBlocks - nextUnusedBlock < blocksNeeded) {
+      release(eldest.next().getValue());
+      eldest.remove();
+    }
+    int[] blocks = new int[blocksNeeded];
+    for (int k = 0; k < blocksNeeded; k++) {
+      blocks[k] = allocateBlock();
+    }
+    usedBlocks += blocksNeeded;
+    Entry entry = new Entry(blocks, series.size(), coveredFrom, coveredTo);
+    for (int i = 0; i < series.size(); i++) {
+      int block = blocks[i / RECORDS_PER_BLOCK];
+      CandleRecords.write(arena(block), base(block), i % RECORDS_PER_BLOCK, series.epochDay(i),
+          series.open(i), series.high(i), series.low(i), series.close(i));
+    }
+    entries.put(key, entry);
+  }
+
+  private int allocateBlock() {
+    if (freeCount > 0) {
+      return freeBlocks[--freeCount];
+    }
+    int block = nextUnusedBlock++;
+    int arena = block / BLOCKS_PER_ARENA;
+    if (arenas[arena] == null) {
+      int blocks = Math.min(BLOCKS_PER_ARENA, totalBlocks - arena * BLOCKS_PER_ARENA);
+      arenas[arena] = ByteBuffer.allocateDirect(blocks * BLOCK_BYTES);
+    }
+    return block;
+  }
+
+  private void release(Entry entry) {
+    for (int block : entry.blocks) {
+      freeBlocks[freeCount++] = block;
+    }
+    usedBlocks -= entry.blocks.length;
+  }
+
+  private void copyTo(CandleSeries.Builder candles, Entry entry, int index) {
+    int block = entry.blocks[index / RECORDS_PER_BLOCK];
+    ByteBuffer buffer = arena(block);
+    int base = base(block);
+    int slot = index % RECORDS_PER_BLOCK;
+    candles.add((int) CandleRecords.epochDay(buffer, base, slot),
+        CandleRecords.open(buffer, base, slot), CandleRecords.high(buffer, base, slot),
+        CandleRecords.low(buffer, base, slot), CandleRecords.close(buffer, base, slot));
+  }
+
+  private long epochDay(Entry entry, int index) {
+    int block = entry.blocks[index / RECORDS_PER_BLOCK];
+    return CandleRecords.epochDay(arena(block), base(block), index % RECORDS_PER_BLOCK);
+  }
+
+  private int lowerBound(Entry entry, long epochDay) {
+    int low = 0;
+    int high = entry.count;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (epochDay(entry, mid) < epochDay) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private ByteBuffer arena(int block) {
+    return arenas[block / BLOCKS_PER_ARENA];
+  }
+
+  private static int base(int block) {
+    return (block % BLOCKS_PER_ARENA) * BLOCK_BYTES;
+  }
+
+  private static String key(String symbol) {
+    return symbol.toUpperCase(Locale.ROOT);
+  }
+
+  private static final class Entry {
+
+    private final int[] blocks;
+    private final int count;
+    private final long coveredFrom;
+    private final long coveredTo;
+
+    private Entry(int[] blocks, int count, long coveredFrom, long coveredTo) {
+      this.blocks = blocks;
+      this.count = count;
+      this.coveredFrom = coveredFrom;
+      this.coveredTo = coveredTo;
+    }
+  }
+}
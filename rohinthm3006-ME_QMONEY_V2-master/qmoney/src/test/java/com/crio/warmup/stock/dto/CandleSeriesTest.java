@@ -0,0 +1,69 @@
+package com.crio.warmup.stock.dto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class CandleSeriesTest {
+
+  private final LocalDate monday = LocalDate.parse("2019-01-07");
+
+  private CandleSeries week(int... dayOffsets) {
+    CandleSeries.Builder builder = CandleSeries.builder(dayOffsets.length);
+    for (int offset : dayOffsets) {
+      builder.add(monday.plusDays(offset), 100 + offset, 110 + offset, 90 + offset, 105 + offset);
+    }
+    return builder.build();
+  }
+
+  @Test
+  void buildsSortedSeriesFromAnyOrder() {
+    CandleSeries ascending = week(0, 1, 2, 3, 4);
+    CandleSeries descending = week(4, 3, 2, 1, 0);
+    CandleSeries shuffled = week(2, 4, 0, 3, 1);
+
+    for (CandleSeries series : Arrays.asList(ascending, descending, shuffled)) {
+      assertEquals(5, series.size());
+      assertEquals(monday, series.getDate(0));
+      assertEquals(100.0, series.open(0), 0.0);
+      assertEquals(109.0, series.close(4), 0.0);
+    }
+  }
+
+  @Test
+  void slicesByDateWithoutCopying() {
+    CandleSeries series = week(0, 1, 2, 3, 4);
+
+    // Weekend bounds fall between candles
+    CandleSeries slice = series.slice(monday.minusDays(2), monday.plusDays(2));
+    assertEquals(3, slice.size());
+    assertEquals(monday.plusDays(2), slice.getDate(2));
+    assertEquals(1, slice.indexOnOrAfter(monday.plusDays(1)));
+    assertEquals(-1, slice.indexOnOrBefore(monday.minusDays(1)));
+    assertSame(series, series.slice(monday, monday.plusDays(6)));
+    assertTrue(series.slice(monday.plusDays(5), monday.plusDays(6)).isEmpty());
+  }
+
+  @Test
+  void adaptsToAndFromCandleLists() {
+    CandleSeries series = week(0, 1, 2);
+    List<Candle> candles = series.asCandles();
+
+    assertEquals(3, candles.size());
+    assertEquals(monday.plusDays(1), candles.get(1).getDate());
+    assertEquals(111.0, candles.get(1).getHigh(), 0.0);
+    assertSame(series, CandleSeries.of(candles));
+
+    TiingoCandle missingOpen = new TiingoCandle();
+    missingOpen.setDate(monday);
+    missingOpen.setClose(1.0);
+    CandleSeries copied = CandleSeries.of(Arrays.asList(missingOpen));
+    assertTrue(Double.isNaN(copied.open(0)));
+    assertEquals(1.0, copied.close(0), 0.0);
+  }
+}
@@ -0,0 +1,102 @@
+
+package com.crio.warmup.stock.portfolio;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.crio.warmup.stock.dto.AnnualizedReturn;
+import com.crio.warmup.stock.dto.Candle;
+import com.crio.warmup.stock.dto.PortfolioTrade;
+import com.crio.warmup.stock.dto.TiingoCandle;
+import com.crio.warmup.stock.quotes.StockQuotesService;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class PortfolioExecutorsTest {
+
+  private final AtomicInteger running = new AtomicInteger();
+  private final AtomicInteger maxRunning = new AtomicInteger();
+
+  private final StockQuotesService slowProvider = (symbol, from, to) -> {
+    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+    try {
+      Thread.sleep(20);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      running.decrementAndGet();
+    }
+    List<Candle> candles = new ArrayList<>();
+    for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(7)) {
+      TiingoCandle candle = new TiingoCandle();
+      candle.setDate(date);
+      candle.setOpen(100.0);
+      candle.setClose(110.0);
+      candles.add(candle);
+    }
+    return candles;
+  };
+
+  @Test
+  void sharedExecutorBoundsConcurrencyAcrossCalls() throws Exception {
+    for (PortfolioExecutors.Mode mode : PortfolioExecutors.Mode.values()) {
+      maxRunning.set(0);
+      ExecutorService executor = PortfolioExecutors.newExecutor(mode, 3);
+      PortfolioManager portfolioManager =
+          PortfolioManagerImpl.withOwnedExecutor(slowProvider, executor);
+
+      ExecutorService callers = Executors.newFixedThreadPool(4);
+      List<Future<List<AnnualizedReturn>>> results = new ArrayList<>();
+      for (int call = 0; call < 4; call++) {
+        List<PortfolioTrade> trades = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+          trades.add(new PortfolioTrade("SYM" + call + "_" + i, 1, LocalDate.parse("2019-01-02")));
+        }
+        results.add(callers.submit(() -> portfolioManager
+            .calculateAnnualizedReturnParallel(trades, LocalDate.parse("2019-12-12"), 5)));
+      }
+      for (Future<List<AnnualizedReturn>> returns : results) {
+        assertEquals(5, returns.get().size());
+      }
+      callers.shutdown();
+
+      assertTrue(maxRunning.get() <= 3, mode + " ran " + maxRunning.get() + " tasks at once");
+      assertFalse(executor.isShutdown());
+      portfolioManager.close();
+      assertTrue(executor.isShutdown());
+    }
+  }
+
+  @Test
+  void shutdownNowHandsBackTasksStillWaitingForAPermit() throws Exception {
+    ExecutorService executor = PortfolioExecutors.bounded(Executors.newCachedThreadPool(), 1);
+    CountDownLatch started = new CountDownLatch(1);
+    AtomicInteger ran = new AtomicInteger();
+    Future<?> blocking = executor.submit(() -> {
+      started.countDown();
+      Thread.sleep(10_000);
+      return null;
+    });
+    started.await();
+    for (int i = 0; i < 3; i++) {
+      executor.submit(ran::incrementAndGet);
+    }
+    Thread.sleep(50);
+
+    List<Runnable> notStarted = executor.shutdownNow();
+
+    assertEquals(3, notStarted.size());
+    assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    assertTrue(blocking.isDone());
+    assertEquals(0, ran.get());
+  }
+}
@@ -0,0 +1,228 @@
+
+package com.crio.warmup.stock.portfolio;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.crio.warmup.stock.dto.AnnualizedReturn;
+import com.crio.warmup.stock.dto.AnnualizedReturnsResult;
+import com.crio.warmup.stock.dto.Candle;
+import com.crio.warmup.stock.dto.CandleSeries;
+import com.crio.warmup.stock.dto.PortfolioTrade;
+import com.crio.warmup.stock.dto.QuoteRequest;
+import com.crio.warmup.stock.dto.TiingoCandle;
+import com.crio.warmup.stock.exception.StockQuoteNotFoundException;
+import com.crio.warmup.stock.quotes.AsyncStockQuotesService;
+import com.crio.warmup.stock.quotes.BatchStockQuotesService;
+import com.crio.warmup.stock.quotes.BatchingStockQuotesService;
+import com.crio.warmup.stock.quotes.CandleSeriesService;
+import com.crio.warmup.stock.quotes.StockQuotesService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+class PortfolioFetchPlanTest {
+
+  private final AtomicInteger providerCalls = new AtomicInteger();
+
+  private final StockQuotesService provider = (symbol, from, to) -> {
+    providerCalls.incrementAndGet();
+    List<Candle> candles = new ArrayList<>();
+    double base = symbol.length() * 10.0;
+    for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+      TiingoCandle candle = new TiingoCandle();
+      candle.setDate(date);
+      candle.setOpen(base + date.getDayOfYear());
+      candle.setClose(base + date.getDayOfYear() + 1);
+      candles.add(candle);
+    }
+    return candles;
+  };
+
+  private final List<PortfolioTrade> trades = Arrays.asList(
+      new PortfolioTrade("AAPL", 50, LocalDate.parse("2019-03-01")),
+      new PortfolioTrade("MSFT", 10, LocalDate.parse("2019-02-01")),
+      new PortfolioTrade("AAPL", 20, LocalDate.parse("2019-01-02")),
+      new PortfolioTrade("GOOGL", 5, LocalDate.parse("2019-06-10")),
+      new PortfolioTrade("AAPL", 30, LocalDate.parse("2019-05-15")),
+      new PortfolioTrade("MSFT", 15, LocalDate.parse("2019-04-01")));
+
+  private final LocalDate endDate = LocalDate.parse("2019-12-12");
+
+  @Test
+  void fetchesOncePerDistinctSymbol() {
+    PortfolioFetchPlan plan = PortfolioFetchPlan.of(trades, endDate, provider);
+
+    assertEquals(3, plan.getSymbolCount());
+    assertEquals(trades.size(), plan.getTasks().size());
+  }
+
+  @Test
+  void returnsMatchPerTradeFetches() throws Exception {
+    List<AnnualizedReturn> expected = new ArrayList<>();
+    for (PortfolioTrade trade : trades) {
+      expected.add(new AnnualizedReturnTask(trade, provider, endDate).call());
+    }
+    providerCalls.set(0);
+
+    PortfolioManagerImpl portfolioManager = new PortfolioManagerImpl(provider);
+    List<AnnualizedReturn> sequential =
+        portfolioManager.calculateAnnualizedReturn(trades, endDate);
+    assertEquals(3, providerCalls.get());
+    providerCalls.set(0);
+    List<AnnualizedReturn> parallel =
+        portfolioManager.calculateAnnualizedReturnParallel(trades, endDate, 4);
+    assertEquals(3, providerCalls.get());
+
+    expected.sort((a, b) -> b.getAnnualizedReturn().compareTo(a.getAnnualizedReturn()));
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i).getSymbol(), sequential.get(i).getSymbol());
+      assertEquals(expected.get(i).getAnnualizedReturn(), sequential.get(i).getAnnualizedReturn(),
+          1e-12);
+      assertEquals(expected.get(i).getTotalReturns(), parallel.get(i).getTotalReturns(), 1e-12);
+    }
+  }
+
+  @Test
+  void asyncPathComposesOneFetchPerSymbol() throws Exception {
+    ScheduledExecutorService ioThread = Executors.newSingleThreadScheduledExecutor();
+    try {
+      AsyncQuotes asyncProvider = (symbol, from, to) -> {
+        CompletableFuture<List<Candle>> response = new CompletableFuture<>();
+        ioThread.schedule(() -> response.complete(provider.getStockQuote(symbol, from, to)),
+            10, TimeUnit.MILLISECONDS);
+        return response;
+      };
+      PortfolioManagerImpl portfolioManager = new PortfolioManagerImpl(asyncProvider);
+
+      List<AnnualizedReturn> async = portfolioManager
+          .calculateAnnualizedReturnAsync(trades, endDate).get(5, TimeUnit.SECONDS);
+      assertEquals(3, providerCalls.get());
+
+      List<AnnualizedReturn> sequential =
+          new PortfolioManagerImpl(provider).calculateAnnualizedReturn(trades, endDate);
+      for (int i = 0; i < sequential.size(); i++) {
+        assertEquals(sequential.get(i).getSymbol(), async.get(i).getSymbol());
+        assertEquals(sequential.get(i).getAnnualizedReturn(), async.get(i).getAnnualizedReturn(),
+            1e-12);
+      }
+    } finally {
+      ioThread.shutdownNow();
+    }
+  }
+
+  @Test
+  void batchProvidersFetchThePortfolioInOneCall() throws Exception {
+    BatchQuotes batchProvider = new BatchQuotes(provider);
+
+    List<AnnualizedReturn> batched = new PortfolioManagerImpl(batchProvider)
+        .calculateAnnualizedReturnParallel(trades, endDate, 4);
+
+    assertEquals(1, batchProvider.batchCalls.get());
+    assertEquals(3, providerCalls.get());
+    List<AnnualizedReturn> sequential =
+        new PortfolioManagerImpl(provider).calculateAnnualizedReturn(trades, endDate);
+    for (int i = 0; i < sequential.size(); i++) {
+      assertEquals(sequential.get(i).getSymbol(), batched.get(i).getSymbol());
+      assertEquals(sequential.get(i).getAnnualizedReturn(), batched.get(i).getAnnualizedReturn(),
+          1e-12);
+    }
+  }
+
+  @Test
+  void symbolsFailedInABatchAreNotFetchedAgain() {
+    StockQuotesService failing = (symbol, from, to) -> {
+      if (symbol.equals("GOOGL")) {
+        providerCalls.incrementAndGet();
+        throw new StockQuoteNotFoundException("Unknown symbol " + symbol);
+      }
+      return provider.getStockQuote(symbol, from, to);
+    };
+
+    try (BatchingStockQuotesService batching = new BatchingStockQuotesService(failing, 2)) {
+      AnnualizedReturnsResult result = new PortfolioManagerImpl(batching)
+          .calculateAnnualizedReturnPartial(trades, endDate, 4, Duration.ofSeconds(5),
+              Duration.ofSeconds(10));
+
+      assertEquals(3, providerCalls.get());
+      assertEquals(5, result.getAnnualizedReturns().size());
+      assertEquals(1, result.getFailures().size());
+      assertTrue(result.getFailures().get(0).getCause() instanceof StockQuoteNotFoundException);
+    }
+  }
+
+  @Test
+  void seriesProvidersAreReadWithoutCandleObjects() throws Exception {
+    SeriesQuotes seriesProvider = (symbol, from, to) ->
+        CandleSeries.of(provider.getStockQuote(symbol, from, to));
+    List<AnnualizedReturn> sequential =
+        new PortfolioManagerImpl(provider).calculateAnnualizedReturn(trades, endDate);
+
+    // getStockQuote throws, so every result below came from the series columns
+    PortfolioManagerImpl portfolioManager = new PortfolioManagerImpl(seriesProvider);
+    List<List<AnnualizedReturn>> results = Arrays.asList(
+        portfolioManager.calculateAnnualizedReturn(trades, endDate),
+        portfolioManager.calculateAnnualizedReturnParallel(trades, endDate, 4));
+    for (List<AnnualizedReturn> result : results) {
+      assertEquals(sequential.size(), result.size());
+      for (int i = 0; i < sequential.size(); i++) {
+        assertEquals(sequential.get(i).getAnnualizedReturn(),
+            result.get(i).getAnnualizedReturn(), 1e-12);
+      }
+    }
+  }
+
+  // Leaves GOOGL out of every batch, as if its fetch had failed, so it falls back to a single
+  // fetch.
+  private static final class BatchQuotes implements StockQuotesService, BatchStockQuotesService {
+
+    private final StockQuotesService provider;
+    private final AtomicInteger batchCalls = new AtomicInteger();
+
+    private BatchQuotes(StockQuotesService provider) {
+      this.provider = provider;
+    }
+
+    @Override
+    public List<Candle> getStockQuote(String symbol, LocalDate from, LocalDate to)
+        throws JsonProcessingException {
+      return provider.getStockQuote(symbol, from, to);
+    }
+
+    @Override
+    public CompletableFuture<Map<String, List<Candle>>> getStockQuotesAsync(
+        List<QuoteRequest> requests) {
+      batchCalls.incrementAndGet();
+      return BatchStockQuotesService.fanOut(AsyncStockQuotesService.of(provider),
+          requests.stream().filter(request -> !request.getSymbol().equals("GOOGL"))
+              .collect(Collectors.toList()));
+    }
+  }
+
+  private interface SeriesQuotes extends StockQuotesService, CandleSeriesService {
+
+    @Override
+    default List<Candle> getStockQuote(String symbol, LocalDate from, LocalDate to) {
+      throw new UnsupportedOperationException("Expected a series lookup");
+    }
+  }
+
+  private interface AsyncQuotes extends StockQuotesService, AsyncStockQuotesService {
+
+    @Override
+    default List<Candle> getStockQuote(String symbol, LocalDate from, LocalDate to) {
+      return getStockQuoteAsync(symbol, from, to).join();
+    }
+  }
+}
@@ -0,0 +1,177 @@
+
+package com.crio.warmup.stock.portfolio;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.crio.warmup.stock.dto.AnnualizedReturn;
+import com.crio.warmup.stock.dto.AnnualizedReturnsResult;
+import com.crio.warmup.stock.dto.Candle;
+import com.crio.warmup.stock.dto.PortfolioTrade;
+import com.crio.warmup.stock.dto.TiingoCandle;
+import com.crio.warmup.stock.dto.TradeFailure;
+import com.crio.warmup.stock.exception.StockQuoteServiceException;
+import com.crio.warmup.stock.quotes.StockQuotesService;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class PortfolioManagerParallelTest {
+
+  private final StockQuotesService provider = (symbol, from, to) -> {
+    try {
+      Thread.sleep(symbol.startsWith("SLOW") ? 500 : 10);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new StockQuoteServiceException("Interrupted", e);
+    }
+    if (symbol.startsWith("BAD")) {
+      throw new StockQuoteServiceException("Invalid Response Found");
+    }
+    List<Candle> candles = new ArrayList<>();
+    for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+      TiingoCandle candle = new TiingoCandle();
+      candle.setDate(date);
+      candle.setOpen(100.0);
+      candle.setClose(100.0 + symbol.length());
+      candles.add(candle);
+    }
+    return candles;
+  };
+
+  private final LocalDate endDate = LocalDate.parse("2019-12-12");
+
+  private final List<PortfolioTrade> trades = Arrays.asList(
+      new PortfolioTrade("SLOWER", 10, LocalDate.parse("2019-01-02")),
+      new PortfolioTrade("AAPL", 10, LocalDate.parse("2019-01-02")),
+      new PortfolioTrade("BADX", 10, LocalDate.parse("2019-01-02")),
+      new PortfolioTrade("GOOGL", 10, LocalDate.parse("2019-01-02")));
+
+  @Test
+  void streamingDeliversResultsAsTasksComplete() {
+    long start = System.nanoTime();
+    List<String> streamed = new ArrayList<>();
+    List<Long> arrivalMillis = new ArrayList<>();
+    List<String> failed = new ArrayList<>();
+    List<List<AnnualizedReturn>> completed = new ArrayList<>();
+
+    List<AnnualizedReturn> snapshot = new PortfolioManagerImpl(provider)
+        .calculateAnnualizedReturnStreaming(trades, endDate, 4, new AnnualizedReturnSink() {
+          @Override
+          public void onResult(AnnualizedReturn annualizedReturn) {
+            streamed.add(annualizedReturn.getSymbol());
+            arrivalMillis.add((System.nanoTime() - start) / 1_000_000);
+          }
+
+          @Override
+          public void onError(PortfolioTrade trade, Throwable error) {
+            failed.add(trade.getSymbol());
+          }
+
+          @Override
+          public void onComplete(List<AnnualizedReturn> sortedReturns) {
+            completed.add(sortedReturns);
+          }
+        });
+
+    assertEquals(3, streamed.size());
+    assertEquals("SLOWER", streamed.get(2));
+    assertTrue(arrivalMillis.get(0) < 400, "first result after " + arrivalMillis.get(0) + "ms");
+    assertEquals(Arrays.asList("BADX"), failed);
+    assertEquals(1, completed.size());
+    assertEquals(snapshot, completed.get(0));
+    assertEquals(Arrays.asList("SLOWER", "GOOGL", "AAPL"),
+        Arrays.asList(snapshot.get(0).getSymbol(), snapshot.get(1).getSymbol(),
+            snapshot.get(2).getSymbol()));
+  }
+
+  @Test
+  void aFailingSinkCancelsTheTasksStillRunning() {
+    long start = System.nanoTime();
+    IllegalStateException e = assertThrows(IllegalStateException.class,
+        () -> new PortfolioManagerImpl(provider).calculateAnnualizedReturnStreaming(trades,
+            endDate, 4, annualizedReturn -> {
+              throw new IllegalStateException("Client went away");
+            }));
+    long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+    assertEquals("Client went away", e.getMessage());
+    // SLOWER is interrupted instead of being waited for
+    assertTrue(elapsedMillis < 400, "took " + elapsedMillis + "ms");
+  }
+
+  @Test
+  void partialResultsCancelTasksPastTheirTimeout() {
+    long start = System.nanoTime();
+    AnnualizedReturnsResult result = new PortfolioManagerImpl(provider)
+        .calculateAnnualizedReturnPartial(trades, endDate, 4, Duration.ofMillis(200),
+            Duration.ofSeconds(5));
+    long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+    assertFalse(result.isComplete());
+    assertTrue(elapsedMillis < 450, "returned after " + elapsedMillis + "ms");
+    assertEquals(Arrays.asList("GOOGL", "AAPL"),
+        Arrays.asList(result.getAnnualizedReturns().get(0).getSymbol(),
+            result.getAnnualizedReturns().get(1).getSymbol()));
+    assertEquals(2, result.getFailures().size());
+    for (TradeFailure failure : result.getFailures()) {
+      String symbol = failure.getTrade().getSymbol();
+      assertEquals(symbol.equals("SLOWER"), failure.isTimedOut(), symbol);
+    }
+  }
+
+  @Test
+  void partialResultsReportTradesLeftAtTheOverallDeadline() {
+    AnnualizedReturnsResult result = new PortfolioManagerImpl(provider)
+        .calculateAnnualizedReturnPartial(trades, endDate, 1, Duration.ofSeconds(5),
+            Duration.ofMillis(200));
+
+    assertEquals(0, result.getAnnualizedReturns().size());
+    assertEquals(trades.size(), result.getFailures().size());
+    for (TradeFailure failure : result.getFailures()) {
+      assertTrue(failure.isTimedOut(), failure.toString());
+    }
+  }
+
+  @Test
+  void tasksStuckPastTheirTimeoutAreGivenUpOnAndTheirSlotReused() {
+    // Ignores interrupts, like a read on a socket without a timeout
+    StockQuotesService stuck = (symbol, from, to) -> {
+      if (symbol.equals("STUCK")) {
+        long until = System.nanoTime() + Duration.ofSeconds(3).toNanos();
+        while (System.nanoTime() < until) {
+          try {
+            Thread.sleep(10);
+          } catch (InterruptedException e) {
+            // keep waiting
+          }
+        }
+      }
+      return provider.getStockQuote(symbol, from, to);
+    };
+    List<PortfolioTrade> portfolio = Arrays.asList(
+        new PortfolioTrade("STUCK", 10, LocalDate.parse("2019-01-02")),
+        new PortfolioTrade("AAPL", 10, LocalDate.parse("2019-01-02")),
+        new PortfolioTrade("MSFT", 10, LocalDate.parse("2019-01-02")),
+        new PortfolioTrade("GOOGL", 10, LocalDate.parse("2019-01-02")));
+
+    long start = System.nanoTime();
+    AnnualizedReturnsResult result = new PortfolioManagerImpl(stuck)
+        .calculateAnnualizedReturnPartial(portfolio, endDate, 2, Duration.ofMillis(100),
+            Duration.ofSeconds(2));
+    long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+    assertTrue(elapsedMillis < 1000, "returned after " + elapsedMillis + "ms");
+    assertEquals(3, result.getAnnualizedReturns().size());
+    assertEquals(1, result.getFailures().size());
+    TradeFailure failure = result.getFailures().get(0);
+    assertEquals("STUCK", failure.getTrade().getSymbol());
+    assertTrue(failure.isTimedOut());
+    assertTrue(failure.getMessage().startsWith("Timed out"), failure.getMessage());
+  }
+}
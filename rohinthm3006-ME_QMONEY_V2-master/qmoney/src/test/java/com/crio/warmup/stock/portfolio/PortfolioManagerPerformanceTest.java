@@ -0,0 +1,190 @@
+package com.crio.warmup.stock.portfolio;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.crio.warmup.stock.dto.AnnualizedReturn;
+import com.crio.warmup.stock.dto.CandleSeries;
+import com.crio.warmup.stock.dto.PortfolioTrade;
+import com.crio.warmup.stock.exception.StockQuoteServiceException;
+import com.crio.warmup.stock.quotes.StockQuotesService;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Performance regression suite for the sequential and parallel return calculations, run with
+ * {@code ./gradlew performanceTest} rather than with the unit tests.
+ *
+ * <p>Quotes come from a stub that sleeps for a per-symbol latency and answers with a two-candle
+ * series, so timings measure the portfolio manager and its scheduling rather than a provider.
+ * Bounds are loose enough for a busy laptop but catch lost parallelism, serialized fetches,
+ * super-linear growth and per-trade memory regressions.
+ */
+@Tag("performance")
+class PortfolioManagerPerformanceTest {
+
+  private static final LocalDate PURCHASE_DATE = LocalDate.parse("2018-01-02");
+  private static final LocalDate END_DATE = LocalDate.parse("2019-12-31");
+
+  // Fetch latency in milliseconds: symbols named SLOW<ms>_... take that long, others latencyMillis.
+  private static StockQuotesService provider(long latencyMillis) {
+    return (symbol, from, to) -> {
+      long millis = symbol.startsWith("SLOW")
+          ? Long.parseLong(symbol.substring(4, symbol.indexOf('_'))) : latencyMillis;
+      if (millis > 0) {
+        try {
+          Thread.sleep(millis);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new StockQuoteServiceException("Interrupted", e);
+        }
+      }
+      return CandleSeries.builder(2)
+          .add(from, 100.0, 101.0, 99.0, 100.5)
+          .add(to, 110.0, 112.0, 108.0, 111.0 + symbol.length())
+          .build()
+          .asCandles();
+    };
+  }
+
+  // One lot per symbol, so no fetches are shared.
+  private static List<PortfolioTrade> portfolio(int size, String prefix) {
+    List<PortfolioTrade> trades = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      trades.add(new PortfolioTrade(prefix + i, 10, PURCHASE_DATE));
+    }
+    return trades;
+  }
+
+  // The best of a few runs, which filters out GC pauses and scheduling noise.
+  private static long bestNanos(int runs, Supplier<List<AnnualizedReturn>> calculation,
+      int expectedResults) {
+    long best = Long.MAX_VALUE;
+    for (int run = 0; run < runs; run++) {
+      long start = System.nanoTime();
+      List<AnnualizedReturn> returns = calculation.get();
+      best = Math.min(best, System.nanoTime() - start);
+      assertEquals(expectedResults, returns.size());
+    }
+    return best;
+  }
+
+  private static long usedHeap() {
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    Runtime runtime = Runtime.getRuntime();
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  // Bytes allocated by this thread so far, or 0 where the JVM does not count them.
+  private static long allocatedBytes() {
+    java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    if (threads instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean counting = (com.sun.management.ThreadMXBean) threads;
+      if (counting.isThreadAllocatedMemorySupported()) {
+        return counting.getThreadAllocatedBytes(Thread.currentThread().getId());
+      }
+    }
+    return 0;
+  }
+
+  @Test
+  void timePerTradeStaysFlatFrom10To100kTrades() {
+    PortfolioManagerImpl portfolioManager = new PortfolioManagerImpl(provider(0));
+    List<PortfolioTrade> warmUp = portfolio(10_000, "W");
+    portfolioManager.calculateAnnualizedReturn(warmUp, END_DATE);
+    portfolioManager.calculateAnnualizedReturnParallel(warmUp, END_DATE, 8);
+
+    double sequentialAt1k = 0;
+    double parallelAt1k = 0;
+    for (int size = 10; size <= 100_000; size *= 10) {
+      List<PortfolioTrade> trades = portfolio(size, "T");
+      double sequential = (double) bestNanos(3,
+          () -> portfolioManager.calculateAnnualizedReturn(trades, END_DATE), size) / size;
+      double parallel = (double) bestNanos(3,
+          () -> portfolioManager.calculateAnnualizedReturnParallel(trades, END_DATE, 8), size)
+          / size;
+      System.out.printf("%,7d trades: sequential %,8.0f ns/trade, parallel %,8.0f ns/trade%n",
+          size, sequential, parallel);
+      if (size == 1_000) {
+        sequentialAt1k = sequential;
+        parallelAt1k = parallel;
+      } else if (size > 1_000) {
+        // Linear growth keeps the cost per trade within cache and GC effects of the 1k cost,
+        // where anything quadratic would grow a hundredfold by 100k trades
+        assertTrue(sequential < 6 * sequentialAt1k,
+            size + " trades took " + sequential + " ns/trade sequentially");
+        assertTrue(parallel < 6 * parallelAt1k,
+            size + " trades took " + parallel + " ns/trade in parallel");
+      }
+    }
+  }
+
+  @Test
+  void parallelSpeedupGrowsWithThreadCount() {
+    PortfolioManagerImpl portfolioManager = new PortfolioManagerImpl(provider(20));
+    List<PortfolioTrade> trades = portfolio(64, "P");
+    long oneThread = bestNanos(2,
+        () -> portfolioManager.calculateAnnualizedReturnParallel(trades, END_DATE, 1), 64);
+
+    for (int threads = 2; threads <= 16; threads *= 2) {
+      int numThreads = threads;
+      long nanos = bestNanos(2,
+          () -> portfolioManager.calculateAnnualizedReturnParallel(trades, END_DATE, numThreads),
+          64);
+      double speedup = (double) oneThread / nanos;
+      System.out.printf("%2d threads: %5.1fx speedup%n", threads, speedup);
+      // Fetches only wait, so each thread should add close to a fetch's worth of throughput
+      assertTrue(speedup >= 0.5 * threads, threads + " threads only gave " + speedup + "x");
+    }
+  }
+
+  @Test
+  void wallTimeIsBoundedBySlowestFetch() {
+    PortfolioManagerImpl portfolioManager = new PortfolioManagerImpl(provider(10));
+    List<PortfolioTrade> trades = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      int millis = 5 + (i * 37) % 45;
+      trades.add(new PortfolioTrade("SLOW" + millis + "_" + i, 10, PURCHASE_DATE));
+    }
+    long slowestMillis = 300;
+    trades.add(new PortfolioTrade("SLOW" + slowestMillis + "_X", 10, PURCHASE_DATE));
+
+    // With a thread per trade every fetch is in flight at once
+    long nanos = bestNanos(3, () -> portfolioManager.calculateAnnualizedReturnParallel(trades,
+        END_DATE, trades.size()), trades.size());
+    long millis = nanos / 1_000_000;
+    System.out.printf("%d trades in %d ms, slowest fetch %d ms%n", trades.size(), millis,
+        slowestMillis);
+    assertTrue(millis >= slowestMillis, "finished before its slowest fetch: " + millis);
+    assertTrue(millis < slowestMillis + 200, "took " + millis + " ms");
+  }
+
+  @Test
+  void heapGrowthPerTradeIsBounded() {
+    PortfolioManagerImpl portfolioManager = new PortfolioManagerImpl(provider(0));
+    int size = 100_000;
+    List<PortfolioTrade> trades = portfolio(size, "H");
+    portfolioManager.calculateAnnualizedReturn(portfolio(1_000, "W"), END_DATE);
+
+    long before = usedHeap();
+    long allocatedBefore = allocatedBytes();
+
+    List<AnnualizedReturn> returns = portfolioManager.calculateAnnualizedReturn(trades, END_DATE);
+
+    long allocatedPerTrade = (allocatedBytes() - allocatedBefore) / size;
+    long retainedPerTrade = (usedHeap() - before) / size;
+    assertEquals(size, returns.size());
+    System.out.printf("%,d bytes allocated and %,d bytes retained per trade%n", allocatedPerTrade,
+        retainedPerTrade);
+    // A result is a few dozen bytes; the rest is per-trade garbage that must not pile up
+    assertTrue(retainedPerTrade < 512, retainedPerTrade + " bytes retained per trade");
+    assertTrue(allocatedPerTrade < 16 * 1024, allocatedPerTrade + " bytes allocated per trade");
+  }
+}
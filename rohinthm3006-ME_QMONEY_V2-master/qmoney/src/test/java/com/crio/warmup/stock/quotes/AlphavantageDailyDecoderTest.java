@@ -0,0 +1,57 @@
+package com.crio.warmup.stock.quotes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.crio.warmup.stock.dto.CandleSeries;
+import com.crio.warmup.stock.exception.StockQuoteNotFoundException;
+import com.crio.warmup.stock.exception.StockQuoteRateLimitException;
+import com.crio.warmup.stock.exception.StockQuoteServiceException;
+import java.time.LocalDate;
+import org.junit.jupiter.api.Test;
+
+class AlphavantageDailyDecoderTest {
+
+  private static String day(String date, String open, String close) {
+    return "\"" + date + "\": {\"1. open\": \"" + open + "\",\"2. high\": \"0\",\"3. low\": \"0\","
+        + "\"4. close\": \"" + close + "\",\"5. volume\": \"1000\"}";
+  }
+
+  private final String series = "{\"Meta Data\": {\"2. Symbol\": \"AAPL\"},"
+      + "\"Time Series (Daily)\": {" + day("2019-12-12", "267.78", "271.46") + ","
+      + day("2019-01-04", "144.53", "148.26") + "," + day("2019-01-03", "143.98", "142.19") + ","
+      + day("2019-01-02", "154.89", "157.92") + "," + day("2018-12-31", "158.53", "157.74") + ",";
+
+  @Test
+  void keepsTheRangeOldestFirstAndStopsPastTheStart() {
+    // The body is cut off after the first day before the range, which is never read
+    CandleSeries candles = AlphavantageDailyDecoder.decode(series + "\"2018-12-28\": {\"1. op",
+        LocalDate.parse("2019-01-01"), LocalDate.parse("2019-01-04"));
+
+    assertEquals(3, candles.size());
+    assertEquals(LocalDate.parse("2019-01-02"), candles.getDate(0));
+    assertEquals(154.89, candles.open(0), 0.0);
+    assertEquals(148.26, candles.close(2), 0.0);
+  }
+
+  @Test
+  void reportsThrottlingUnknownSymbolsAndMissingSeries() {
+    assertThrows(StockQuoteRateLimitException.class, () -> AlphavantageDailyDecoder.decode(
+        "{\"Note\": \"Our standard API call frequency is 5 calls per minute.\"}",
+        LocalDate.parse("2019-01-01"), LocalDate.parse("2019-01-04")));
+    StockQuoteServiceException e = assertThrows(StockQuoteServiceException.class,
+        () -> AlphavantageDailyDecoder.decode("{\"Information\": \"The demo API key is for demo"
+            + " purposes only.\"}", LocalDate.parse("2019-01-01"), LocalDate.parse("2019-01-04")));
+    assertEquals(StockQuoteServiceException.class, e.getClass());
+    assertThrows(StockQuoteNotFoundException.class, () -> AlphavantageDailyDecoder.decode(
+        "{\"Error Message\": \"Invalid API call. Please retry or visit the documentation.\"}",
+        LocalDate.parse("2019-01-01"), LocalDate.parse("2019-01-04")));
+  }
+
+  @Test
+  void usesACompactResponseForRecentRanges() {
+    LocalDate today = LocalDate.parse("2019-12-12");
+    assertEquals("compact", AlphavantageService.outputSizeFor(today.minusDays(30), today));
+    assertEquals("full", AlphavantageService.outputSizeFor(today.minusDays(150), today));
+  }
+}
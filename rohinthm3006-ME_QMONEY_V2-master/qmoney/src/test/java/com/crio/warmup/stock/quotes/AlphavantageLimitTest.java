@@ -1,14 +1,12 @@
 
 package com.crio.warmup.stock.quotes;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 
 import com.crio.warmup.stock.exception.StockQuoteServiceException;
+import java.net.URI;
 import java.time.LocalDate;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
@@ -17,6 +15,7 @@ import org.mockito.Mockito;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
+import org.springframework.http.HttpMethod;
 import org.springframework.web.client.RestTemplate;
 
 class AlphavantageLimitTest {
@@ -36,7 +35,8 @@ class AlphavantageLimitTest {
   @Test
   @MockitoSettings(strictness = Strictness.LENIENT)
   void getStockQuoteSingle() {
-    Mockito.doReturn(aaplQuotes).when(restTemplate).getForObject(anyString(), eq(String.class));
+    Mockito.doAnswer(StubClientHttpResponse.respondingWith(aaplQuotes))
+        .when(restTemplate).execute(any(URI.class), eq(HttpMethod.GET), any(), any());
     try {
       alphavantageService
           .getStockQuote("AAPL",
@@ -4,19 +4,13 @@ package com.crio.warmup.stock.quotes;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyMap;
-import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
-import static org.mockito.Mockito.atLeast;
 
-import com.crio.warmup.stock.dto.AlphavantageDailyResponse;
 import com.crio.warmup.stock.dto.Candle;
 import java.net.URI;
 import java.time.LocalDate;
 import java.util.List;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
@@ -25,6 +19,7 @@ import org.mockito.Mockito;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
+import org.springframework.http.HttpMethod;
 import org.springframework.web.client.RestTemplate;
 
 class AlphavantageServiceTest {
@@ -65,9 +60,8 @@ class AlphavantageServiceTest {
   @Test
   @MockitoSettings(strictness = Strictness.LENIENT)
   void getStockQuoteSingle() throws Exception {
-    Mockito.doReturn(aaplQuotes).when(restTemplate).getForObject(anyString(), eq(String.class));
-    Mockito.doReturn(getParsedResponse(aaplQuotes)).when(restTemplate).getForObject(anyString(),
-            eq(AlphavantageDailyResponse.class));
+    Mockito.doAnswer(StubClientHttpResponse.respondingWith(aaplQuotes))
+        .when(restTemplate).execute(any(URI.class), eq(HttpMethod.GET), any(), any());
 
     List<Candle> candles = alphavantageService
         .getStockQuote("AAPL",
@@ -77,36 +71,15 @@ class AlphavantageServiceTest {
     assertEquals(candles.get(2).getClose(), 148.26, 0.1);
     assertEquals(candles.get(2).getDate(), LocalDate.parse("2019-01-04"));
 
-    ArgumentCaptor<String> urlCaptor = ArgumentCaptor.forClass(String.class);
-    Mockito.verify(restTemplate, atLeast(0)).getForObject(urlCaptor.capture(), any());
+    ArgumentCaptor<URI> urlCaptor = ArgumentCaptor.forClass(URI.class);
+    Mockito.verify(restTemplate)
+        .execute(urlCaptor.capture(), eq(HttpMethod.GET), any(), any());
 
-    ArgumentCaptor<String> urlCaptorWithMap = ArgumentCaptor.forClass(String.class);
-    Mockito.verify(restTemplate, atLeast(0))
-        .getForObject(urlCaptorWithMap.capture(), any(), anyMap());
-
-    ArgumentCaptor<URI> urlCaptorAsUri = ArgumentCaptor.forClass(URI.class);
-    Mockito.verify(restTemplate, atLeast(0))
-        .getForObject(urlCaptorAsUri.capture(), any(Class.class));
-
-    List<String> propertyKeyValues = urlCaptor.getAllValues();
-    List<String> propertyKeyValues2 = urlCaptorWithMap.getAllValues();
-    List<URI> propertyKeyValues3 = urlCaptorAsUri.getAllValues();
-
-    assertTrue(!propertyKeyValues.isEmpty() || !propertyKeyValues2.isEmpty() || !propertyKeyValues3
-        .isEmpty());
+    assertTrue(urlCaptor.getValue().toString().startsWith(
+        "https://www.alphavantage.co/query?function=TIME_SERIES_DAILY&symbol=AAPL"));
   }
 
 
-  private AlphavantageDailyResponse getParsedResponse(String quotes) {
-    ObjectMapper objectMapper = new ObjectMapper();
-    objectMapper.registerModule(new JavaTimeModule());
-    try {
-      return objectMapper.readValue(quotes, AlphavantageDailyResponse.class);
-    } catch (Exception ex) {
-      throw new RuntimeException(ex);
-    }
-  }
-
 
 }
 
@@ -0,0 +1,96 @@
+package com.crio.warmup.stock.quotes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.crio.warmup.stock.exception.StockQuoteRateLimitException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class ApiKeyPoolTest {
+
+  private final List<String> keys = Arrays.asList("k1", "k2", "k3");
+
+  @Test
+  void roundRobinSpreadsRequestsEvenly() {
+    ApiKeyPool pool = new ApiKeyPool(keys, ApiKeyPool.Strategy.ROUND_ROBIN, 0);
+
+    for (int i = 0; i < 30; i++) {
+      assertEquals(keys.get(i % 3), pool.acquire());
+    }
+    for (String key : keys) {
+      assertEquals(10, pool.getUsageToday(key));
+    }
+  }
+
+  @Test
+  void quarantinedKeysAreSkippedUntilReleased() throws Exception {
+    ApiKeyPool pool = new ApiKeyPool(keys, ApiKeyPool.Strategy.LEAST_USED, 0);
+
+    pool.quarantine("k2", Duration.ofMillis(50));
+    for (int i = 0; i < 4; i++) {
+      assertFalse(pool.acquire().equals("k2"));
+    }
+    assertTrue(pool.isQuarantined("k2"));
+    assertEquals(2, pool.getAvailableKeyCount());
+
+    Thread.sleep(60);
+    // k2 has the fewest requests today, so it is picked first once it is back
+    assertEquals("k2", pool.acquire());
+    assertFalse(pool.isQuarantined("k2"));
+  }
+
+  @Test
+  void exhaustedKeysFailOnceEveryKeyIsSpent() {
+    ApiKeyPool pool = new ApiKeyPool(keys, ApiKeyPool.Strategy.ROUND_ROBIN, 2);
+
+    for (int i = 0; i < 6; i++) {
+      pool.acquire();
+    }
+    StockQuoteRateLimitException e =
+        assertThrows(StockQuoteRateLimitException.class, pool::acquire);
+
+    assertEquals(0, pool.getRemainingQuota("k1"));
+    assertTrue(e.getRetryAfter().toHours() < 24);
+  }
+
+  @Test
+  void everyKeyIsPacedOnItsOwn() {
+    ApiKeyPool pool = new ApiKeyPool(keys, ApiKeyPool.Strategy.ROUND_ROBIN, 0);
+    pool.setKeyRateLimit(1.0, 1);
+
+    // One request per key goes out at once, the next has to wait for a key to refill
+    for (String key : keys) {
+      ApiKeyPool.Lease lease = pool.reserve();
+      assertEquals(key, lease.getKey());
+      assertEquals(0, lease.getWaitNanos());
+    }
+    ApiKeyPool.Lease fourth = pool.reserve();
+    assertTrue(fourth.getWaitNanos() > 0);
+    // The busy key with the shortest wait is the first one used
+    assertEquals("k1", fourth.getKey());
+  }
+
+  @Test
+  void keysAreLoadedFromConfiguration() {
+    System.setProperty("testprovider.api.keys", " a, b ,,c ");
+    System.setProperty("testprovider.api.keyStrategy", "least_used");
+    System.setProperty("testprovider.api.keyRequestsPerSecond", "2.5");
+    try {
+      ApiKeyPool pool = ApiKeyPool.fromConfig("testprovider");
+
+      assertEquals(Arrays.asList("a", "b", "c"), pool.getKeys());
+      assertEquals(Long.MAX_VALUE, pool.getRemainingQuota("a"));
+      assertEquals(2.5, pool.getKeyPermitsPerSecond(), 0.0);
+      assertEquals(1, pool.getKeyBurst());
+    } finally {
+      System.clearProperty("testprovider.api.keys");
+      System.clearProperty("testprovider.api.keyStrategy");
+      System.clearProperty("testprovider.api.keyRequestsPerSecond");
+    }
+  }
+}
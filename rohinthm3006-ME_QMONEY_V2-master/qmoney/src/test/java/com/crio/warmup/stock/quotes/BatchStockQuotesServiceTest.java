@@ -0,0 +1,61 @@
+package com.crio.warmup.stock.quotes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import com.crio.warmup.stock.dto.Candle;
+import com.crio.warmup.stock.dto.QuoteRequest;
+import com.crio.warmup.stock.dto.TiingoCandle;
+import com.crio.warmup.stock.exception.StockQuoteServiceException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class BatchStockQuotesServiceTest {
+
+  private final List<QuoteRequest> sent = Collections.synchronizedList(new ArrayList<>());
+  private final List<CompletableFuture<List<Candle>>> pending =
+      Collections.synchronizedList(new ArrayList<>());
+
+  // Holds every response until the test releases them, to show all fetches are in flight at once.
+  private final AsyncStockQuotesService provider = (symbol, from, to) -> {
+    sent.add(new QuoteRequest(symbol, from, to));
+    CompletableFuture<List<Candle>> response = new CompletableFuture<>();
+    pending.add(response);
+    if (symbol.equals("BAD")) {
+      return response.thenApply(candles -> {
+        throw new StockQuoteServiceException("Invalid Response Found");
+      });
+    }
+    TiingoCandle candle = new TiingoCandle();
+    candle.setDate(from);
+    return response.thenApply(ignored -> Collections.singletonList(candle));
+  };
+
+  @Test
+  void fansOutMergedRequestsAndLeavesOutFailedSymbols() throws Exception {
+    CompletableFuture<Map<String, List<Candle>>> batch = BatchStockQuotesService.fanOut(provider,
+        Arrays.asList(
+            new QuoteRequest("AAPL", LocalDate.parse("2019-03-01"), LocalDate.parse("2019-12-12")),
+            new QuoteRequest("MSFT", LocalDate.parse("2019-01-02"), LocalDate.parse("2019-12-12")),
+            new QuoteRequest("aapl", LocalDate.parse("2019-01-02"), LocalDate.parse("2019-06-30")),
+            new QuoteRequest("BAD", LocalDate.parse("2019-01-02"), LocalDate.parse("2019-12-12"))));
+
+    assertEquals(3, sent.size());
+    assertFalse(batch.isDone());
+    for (CompletableFuture<List<Candle>> response : pending) {
+      response.complete(null);
+    }
+    Map<String, List<Candle>> quotes = batch.get(5, TimeUnit.SECONDS);
+
+    assertEquals(Arrays.asList("AAPL", "MSFT"), new ArrayList<>(quotes.keySet()));
+    assertEquals(LocalDate.parse("2019-01-02"), sent.get(0).getFrom());
+    assertEquals(LocalDate.parse("2019-12-12"), sent.get(0).getTo());
+  }
+}
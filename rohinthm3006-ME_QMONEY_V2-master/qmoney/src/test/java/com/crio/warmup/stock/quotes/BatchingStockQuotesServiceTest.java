@@ -0,0 +1,111 @@
+package com.crio.warmup.stock.quotes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.crio.warmup.stock.dto.Candle;
+import com.crio.warmup.stock.dto.QuoteRequest;
+import com.crio.warmup.stock.dto.TiingoCandle;
+import com.crio.warmup.stock.exception.StockQuoteNotFoundException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class BatchingStockQuotesServiceTest {
+
+  private static final LocalDate FROM = LocalDate.parse("2019-01-02");
+  private static final LocalDate TO = LocalDate.parse("2019-12-12");
+
+  private final AtomicInteger calls = new AtomicInteger();
+  private final AtomicInteger running = new AtomicInteger();
+  private final AtomicInteger maxRunning = new AtomicInteger();
+
+  private final StockQuotesService provider = (symbol, from, to) -> {
+    calls.incrementAndGet();
+    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+    try {
+      Thread.sleep(20);
+      if (symbol.equals("BAD")) {
+        throw new StockQuoteNotFoundException("Unknown symbol " + symbol);
+      }
+      TiingoCandle candle = new TiingoCandle();
+      candle.setDate(from);
+      return Collections.singletonList(candle);
+    } catch (InterruptedException e) {
+      throw new IllegalStateException(e);
+    } finally {
+      running.decrementAndGet();
+    }
+  };
+
+  private List<QuoteRequest> requests(String... symbols) {
+    List<QuoteRequest> requests = new ArrayList<>();
+    for (String symbol : symbols) {
+      requests.add(new QuoteRequest(symbol, FROM, TO));
+    }
+    return requests;
+  }
+
+  @Test
+  void boundsFetchesInFlight() throws Exception {
+    try (BatchingStockQuotesService batching = new BatchingStockQuotesService(provider, 2)) {
+      Map<String, List<Candle>> quotes = batching.getStockQuotesAsync(
+          requests("A", "B", "C", "D", "E", "F", "a")).get(5, TimeUnit.SECONDS);
+
+      assertEquals(6, quotes.size());
+      assertEquals(6, calls.get());
+      assertEquals(2, maxRunning.get());
+    }
+  }
+
+  @Test
+  void closeReleasesTheFetchThreads() throws Exception {
+    BatchingStockQuotesService batching = new BatchingStockQuotesService(provider, 2);
+    batching.getStockQuotesAsync(requests("A", "B")).get(5, TimeUnit.SECONDS);
+
+    batching.close();
+
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (fetchThreads() > 0 && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(0, fetchThreads());
+    assertThrows(RejectedExecutionException.class,
+        () -> batching.startStockQuotes(requests("C")));
+  }
+
+  @Test
+  void reportsFailedSymbolsWithTheirError() throws Exception {
+    try (BatchingStockQuotesService batching = new BatchingStockQuotesService(provider, 4)) {
+      Map<String, CompletableFuture<List<Candle>>> fetches =
+          batching.startStockQuotes(requests("AAPL", "BAD"));
+      assertEquals(1, fetches.get("AAPL").get(5, TimeUnit.SECONDS).size());
+      ExecutionException failure = null;
+      try {
+        fetches.get("BAD").get(5, TimeUnit.SECONDS);
+      } catch (ExecutionException e) {
+        failure = e;
+      }
+      assertTrue(failure.getCause() instanceof StockQuoteNotFoundException,
+          String.valueOf(failure));
+
+      Map<String, List<Candle>> quotes =
+          batching.getStockQuotesAsync(requests("AAPL", "BAD")).get(5, TimeUnit.SECONDS);
+      assertEquals(Collections.singleton("AAPL"), quotes.keySet());
+    }
+  }
+
+  private static long fetchThreads() {
+    return Thread.getAllStackTraces().keySet().stream()
+        .filter(thread -> thread.getName().startsWith("quote-batch-")).count();
+  }
+}
@@ -0,0 +1,104 @@
+
+package com.crio.warmup.stock.quotes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.crio.warmup.stock.dto.Candle;
+import com.crio.warmup.stock.dto.TiingoCandle;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+
+class CachingStockQuotesServiceTest {
+
+  private final List<String> requests = new ArrayList<>();
+
+  private final StockQuotesService provider = (symbol, from, to) -> {
+    requests.add(symbol + ":" + from + ":" + to);
+    List<Candle> candles = new ArrayList<>();
+    for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+      if (date.getDayOfWeek() != DayOfWeek.SATURDAY && date.getDayOfWeek() != DayOfWeek.SUNDAY) {
+        TiingoCandle candle = new TiingoCandle();
+        candle.setDate(date);
+        candle.setOpen((double) date.getDayOfMonth());
+        candle.setClose((double) date.getDayOfMonth() + 0.5);
+        candles.add(candle);
+      }
+    }
+    return candles;
+  };
+
+  @Test
+  void subRangeIsServedFromCache() throws Exception {
+    CachingStockQuotesService service = new CachingStockQuotesService(provider);
+
+    service.getStockQuote("AAPL", LocalDate.parse("2019-01-01"), LocalDate.parse("2019-01-31"));
+    List<Candle> candles = service
+        .getStockQuote("aapl", LocalDate.parse("2019-01-07"), LocalDate.parse("2019-01-11"));
+
+    assertEquals(1, requests.size());
+    assertEquals(5, candles.size());
+    assertEquals(LocalDate.parse("2019-01-07"), candles.get(0).getDate());
+    assertEquals(LocalDate.parse("2019-01-11"), candles.get(4).getDate());
+  }
+
+  @Test
+  void onlyMissingGapsAreFetched() throws Exception {
+    CachingStockQuotesService service = new CachingStockQuotesService(provider);
+
+    service.getStockQuote("AAPL", LocalDate.parse("2019-01-10"), LocalDate.parse("2019-01-20"));
+    service.getStockQuote("AAPL", LocalDate.parse("2019-02-01"), LocalDate.parse("2019-02-10"));
+    List<Candle> candles = service
+        .getStockQuote("AAPL", LocalDate.parse("2019-01-01"), LocalDate.parse("2019-02-15"));
+
+    assertEquals(List.of("AAPL:2019-01-10:2019-01-20", "AAPL:2019-02-01:2019-02-10",
+        "AAPL:2019-01-01:2019-01-09", "AAPL:2019-01-21:2019-01-31",
+        "AAPL:2019-02-11:2019-02-15"), requests);
+    assertEquals(34, candles.size());
+
+    service.getStockQuote("AAPL", LocalDate.parse("2019-01-05"), LocalDate.parse("2019-02-12"));
+    assertEquals(5, requests.size());
+  }
+
+  @Test
+  void leastRecentlyUsedSymbolIsEvicted() throws Exception {
+    CachingStockQuotesService service = new CachingStockQuotesService(provider, 10);
+
+    service.getStockQuote("AAPL", LocalDate.parse("2019-01-07"), LocalDate.parse("2019-01-11"));
+    service.getStockQuote("MSFT", LocalDate.parse("2019-01-07"), LocalDate.parse("2019-01-11"));
+    service.getStockQuote("AAPL", LocalDate.parse("2019-01-07"), LocalDate.parse("2019-01-11"));
+    service.getStockQuote("GOOGL", LocalDate.parse("2019-01-07"), LocalDate.parse("2019-01-11"));
+
+    assertEquals(2, service.getCachedSymbolCount());
+    assertEquals(10, service.getCachedCandleCount());
+    service.getStockQuote("AAPL", LocalDate.parse("2019-01-07"), LocalDate.parse("2019-01-11"));
+    service.getStockQuote("MSFT", LocalDate.parse("2019-01-07"), LocalDate.parse("2019-01-11"));
+    assertEquals(4, requests.size());
+  }
+
+  @Test
+  void historyInvalidatedDuringAGapFetchIsFetchedWhole() throws Exception {
+    AtomicReference<CachingStockQuotesService> service = new AtomicReference<>();
+    // Another caller drops the symbol while its gap is being fetched
+    service.set(new CachingStockQuotesService((symbol, from, to) -> {
+      if (from.equals(LocalDate.parse("2019-01-21"))) {
+        service.get().invalidate(symbol);
+      }
+      return provider.getStockQuote(symbol, from, to);
+    }));
+
+    service.get().getStockQuote("AAPL", LocalDate.parse("2019-01-01"),
+        LocalDate.parse("2019-01-20"));
+    List<Candle> candles = service.get().getStockQuote("AAPL", LocalDate.parse("2019-01-01"),
+        LocalDate.parse("2019-01-31"));
+
+    assertEquals(List.of("AAPL:2019-01-01:2019-01-20", "AAPL:2019-01-21:2019-01-31",
+        "AAPL:2019-01-01:2019-01-31"), requests);
+    assertEquals(23, candles.size());
+    assertEquals(LocalDate.parse("2019-01-01"), candles.get(0).getDate());
+    assertEquals(23, service.get().getCachedCandleCount());
+  }
+}
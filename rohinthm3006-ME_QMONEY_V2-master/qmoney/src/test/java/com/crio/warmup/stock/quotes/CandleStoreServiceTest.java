@@ -0,0 +1,190 @@
+
+package com.crio.warmup.stock.quotes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.crio.warmup.stock.dto.Candle;
+import com.crio.warmup.stock.dto.TiingoCandle;
+import com.crio.warmup.stock.store.CandleRecords;
+import com.crio.warmup.stock.store.CandleStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CandleStoreServiceTest {
+
+  @TempDir
+  Path storeDirectory;
+
+  private final List<String> requests = new ArrayList<>();
+  // Added to every close, to play a provider that has since corrected its prices.
+  private double correction;
+
+  private final StockQuotesService provider = (symbol, from, to) -> {
+    requests.add(symbol + ":" + from + ":" + to);
+    List<Candle> candles = new ArrayList<>();
+    for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+      if (date.getDayOfWeek() != DayOfWeek.SATURDAY && date.getDayOfWeek() != DayOfWeek.SUNDAY) {
+        TiingoCandle candle = new TiingoCandle();
+        candle.setDate(date);
+        candle.setOpen(100.0 + date.getDayOfYear());
+        candle.setHigh(110.0 + date.getDayOfYear());
+        candle.setLow(90.0 + date.getDayOfYear());
+        candle.setClose(105.0 + date.getDayOfYear() + correction);
+        candles.add(candle);
+      }
+    }
+    return candles;
+  };
+
+  @Test
+  void readThroughStoresQuotesAcrossRestarts() throws Exception {
+    CandleStoreService service =
+        new CandleStoreService(new CandleStore(storeDirectory), provider);
+    service.getStockQuote("AAPL", LocalDate.parse("2019-01-01"), LocalDate.parse("2019-12-31"));
+
+    CandleStoreService restarted = new CandleStoreService(new CandleStore(storeDirectory));
+    List<Candle> candles = restarted
+        .getStockQuote("AAPL", LocalDate.parse("2019-03-02"), LocalDate.parse("2019-03-08"));
+
+    assertEquals(1, requests.size());
+    assertEquals(5, candles.size());
+    assertEquals(LocalDate.parse("2019-03-04"), candles.get(0).getDate());
+    assertEquals(163.0, candles.get(0).getOpen(), 0.0);
+    assertEquals(173.0, candles.get(0).getHigh(), 0.0);
+    assertEquals(153.0, candles.get(0).getLow(), 0.0);
+    assertEquals(172.0, candles.get(4).getClose(), 0.0);
+  }
+
+  @Test
+  void onlyRangesOutsideTheStoredCoverageAreFetched() throws Exception {
+    CandleStoreService service =
+        new CandleStoreService(new CandleStore(storeDirectory), provider);
+    service.getStockQuote("MSFT", LocalDate.parse("2019-02-01"), LocalDate.parse("2019-02-28"));
+
+    List<Candle> candles = service
+        .getStockQuote("MSFT", LocalDate.parse("2019-01-15"), LocalDate.parse("2019-03-15"));
+
+    assertEquals(List.of("MSFT:2019-02-01:2019-02-28", "MSFT:2019-01-15:2019-01-31",
+        "MSFT:2019-03-01:2019-03-15"), requests);
+    assertEquals(provider.getStockQuote("MSFT", LocalDate.parse("2019-01-15"),
+        LocalDate.parse("2019-03-15")).size(), candles.size());
+    for (int i = 1; i < candles.size(); i++) {
+      assertTrue(candles.get(i - 1).getDate().isBefore(candles.get(i).getDate()));
+    }
+  }
+
+  @Test
+  void compressedStoreReadsAndRewritesUncompressedFiles() throws Exception {
+    new CandleStoreService(new CandleStore(storeDirectory), provider)
+        .getStockQuote("AAPL", LocalDate.parse("2019-01-01"), LocalDate.parse("2019-06-30"));
+    long uncompressedBytes = Files.size(storeDirectory.resolve("AAPL" + CandleStore.FILE_SUFFIX));
+
+    CandleStoreService service =
+        new CandleStoreService(new CandleStore(storeDirectory, true), provider);
+    List<Candle> candles = service
+        .getStockQuote("AAPL", LocalDate.parse("2019-01-01"), LocalDate.parse("2019-12-31"));
+
+    assertEquals(2, requests.size());
+    assertEquals(provider.getStockQuote("AAPL", LocalDate.parse("2019-01-01"),
+        LocalDate.parse("2019-12-31")).size(), candles.size());
+    assertEquals(169.0, candles.get(45).getClose(), 0.0);
+    assertEquals(LocalDate.parse("2019-03-05"), candles.get(45).getDate());
+    assertTrue(Files.size(storeDirectory.resolve("AAPL" + CandleStore.FILE_SUFFIX))
+        < uncompressedBytes / 2);
+  }
+
+  @Test
+  void refreshAppendsNewDaysAndRevalidatesTheTrailingWindow() throws Exception {
+    CandleStoreService service =
+        new CandleStoreService(new CandleStore(storeDirectory), provider);
+    service.getStockQuote("AAPL", LocalDate.parse("2019-01-01"), LocalDate.parse("2019-06-28"));
+    Path file = storeDirectory.resolve("AAPL" + CandleStore.FILE_SUFFIX);
+    long storedBytes = Files.size(file);
+
+    correction = 1000;
+    assertEquals(10, service.refresh("AAPL", LocalDate.parse("2019-07-05")));
+    assertEquals(0, service.refresh("IBM", LocalDate.parse("2019-07-05")));
+
+    assertEquals("AAPL:2019-06-22:2019-07-05", requests.get(requests.size() - 1));
+    assertEquals(2, requests.size());
+    assertEquals(storedBytes + 5 * CandleRecords.RECORD_BYTES, Files.size(file));
+    List<Candle> candles = new CandleStoreService(new CandleStore(storeDirectory))
+        .getStockQuote("AAPL", LocalDate.parse("2019-06-21"), LocalDate.parse("2019-07-05"));
+    assertEquals(11, candles.size());
+    assertEquals(277.0, candles.get(0).getClose(), 0.0);
+    assertEquals(1280.0, candles.get(1).getClose(), 0.0);
+    assertEquals(LocalDate.parse("2019-07-05"), candles.get(10).getDate());
+  }
+
+  @Test
+  void uncorrectedRefreshesOnlyWritePastTheEndOfTheFile() throws Exception {
+    CandleStore store = new CandleStore(storeDirectory);
+    CandleStoreService service = new CandleStoreService(store, provider);
+    service.getStockQuote("AAPL", LocalDate.parse("2019-01-01"), LocalDate.parse("2019-06-28"));
+    Path file = storeDirectory.resolve("AAPL" + CandleStore.FILE_SUFFIX);
+    byte[] stored = Files.readAllBytes(file);
+
+    assertEquals(10, service.refresh("AAPL", LocalDate.parse("2019-07-05")));
+
+    byte[] refreshed = Files.readAllBytes(file);
+    assertEquals(stored.length + 5 * CandleRecords.RECORD_BYTES, refreshed.length);
+    // Only the coverage in the header changed before the old end of the file
+    for (int i = 24; i < stored.length; i++) {
+      assertEquals(stored[i], refreshed[i], "byte " + i);
+    }
+    assertEquals(LocalDate.parse("2019-07-05"), store.getLastStoredDate("AAPL"));
+  }
+
+  @Test
+  void refreshStartsFromTheLastStoredCandle() throws Exception {
+    // Coverage was requested past the last day the provider had candles for
+    LocalDate lastTradingDay = LocalDate.parse("2019-06-28");
+    StockQuotesService upToLastTradingDay = (symbol, from, to) -> provider.getStockQuote(symbol,
+        from, to.isAfter(lastTradingDay) ? lastTradingDay : to);
+    CandleStoreService service =
+        new CandleStoreService(new CandleStore(storeDirectory), upToLastTradingDay);
+    service.getStockQuote("AAPL", LocalDate.parse("2019-01-01"), LocalDate.parse("2019-07-31"));
+
+    service.refresh("AAPL", LocalDate.parse("2019-08-09"));
+
+    assertEquals("AAPL:2019-06-22:2019-06-28", requests.get(requests.size() - 1));
+  }
+
+  @Test
+  void disjointMergesDoNotCoverTheDaysBetweenThem() throws Exception {
+    // As two first requests for distant ranges would, racing on an empty store
+    CandleStore store = new CandleStore(storeDirectory);
+    LocalDate january = LocalDate.parse("2019-01-01");
+    LocalDate march = LocalDate.parse("2019-03-01");
+    store.merge("IBM", january, january.plusDays(30),
+        provider.getStockQuote("IBM", january, january.plusDays(30)));
+    store.merge("IBM", march, march.plusDays(30),
+        provider.getStockQuote("IBM", march, march.plusDays(30)));
+    requests.clear();
+
+    CandleStore.Coverage coverage = store.getCoverage("IBM");
+    assertEquals(january, coverage.getFrom());
+    assertEquals(january.plusDays(30), coverage.getTo());
+    assertEquals(21, store.read("IBM", march, march.plusDays(30)).size());
+
+    new CandleStoreService(store, provider).getStockQuote("IBM", january, march.plusDays(30));
+    assertEquals(1, requests.size());
+    assertEquals("IBM:2019-02-01:2019-03-31", requests.get(0));
+    assertEquals(march.plusDays(30), store.getCoverage("IBM").getTo());
+  }
+
+  @Test
+  void storeWithoutUpstreamReturnsNothingForUnknownSymbols() throws Exception {
+    CandleStoreService service = new CandleStoreService(new CandleStore(storeDirectory));
+
+    assertTrue(service.getStockQuote("IBM", LocalDate.parse("2019-01-01"),
+        LocalDate.parse("2019-01-31")).isEmpty());
+  }
+}
@@ -0,0 +1,104 @@
+
+package com.crio.warmup.stock.quotes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.crio.warmup.stock.dto.Candle;
+import com.crio.warmup.stock.dto.TiingoCandle;
+import com.crio.warmup.stock.exception.StockQuoteServiceException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class CoalescingStockQuotesServiceTest {
+
+  private final AtomicInteger providerCalls = new AtomicInteger();
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  private final StockQuotesService slowProvider = (symbol, from, to) -> {
+    providerCalls.incrementAndGet();
+    try {
+      release.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (symbol.equals("INVALID")) {
+      throw new StockQuoteServiceException("Invalid Response Found");
+    }
+    List<Candle> candles = new ArrayList<>();
+    for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+      TiingoCandle candle = new TiingoCandle();
+      candle.setDate(date);
+      candle.setOpen((double) date.getDayOfYear());
+      candles.add(candle);
+    }
+    return candles;
+  };
+
+  @Test
+  void concurrentRequestsWithinTheWidestRangeShareOneFetch() throws Exception {
+    CoalescingStockQuotesService service = new CoalescingStockQuotesService(slowProvider);
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      Future<List<Candle>> widest = executor.submit(() -> service
+          .getStockQuote("AAPL", LocalDate.parse("2019-01-01"), LocalDate.parse("2019-12-31")));
+      awaitInFlight(service, 1);
+      Future<List<Candle>> narrower = executor.submit(() -> service
+          .getStockQuote("AAPL", LocalDate.parse("2019-06-01"), LocalDate.parse("2019-12-31")));
+      Future<List<Candle>> narrowest = executor.submit(() -> service
+          .getStockQuote("AAPL", LocalDate.parse("2019-06-03"), LocalDate.parse("2019-06-05")));
+      Thread.sleep(100);
+      release.countDown();
+
+      assertEquals(365, widest.get().size());
+      assertEquals(214, narrower.get().size());
+      assertEquals(LocalDate.parse("2019-06-01"), narrower.get().get(0).getDate());
+      assertEquals(3, narrowest.get().size());
+      assertEquals(1, providerCalls.get());
+      assertEquals(0, service.getInFlightCount());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void waitersReceiveTheLeaderFailure() throws Exception {
+    CoalescingStockQuotesService service = new CoalescingStockQuotesService(slowProvider);
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<List<Candle>> leader = executor.submit(() -> service
+          .getStockQuote("INVALID", LocalDate.parse("2019-01-01"), LocalDate.parse("2019-12-31")));
+      awaitInFlight(service, 1);
+      Future<List<Candle>> waiter = executor.submit(() -> service
+          .getStockQuote("INVALID", LocalDate.parse("2019-02-01"), LocalDate.parse("2019-03-01")));
+      Thread.sleep(100);
+      release.countDown();
+
+      ExecutionException leaderFailure = assertThrows(ExecutionException.class, leader::get);
+      ExecutionException waiterFailure = assertThrows(ExecutionException.class, waiter::get);
+      assertTrue(leaderFailure.getCause() instanceof StockQuoteServiceException);
+      assertTrue(waiterFailure.getCause() instanceof StockQuoteServiceException);
+      assertEquals(1, providerCalls.get());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static void awaitInFlight(CoalescingStockQuotesService service, int count)
+      throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (service.getInFlightCount() < count && System.nanoTime() < deadline) {
+      Thread.sleep(5);
+    }
+  }
+}
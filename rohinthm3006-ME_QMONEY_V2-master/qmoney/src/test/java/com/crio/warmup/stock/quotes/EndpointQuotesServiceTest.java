@@ -0,0 +1,104 @@
+package com.crio.warmup.stock.quotes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.crio.warmup.stock.dto.AnnualizedReturn;
+import com.crio.warmup.stock.dto.Candle;
+import com.crio.warmup.stock.dto.PortfolioTrade;
+import com.crio.warmup.stock.dto.TiingoCandle;
+import com.crio.warmup.stock.portfolio.PortfolioManagerImpl;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class EndpointQuotesServiceTest {
+
+  private final AtomicInteger providerCalls = new AtomicInteger();
+  private final AtomicInteger candlesServed = new AtomicInteger();
+  private final LocalDate endDate = LocalDate.parse("2019-12-12");
+  // Trading was suspended for a month, longer than the first window.
+  private final LocalDate haltedFrom = LocalDate.parse("2009-01-01");
+  private final LocalDate haltedTo = LocalDate.parse("2009-02-01");
+
+  // One candle per weekday, none during the halt.
+  private final StockQuotesService provider = (symbol, from, to) -> {
+    providerCalls.incrementAndGet();
+    List<Candle> candles = new ArrayList<>();
+    for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+      if (date.getDayOfWeek() == DayOfWeek.SATURDAY || date.getDayOfWeek() == DayOfWeek.SUNDAY
+          || (!date.isBefore(haltedFrom) && date.isBefore(haltedTo))) {
+        continue;
+      }
+      TiingoCandle candle = new TiingoCandle();
+      candle.setDate(date);
+      candle.setOpen(100.0 + date.toEpochDay() % 1000);
+      candle.setClose(101.0 + date.toEpochDay() % 1000);
+      candles.add(candle);
+    }
+    candlesServed.addAndGet(candles.size());
+    return candles;
+  };
+
+  @Test
+  void fetchesOnlyTheEndsOfALongRange() throws Exception {
+    EndpointQuotesService service = new EndpointQuotesService(provider);
+
+    // 2009-12-12 is a Saturday and 2019-12-12 a Thursday
+    List<Candle> candles =
+        service.getStockQuote("AAPL", LocalDate.parse("2009-12-12"), endDate);
+
+    assertEquals(2, candles.size());
+    assertEquals(LocalDate.parse("2009-12-14"), candles.get(0).getDate());
+    assertEquals(endDate, candles.get(1).getDate());
+    assertEquals(2, providerCalls.get());
+    assertTrue(candlesServed.get() < 15, candlesServed.get() + " candles");
+  }
+
+  @Test
+  void widensTheWindowOverGapsAndRemembersTheEnd() throws Exception {
+    EndpointQuotesService service = new EndpointQuotesService(provider);
+
+    List<Candle> halted = service.getStockQuote("AAPL", haltedFrom, endDate);
+    assertEquals(haltedTo.plusDays(1), halted.get(0).getDate());
+    int callsForFirstLot = providerCalls.get();
+
+    service.getStockQuote("aapl", LocalDate.parse("2012-06-01"), endDate);
+    assertEquals(callsForFirstLot + 1, providerCalls.get());
+  }
+
+  @Test
+  void endpointModeMatchesFullSeriesReturns() throws Exception {
+    List<PortfolioTrade> trades = Arrays.asList(
+        new PortfolioTrade("AAPL", 10, LocalDate.parse("2008-03-03")),
+        new PortfolioTrade("AAPL", 10, haltedFrom),
+        new PortfolioTrade("MSFT", 5, LocalDate.parse("2019-12-02")));
+    List<AnnualizedReturn> full =
+        new PortfolioManagerImpl(provider).calculateAnnualizedReturn(trades, endDate);
+    int fullSeriesCandles = candlesServed.get();
+
+    PortfolioManagerImpl endpoints = new PortfolioManagerImpl(provider);
+    endpoints.setFetchMode(PortfolioManagerImpl.FetchMode.ENDPOINTS);
+    candlesServed.set(0);
+    List<List<AnnualizedReturn>> results = Arrays.asList(
+        endpoints.calculateAnnualizedReturn(trades, endDate),
+        endpoints.calculateAnnualizedReturnParallel(trades, endDate, 3),
+        endpoints.calculateAnnualizedReturnAsync(trades, endDate).get(5, TimeUnit.SECONDS));
+
+    // All three runs together still fetch a fraction of one full-series run
+    assertTrue(candlesServed.get() * 10 < fullSeriesCandles,
+        candlesServed.get() + " vs " + fullSeriesCandles + " candles");
+    for (List<AnnualizedReturn> result : results) {
+      for (int i = 0; i < full.size(); i++) {
+        assertEquals(full.get(i).getSymbol(), result.get(i).getSymbol());
+        assertEquals(full.get(i).getAnnualizedReturn(), result.get(i).getAnnualizedReturn(),
+            1e-12);
+      }
+    }
+  }
+}
@@ -0,0 +1,175 @@
+package com.crio.warmup.stock.quotes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.crio.warmup.stock.dto.Candle;
+import com.crio.warmup.stock.dto.TiingoCandle;
+import com.crio.warmup.stock.exception.StockQuoteNotFoundException;
+import com.crio.warmup.stock.exception.StockQuoteRateLimitException;
+import com.crio.warmup.stock.exception.StockQuoteServiceException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
+
+class FailoverStockQuotesServiceTest {
+
+  private final AtomicInteger primaryCalls = new AtomicInteger();
+  private final AtomicBoolean primaryDown = new AtomicBoolean(true);
+  private final LocalDate from = LocalDate.parse("2019-01-02");
+  private final LocalDate to = LocalDate.parse("2019-01-04");
+
+  private final StockQuotesService primary = (symbol, from, to) -> {
+    primaryCalls.incrementAndGet();
+    if (primaryDown.get()) {
+      throw new StockQuoteServiceException("Tiingo timed out");
+    }
+    return candle(100.0);
+  };
+
+  private final StockQuotesService secondary = (symbol, from, to) -> candle(200.0);
+
+  private static List<Candle> candle(double open) {
+    TiingoCandle candle = new TiingoCandle();
+    candle.setDate(LocalDate.parse("2019-01-02"));
+    candle.setOpen(open);
+    return Collections.singletonList(candle);
+  }
+
+  private CircuitBreaker breaker(Duration openDuration) {
+    return new CircuitBreaker(10, 4, 0.5, Duration.ofSeconds(1), openDuration);
+  }
+
+  @Test
+  void openCircuitSkipsTheProviderUntilAProbeSucceeds() throws Exception {
+    CircuitBreaker primaryBreaker = breaker(Duration.ofMillis(100));
+    FailoverStockQuotesService service = new FailoverStockQuotesService(Arrays.asList(
+        new FailoverStockQuotesService.Provider("tiingo", primary, primaryBreaker),
+        new FailoverStockQuotesService.Provider("alphavantage", secondary,
+            breaker(Duration.ofMillis(100)))));
+
+    for (int i = 0; i < 10; i++) {
+      assertEquals(200.0, service.getStockQuote("AAPL", from, to).get(0).getOpen(), 0.0);
+    }
+    assertEquals(4, primaryCalls.get());
+    assertEquals(CircuitBreaker.State.OPEN, primaryBreaker.getState());
+
+    primaryDown.set(false);
+    Thread.sleep(120);
+    assertEquals(100.0, service.getStockQuote("AAPL", from, to).get(0).getOpen(), 0.0);
+    assertEquals(CircuitBreaker.State.CLOSED, primaryBreaker.getState());
+  }
+
+  @Test
+  void halfOpenLetsOnlyOneProbeThroughAndReopensOnFailure() throws Exception {
+    CircuitBreaker circuitBreaker = breaker(Duration.ofMillis(50));
+    for (int i = 0; i < 4; i++) {
+      circuitBreaker.onFailure(0);
+    }
+    assertFalse(circuitBreaker.allowRequest());
+
+    Thread.sleep(60);
+    assertTrue(circuitBreaker.allowRequest());
+    assertFalse(circuitBreaker.allowRequest());
+    assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+    circuitBreaker.onFailure(0);
+    assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+  }
+
+  @Test
+  void slowCallsCountAsFailures() {
+    CircuitBreaker circuitBreaker = breaker(Duration.ofSeconds(30));
+    for (int i = 0; i < 4; i++) {
+      circuitBreaker.onSuccess(TimeUnit.SECONDS.toNanos(2));
+    }
+    assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+  }
+
+  @Test
+  void failsFastWhenEveryCircuitIsOpen() throws Exception {
+    CircuitBreaker open = breaker(Duration.ofSeconds(30));
+    for (int i = 0; i < 4; i++) {
+      open.onFailure(0);
+    }
+    FailoverStockQuotesService service = new FailoverStockQuotesService(Collections.singletonList(
+        new FailoverStockQuotesService.Provider("tiingo", primary, open)));
+
+    StockQuoteServiceException e = assertThrows(StockQuoteServiceException.class,
+        () -> service.getStockQuote("AAPL", from, to));
+    assertEquals("No healthy quote provider for AAPL", e.getMessage());
+    assertEquals(0, primaryCalls.get());
+
+    primaryDown.set(false);
+    FailoverStockQuotesService healthy = new FailoverStockQuotesService(Collections.singletonList(
+        new FailoverStockQuotesService.Provider("tiingo", primary,
+            breaker(Duration.ofSeconds(30)))));
+    assertEquals(100.0,
+        healthy.getStockQuoteAsync("AAPL", from, to).get().get(0).getOpen(), 0.0);
+  }
+
+  @Test
+  void unknownSymbolsAreRethrownWithoutFailingOver() {
+    AtomicInteger secondaryCalls = new AtomicInteger();
+    CircuitBreaker primaryBreaker = breaker(Duration.ofSeconds(30));
+    FailoverStockQuotesService service = new FailoverStockQuotesService(Arrays.asList(
+        new FailoverStockQuotesService.Provider("tiingo", (symbol, from, to) -> {
+          throw new StockQuoteNotFoundException("Tiingo does not know symbol " + symbol);
+        }, primaryBreaker),
+        new FailoverStockQuotesService.Provider("alphavantage", (symbol, from, to) -> {
+          secondaryCalls.incrementAndGet();
+          return candle(200.0);
+        }, breaker(Duration.ofSeconds(30)))));
+
+    for (int i = 0; i < 10; i++) {
+      assertThrows(StockQuoteNotFoundException.class,
+          () -> service.getStockQuote("CISCO", from, to));
+    }
+    ExecutionException async = assertThrows(ExecutionException.class,
+        () -> service.getStockQuoteAsync("CISCO", from, to).get());
+    assertTrue(async.getCause() instanceof StockQuoteNotFoundException);
+    assertEquals(0, secondaryCalls.get());
+    assertEquals(CircuitBreaker.State.CLOSED, primaryBreaker.getState());
+    assertEquals(0.0, primaryBreaker.getFailureRate(), 0.0);
+  }
+
+  @Test
+  void rejectedRequestsFailOverWithoutOpeningTheCircuit() throws Exception {
+    CircuitBreaker primaryBreaker = breaker(Duration.ofSeconds(30));
+    AtomicInteger calls = new AtomicInteger();
+    FailoverStockQuotesService service = new FailoverStockQuotesService(Arrays.asList(
+        new FailoverStockQuotesService.Provider("tiingo", (symbol, from, to) -> {
+          if (calls.incrementAndGet() % 2 == 0) {
+            throw new StockQuoteRateLimitException("TooManyRequests: 429 for " + symbol);
+          }
+          throw new StockQuoteServiceException("Tiingo returned status 401 for " + symbol,
+              new RestClientResponseException("Unauthorized", 401, "", null, null, null));
+        }, primaryBreaker),
+        new FailoverStockQuotesService.Provider("alphavantage", secondary,
+            breaker(Duration.ofSeconds(30)))));
+
+    for (int i = 0; i < 10; i++) {
+      assertEquals(200.0, service.getStockQuote("AAPL", from, to).get(0).getOpen(), 0.0);
+      assertEquals(200.0, service.getStockQuoteAsync("AAPL", from, to).get().get(0).getOpen(),
+          0.0);
+    }
+    assertEquals(20, calls.get());
+    assertEquals(CircuitBreaker.State.CLOSED, primaryBreaker.getState());
+
+    assertTrue(FailoverStockQuotesService.isProviderFailure(new StockQuoteServiceException(
+        "Tiingo returned status 503", new RestClientResponseException("Unavailable", 503, "",
+            null, null, null))));
+    assertTrue(FailoverStockQuotesService.isProviderFailure(
+        new ResourceAccessException("Connection refused")));
+  }
+}
@@ -0,0 +1,138 @@
+package com.crio.warmup.stock.quotes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.crio.warmup.stock.dto.AlphavantageCandle;
+import com.crio.warmup.stock.dto.Candle;
+import com.crio.warmup.stock.dto.DailyCandle;
+import com.crio.warmup.stock.dto.TiingoCandle;
+import com.crio.warmup.stock.exception.StockQuoteServiceException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class HedgingStockQuotesServiceTest {
+
+  private final ScheduledExecutorService io = Executors.newScheduledThreadPool(2);
+  private final AtomicInteger secondaryCalls = new AtomicInteger();
+  private final LocalDate from = LocalDate.parse("2019-01-02");
+  private final LocalDate to = LocalDate.parse("2019-01-04");
+
+  @AfterEach
+  void tearDown() {
+    io.shutdownNow();
+  }
+
+  // Answers with one Tiingo candle after the given delay.
+  private AsyncQuotes tiingo(long delayMillis) {
+    return (symbol, from, to) -> {
+      TiingoCandle candle = new TiingoCandle();
+      candle.setDate(from);
+      candle.setOpen(100.0);
+      candle.setClose(110.0);
+      return respond(Collections.singletonList(candle), delayMillis);
+    };
+  }
+
+  // Answers with one Alphavantage candle after the given delay.
+  private AsyncQuotes alphavantage(long delayMillis) {
+    return (symbol, from, to) -> {
+      secondaryCalls.incrementAndGet();
+      AlphavantageCandle candle = new AlphavantageCandle();
+      candle.setDate(from);
+      candle.setOpen(200.0);
+      candle.setClose(220.0);
+      return respond(Collections.singletonList(candle), delayMillis);
+    };
+  }
+
+  private AsyncQuotes failing(String message) {
+    return (symbol, from, to) -> {
+      secondaryCalls.incrementAndGet();
+      return CompletableFuture.failedFuture(new StockQuoteServiceException(message));
+    };
+  }
+
+  private CompletableFuture<List<Candle>> respond(List<Candle> candles, long delayMillis) {
+    CompletableFuture<List<Candle>> response = new CompletableFuture<>();
+    io.schedule(() -> response.complete(candles), delayMillis, TimeUnit.MILLISECONDS);
+    return response;
+  }
+
+  @Test
+  void slowPrimaryIsHedgedAndTheFasterAnswerWins() throws Exception {
+    HedgingStockQuotesService service = new HedgingStockQuotesService(tiingo(1000),
+        alphavantage(10), HedgingStockQuotesService.DEFAULT_PERCENTILE, Duration.ofMillis(50));
+
+    long start = System.nanoTime();
+    List<Candle> candles = service.getStockQuote("AAPL", from, to);
+    long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+    assertTrue(elapsedMillis < 500, elapsedMillis + "ms");
+    assertTrue(candles.get(0) instanceof DailyCandle);
+    assertEquals(200.0, candles.get(0).getOpen(), 0.0);
+    assertEquals(1, service.getHedgesFired());
+    assertEquals(1, service.getHedgesWon());
+  }
+
+  @Test
+  void fastPrimaryIsNotHedgedAndTheDelayFollowsItsLatency() throws Exception {
+    HedgingStockQuotesService service = new HedgingStockQuotesService(tiingo(5),
+        alphavantage(5), 0.9, Duration.ofSeconds(1));
+
+    for (int i = 0; i < 25; i++) {
+      assertEquals(100.0, service.getStockQuote("AAPL", from, to).get(0).getOpen(), 0.0);
+    }
+
+    assertEquals(0, secondaryCalls.get());
+    assertEquals(25, service.getRequestCount());
+    assertEquals(0, service.getHedgesFired());
+    assertTrue(service.getHedgeDelay().toMillis() < 200, service.getHedgeDelay().toString());
+  }
+
+  @Test
+  void failedPrimaryFailsOverAndFailsOnlyWhenBothFail() throws Exception {
+    HedgingStockQuotesService failover = new HedgingStockQuotesService(
+        failing("primary down"), alphavantage(10));
+    assertEquals(200.0, failover.getStockQuote("AAPL", from, to).get(0).getOpen(), 0.0);
+
+    HedgingStockQuotesService bothDown = new HedgingStockQuotesService(
+        failing("primary down"), failing("secondary down"));
+    StockQuoteServiceException e = assertThrows(StockQuoteServiceException.class,
+        () -> bothDown.getStockQuote("AAPL", from, to));
+    assertEquals("primary down", e.getMessage());
+  }
+
+  @Test
+  void providersThrowingInsteadOfFailingTheFutureAreFailedOver() throws Exception {
+    AsyncQuotes throwing = (symbol, from, to) -> {
+      throw new StockQuoteServiceException("No API keys configured");
+    };
+    HedgingStockQuotesService failover = new HedgingStockQuotesService(throwing,
+        alphavantage(10));
+    assertEquals(200.0, failover.getStockQuote("AAPL", from, to).get(0).getOpen(), 0.0);
+
+    HedgingStockQuotesService bothThrow = new HedgingStockQuotesService(throwing, throwing);
+    StockQuoteServiceException e = assertThrows(StockQuoteServiceException.class,
+        () -> bothThrow.getStockQuote("AAPL", from, to));
+    assertEquals("No API keys configured", e.getMessage());
+  }
+
+  private interface AsyncQuotes extends StockQuotesService, AsyncStockQuotesService {
+
+    @Override
+    default List<Candle> getStockQuote(String symbol, LocalDate from, LocalDate to) {
+      return getStockQuoteAsync(symbol, from, to).join();
+    }
+  }
+}
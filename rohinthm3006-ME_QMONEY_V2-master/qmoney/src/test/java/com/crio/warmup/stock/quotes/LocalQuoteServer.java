@@ -0,0 +1,297 @@
+package com.crio.warmup.stock.quotes;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Stand-in for the Tiingo and Alphavantage daily price APIs, serving synthetic histories over
+ * real HTTP from the JDK's built-in server. Pointing {@code tiingo.api.baseUrl} and
+ * {@code alphavantage.api.baseUrl} at {@link #getBaseUrl()} exercises the providers' whole
+ * HTTP and JSON path, under any load, without the real APIs or their quotas.
+ *
+ * <p>Tiingo's {@code /tiingo/daily/{symbol}/prices} and Alphavantage's
+ * {@code /query?function=TIME_SERIES_DAILY} are answered with every field the real APIs send, so
+ * decoding costs the same, and gzip is used when the client accepts it. Every symbol exists and
+ * trades on weekdays from {@code firstDate} on. Its prices are a function of the symbol and date
+ * only, so the two formats and any overlapping ranges agree.
+ *
+ * <p>The server counts requests, response bytes and client connections, for measuring
+ * throughput and connection reuse. {@code ./gradlew localQuoteServer} serves on a fixed port from
+ * the command line, for load tests from outside the test suite.
+ */
+public class LocalQuoteServer implements AutoCloseable {
+
+  public static final LocalDate DEFAULT_FIRST_DATE = LocalDate.parse("2000-01-03");
+
+  private static final String TIINGO_PREFIX = "/tiingo/daily/";
+  private static final String TIINGO_SUFFIX = "/prices";
+  private static final int ALPHAVANTAGE_COMPACT_SIZE = 100;
+
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final LocalDate firstDate;
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong bytesSent = new AtomicLong();
+  private final Set<InetSocketAddress> connections = ConcurrentHashMap.newKeySet();
+
+  private LocalQuoteServer(HttpServer server, int threads, LocalDate firstDate) {
+    this.server = server;
+    this.executor = Executors.newFixedThreadPool(threads);
+    this.firstDate = firstDate;
+    server.createContext(TIINGO_PREFIX, this::serveTiingo);
+    server.createContext("/query", this::serveAlphavantage);
+    server.setExecutor(executor);
+    server.start();
+  }
+
+  // Serves on an ephemeral loopback port with a thread per processor.
+  public static LocalQuoteServer start() throws IOException {
+    return start(0, Runtime.getRuntime().availableProcessors(), DEFAULT_FIRST_DATE);
+  }
+
+  public static LocalQuoteServer start(int port, int threads, LocalDate firstDate)
+      throws IOException {
+    HttpServer server =
+        HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+    return new LocalQuoteServer(server, threads, firstDate);
+  }
+
+  public String getBaseUrl() {
+    return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+  }
+
+  public long getRequestCount() {
+    return requests.get();
+  }
+
+  // Response body bytes as sent, after any compression.
+  public long getBytesSent() {
+    return bytesSent.get();
+  }
+
+  // Distinct client sockets seen; fewer than requests means connections were reused.
+  public int getConnectionCount() {
+    return connections.size();
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  private void serveTiingo(HttpExchange exchange) throws IOException {
+    String path = exchange.getRequestURI().getPath();
+    Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+    if (!path.endsWith(TIINGO_SUFFIX)) {
+      respond(exchange, 404, null);
+      return;
+    }
+    LocalDate today = LocalDate.now();
+    LocalDate from;
+    LocalDate to;
+    try {
+      from = LocalDate.parse(query.getOrDefault("startDate", firstDate.toString()));
+      to = LocalDate.parse(query.getOrDefault("endDate", today.toString()));
+    } catch (DateTimeParseException e) {
+      respond(exchange, 400, null);
+      return;
+    }
+    String symbol = path.substring(TIINGO_PREFIX.length(), path.length() - TIINGO_SUFFIX.length());
+    respond(exchange, 200, json -> {
+      json.writeStartArray();
+      for (LocalDate date = max(from, firstDate); !date.isAfter(to) && !date.isAfter(today);
+          date = date.plusDays(1)) {
+        if (!isTradingDay(date)) {
+          continue;
+        }
+        Prices prices = new Prices(symbol, date);
+        json.writeStartObject();
+        json.writeStringField("date", date + "T00:00:00.000Z");
+        json.writeNumberField("close", prices.close);
+        json.writeNumberField("high", prices.high);
+        json.writeNumberField("low", prices.low);
+        json.writeNumberField("open", prices.open);
+        json.writeNumberField("volume", prices.volume);
+        json.writeNumberField("adjClose", prices.close);
+        json.writeNumberField("adjHigh", prices.high);
+        json.writeNumberField("adjLow", prices.low);
+        json.writeNumberField("adjOpen", prices.open);
+        json.writeNumberField("adjVolume", prices.volume);
+        json.writeNumberField("divCash", 0.0);
+        json.writeNumberField("splitFactor", 1.0);
+        json.writeEndObject();
+      }
+      json.writeEndArray();
+    });
+  }
+
+  private void serveAlphavantage(HttpExchange exchange) throws IOException {
+    Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+    String symbol = query.get("symbol");
+    if (!"TIME_SERIES_DAILY".equals(query.get("function")) || symbol == null) {
+      respond(exchange, 200, json -> {
+        json.writeStartObject();
+        json.writeStringField("Error Message", "Invalid API call.");
+        json.writeEndObject();
+      });
+      return;
+    }
+    boolean compact = !"full".equals(query.get("outputsize"));
+    LocalDate today = LocalDate.now();
+    respond(exchange, 200, json -> {
+      json.writeStartObject();
+      json.writeObjectFieldStart("Meta Data");
+      json.writeStringField("1. Information", "Daily Prices (open, high, low, close) and Volumes");
+      json.writeStringField("2. Symbol", symbol);
+      json.writeStringField("3. Last Refreshed", today.toString());
+      json.writeStringField("4. Output Size", compact ? "Compact" : "Full size");
+      json.writeStringField("5. Time Zone", "US/Eastern");
+      json.writeEndObject();
+      json.writeObjectFieldStart("Time Series (Daily)");
+      int written = 0;
+      // Newest first, like Alphavantage
+      for (LocalDate date = today; !date.isBefore(firstDate)
+          && (!compact || written < ALPHAVANTAGE_COMPACT_SIZE); date = date.minusDays(1)) {
+        if (!isTradingDay(date)) {
+          continue;
+        }
+        Prices prices = new Prices(symbol, date);
+        json.writeObjectFieldStart(date.toString());
+        json.writeStringField("1. open", String.valueOf(prices.open));
+        json.writeStringField("2. high", String.valueOf(prices.high));
+        json.writeStringField("3. low", String.valueOf(prices.low));
+        json.writeStringField("4. close", String.valueOf(prices.close));
+        json.writeStringField("5. volume", String.valueOf(prices.volume));
+        json.writeEndObject();
+        written++;
+      }
+      json.writeEndObject();
+      json.writeEndObject();
+    });
+  }
+
+  private void respond(HttpExchange exchange, int status, Body body) throws IOException {
+    requests.incrementAndGet();
+    connections.add(exchange.getRemoteAddress());
+    try {
+      exchange.getRequestBody().readAllBytes();
+      if (body == null) {
+        exchange.sendResponseHeaders(status, -1);
+        return;
+      }
+      String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+      boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream(8192);
+      try (OutputStream out = gzip ? new GZIPOutputStream(bytes) : bytes;
+          JsonGenerator json = QuoteResponses.jsonFactory().createGenerator(out,
+              JsonEncoding.UTF8)) {
+        body.writeTo(json);
+      }
+      exchange.getResponseHeaders().set("Content-Type", "application/json");
+      if (gzip) {
+        exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+      }
+      exchange.sendResponseHeaders(status, bytes.size());
+      bytes.writeTo(exchange.getResponseBody());
+      bytesSent.addAndGet(bytes.size());
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private static Map<String, String> parseQuery(String rawQuery) {
+    Map<String, String> query = new HashMap<>();
+    if (rawQuery == null) {
+      return query;
+    }
+    for (String pair : rawQuery.split("&")) {
+      int equals = pair.indexOf('=');
+      if (equals > 0) {
+        query.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+            URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+      }
+    }
+    return query;
+  }
+
+  private static boolean isTradingDay(LocalDate date) {
+    return date.getDayOfWeek() != DayOfWeek.SATURDAY && date.getDayOfWeek() != DayOfWeek.SUNDAY;
+  }
+
+  private static LocalDate max(LocalDate a, LocalDate b) {
+    return a.isAfter(b) ? a : b;
+  }
+
+  public static void main(String[] args) throws IOException {
+    int port = args.length > 0 ? Integer.parseInt(args[0]) : 8089;
+    LocalQuoteServer server =
+        start(port, Runtime.getRuntime().availableProcessors(), DEFAULT_FIRST_DATE);
+    System.out.println("Serving synthetic quotes at " + server.getBaseUrl());
+    System.out.println("Run with -Dtiingo.api.baseUrl=" + server.getBaseUrl()
+        + " -Dalphavantage.api.baseUrl=" + server.getBaseUrl());
+  }
+
+  private interface Body {
+
+    void writeTo(JsonGenerator json) throws IOException;
+  }
+
+  /**
+   * A symbol's prices on a date: a slow swing around a price derived from the symbol, plus a
+   * daily move hashed from both, in whole cents like real quotes.
+   */
+  private static final class Prices {
+
+    private final double open;
+    private final double high;
+    private final double low;
+    private final double close;
+    private final long volume;
+
+    private Prices(String symbol, LocalDate date) {
+      long day = date.toEpochDay();
+      int seed = symbol.hashCode();
+      double base = 20 + Math.floorMod(seed, 480);
+      double swing = 1 + 0.25 * Math.sin(day / 90.0 + (seed & 0xff));
+      long hash = mix(seed * 31L + day);
+      double move = ((hash & 0xffff) / 65535.0 - 0.5) * 0.04;
+      double spread = ((hash >>> 16 & 0xffff) / 65535.0) * 0.02;
+      this.close = cents(base * swing);
+      this.open = cents(close * (1 + move));
+      this.high = cents(Math.max(open, close) * (1 + spread));
+      this.low = cents(Math.min(open, close) * (1 - spread));
+      this.volume = 100_000 + (hash >>> 32 & 0xfffff);
+    }
+
+    private static double cents(double price) {
+      return Math.round(price * 100) / 100.0;
+    }
+
+    private static long mix(long z) {
+      z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+      z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+      return z ^ (z >>> 31);
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package com.crio.warmup.stock.quotes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.crio.warmup.stock.dto.Candle;
+import java.net.http.HttpClient;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestTemplate;
+
+class LocalQuoteServerTest {
+
+  private LocalQuoteServer server;
+  private HttpClient httpClient;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    server = LocalQuoteServer.start();
+    httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+  }
+
+  @AfterEach
+  void tearDown() {
+    server.close();
+  }
+
+  @Test
+  void providersReadSyntheticHistoriesOverHttp() throws Exception {
+    TiingoService tiingo = new TiingoService(new RestTemplate(), httpClient);
+    tiingo.setBaseUrl(server.getBaseUrl());
+    AlphavantageService alphavantage = new AlphavantageService(new RestTemplate(), httpClient);
+    alphavantage.setBaseUrl(server.getBaseUrl());
+
+    List<Candle> history = tiingo.getStockQuoteAsync("AAPL", LocalDate.parse("2019-01-01"),
+        LocalDate.parse("2019-12-31")).get();
+    assertEquals(261, history.size());
+    assertEquals(LocalDate.parse("2019-01-01"), history.get(0).getDate());
+    assertTrue(history.get(0).getLow() <= history.get(0).getHigh());
+
+    // Both formats agree on the same days
+    LocalDate to = LocalDate.now().minusDays(1);
+    LocalDate from = to.minusDays(30);
+    List<Candle> fromTiingo = tiingo.getStockQuoteAsync("MSFT", from, to).get();
+    List<Candle> fromAlphavantage = alphavantage.getStockQuoteAsync("MSFT", from, to).get();
+    assertEquals(fromTiingo.size(), fromAlphavantage.size());
+    for (int i = 0; i < fromTiingo.size(); i++) {
+      assertEquals(fromTiingo.get(i).getDate(), fromAlphavantage.get(i).getDate());
+      assertEquals(fromTiingo.get(i).getOpen(), fromAlphavantage.get(i).getOpen());
+      assertEquals(fromTiingo.get(i).getClose(), fromAlphavantage.get(i).getClose());
+    }
+  }
+
+  @Test
+  void countsRequestsBytesAndReusedConnections() throws Exception {
+    TiingoService tiingo = new TiingoService(new RestTemplate(), httpClient);
+    tiingo.setBaseUrl(server.getBaseUrl());
+    LocalDate from = LocalDate.parse("2018-01-01");
+    LocalDate to = LocalDate.parse("2018-12-31");
+
+    for (int i = 0; i < 10; i++) {
+      tiingo.getStockQuoteAsync("SYM" + i, from, to).get();
+    }
+    List<CompletableFuture<List<Candle>>> concurrent = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      concurrent.add(tiingo.getStockQuoteAsync("CONC" + i, from, to));
+    }
+    CompletableFuture.allOf(concurrent.toArray(new CompletableFuture[0])).get();
+
+    assertEquals(30, server.getRequestCount());
+    assertTrue(server.getBytesSent() > 0);
+    assertTrue(server.getConnectionCount() < 30, "connections: " + server.getConnectionCount());
+  }
+}
@@ -0,0 +1,114 @@
+package com.crio.warmup.stock.quotes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.crio.warmup.stock.dto.CandleSeries;
+import com.crio.warmup.stock.exception.StockQuoteNotFoundException;
+import com.crio.warmup.stock.exception.StockQuoteRateLimitException;
+import com.crio.warmup.stock.exception.StockQuoteServiceException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class NegativeQuoteCacheTest {
+
+  private final AtomicInteger providerCalls = new AtomicInteger();
+  private final LocalDate from = LocalDate.parse("2019-01-01");
+  private final LocalDate to = LocalDate.parse("2019-12-31");
+
+  private CandleSeries failWith(RuntimeException failure) {
+    providerCalls.incrementAndGet();
+    throw failure;
+  }
+
+  private CandleSeries empty() {
+    providerCalls.incrementAndGet();
+    return CandleSeries.empty();
+  }
+
+  @Test
+  void unknownSymbolsAndSpentQuotaSkipTheProvider() throws Exception {
+    NegativeQuoteCache cache = new NegativeQuoteCache();
+
+    for (int i = 0; i < 3; i++) {
+      assertThrows(StockQuoteNotFoundException.class, () -> cache.fetch("CISCO", from, to,
+          () -> failWith(new StockQuoteNotFoundException("Tiingo does not know symbol CISCO"))));
+      // Timeouts and server errors may go away, so they are always retried
+      assertThrows(StockQuoteServiceException.class, () -> cache.fetch("CSCO", from, to,
+          () -> failWith(new StockQuoteServiceException("Tiingo returned status 503"))));
+    }
+    assertEquals(4, providerCalls.get());
+
+    CompletableFuture<CandleSeries> throttled = cache.fetchAsync("CTS", from, to,
+        () -> CompletableFuture.supplyAsync(() -> failWith(new StockQuoteRateLimitException(
+            "Our standard API call frequency is 5 calls per minute.", Duration.ofMillis(200),
+            null))));
+    ExecutionException e = assertThrows(ExecutionException.class, throttled::get);
+    assertTrue(e.getCause() instanceof StockQuoteRateLimitException);
+    StockQuoteRateLimitException held = assertThrows(StockQuoteRateLimitException.class,
+        () -> cache.fetch("CSCO", from, to, this::empty));
+    assertTrue(held.getRetryAfter().compareTo(Duration.ofMillis(200)) <= 0);
+    assertEquals(5, providerCalls.get());
+
+    Thread.sleep(300);
+    cache.fetch("CSCO", from, to, this::empty);
+    assertEquals(6, providerCalls.get());
+  }
+
+  @Test
+  void emptyPastRangesAreKeptButRecentOnesAreNot() {
+    NegativeQuoteCache cache = new NegativeQuoteCache();
+
+    cache.fetch("AAPL", from, to, this::empty);
+    assertTrue(cache.fetch("aapl", from, to, this::empty).isEmpty());
+    assertTrue(cache.fetch("AAPL", LocalDate.parse("2019-03-01"), LocalDate.parse("2019-03-31"),
+        this::empty).isEmpty());
+    assertEquals(1, providerCalls.get());
+
+    LocalDate today = LocalDate.now();
+    cache.fetch("AAPL", today.minusDays(3), today, this::empty);
+    cache.fetch("AAPL", today.minusDays(3), today, this::empty);
+    assertEquals(3, providerCalls.get());
+  }
+
+  @Test
+  void emptyRangesAreCoalescedCappedAndExpired() throws Exception {
+    NegativeQuoteCache cache = new NegativeQuoteCache(Duration.ofDays(1), Duration.ofMillis(200),
+        Duration.ofMinutes(1));
+
+    cache.fetch("AAPL", from, LocalDate.parse("2019-01-31"), this::empty);
+    cache.fetch("AAPL", LocalDate.parse("2019-02-01"), LocalDate.parse("2019-02-28"),
+        this::empty);
+    assertEquals(1, cache.getEmptyRangeCount("AAPL"));
+    assertTrue(cache.fetch("AAPL", LocalDate.parse("2019-01-15"), LocalDate.parse("2019-02-15"),
+        this::empty).isEmpty());
+    assertEquals(2, providerCalls.get());
+
+    // Disjoint ranges, one a week apart, stop growing at the per-symbol cap
+    for (int i = 0; i < 100; i++) {
+      LocalDate day = LocalDate.parse("2015-01-01").plusWeeks(i);
+      cache.fetch("MSFT", day, day, this::empty);
+    }
+    assertTrue(cache.getEmptyRangeCount("MSFT") <= 16, "" + cache.getEmptyRangeCount("MSFT"));
+
+    Thread.sleep(250);
+    assertEquals(0, cache.getEmptyRangeCount("MSFT"));
+    cache.fetch("AAPL", from, LocalDate.parse("2019-01-31"), this::empty);
+    assertEquals(103, providerCalls.get());
+  }
+
+  @Test
+  void tiingoDoesNotHoldBackOtherSymbolsAfterA429() {
+    NegativeQuoteCache cache = TiingoService.newNegativeCache();
+
+    assertThrows(StockQuoteRateLimitException.class, () -> cache.fetch("AAPL", from, to,
+        () -> failWith(new StockQuoteRateLimitException("TooManyRequests"))));
+    cache.fetch("MSFT", from, to, this::empty);
+    assertEquals(2, providerCalls.get());
+  }
+}
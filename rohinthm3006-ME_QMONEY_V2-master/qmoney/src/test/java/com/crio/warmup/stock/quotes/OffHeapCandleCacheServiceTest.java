@@ -0,0 +1,114 @@
+package com.crio.warmup.stock.quotes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.crio.warmup.stock.dto.Candle;
+import com.crio.warmup.stock.dto.CandleSeries;
+import com.crio.warmup.stock.dto.TiingoCandle;
+import com.crio.warmup.stock.store.OffHeapCandleCache;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class OffHeapCandleCacheServiceTest {
+
+  private final List<String> requests = new ArrayList<>();
+
+  private final StockQuotesService provider = (symbol, from, to) -> {
+    requests.add(symbol + ":" + from + ":" + to);
+    List<Candle> candles = new ArrayList<>();
+    for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+      if (date.getDayOfWeek() != DayOfWeek.SATURDAY && date.getDayOfWeek() != DayOfWeek.SUNDAY) {
+        TiingoCandle candle = new TiingoCandle();
+        candle.setDate(date);
+        candle.setOpen(100.0 + date.getDayOfYear());
+        candle.setHigh(110.0 + date.getDayOfYear());
+        candle.setLow(90.0 + date.getDayOfYear());
+        candle.setClose(105.0 + date.getDayOfYear());
+        candles.add(candle);
+      }
+    }
+    return candles;
+  };
+
+  @Test
+  void servesCachedRangesAndFetchesOnlyTheGaps() throws Exception {
+    OffHeapCandleCacheService service =
+        new OffHeapCandleCacheService(new OffHeapCandleCache(1 << 20), provider);
+    service.getStockQuote("AAPL", LocalDate.parse("2019-02-01"), LocalDate.parse("2019-02-28"));
+
+    List<Candle> candles = service
+        .getStockQuote("aapl", LocalDate.parse("2019-02-04"), LocalDate.parse("2019-02-08"));
+    assertEquals(1, requests.size());
+    assertEquals(5, candles.size());
+    assertEquals(LocalDate.parse("2019-02-04"), candles.get(0).getDate());
+    assertEquals(135.0, candles.get(0).getOpen(), 0.0);
+    assertEquals(145.0, candles.get(0).getHigh(), 0.0);
+    assertEquals(125.0, candles.get(0).getLow(), 0.0);
+    assertEquals(144.0, candles.get(4).getClose(), 0.0);
+
+    CandleSeries widened = service
+        .getCandleSeries("AAPL", LocalDate.parse("2019-01-15"), LocalDate.parse("2019-03-15"));
+    assertEquals(List.of("AAPL:2019-02-01:2019-02-28", "AAPL:2019-01-15:2019-01-31",
+        "AAPL:2019-03-01:2019-03-15"), requests);
+    assertEquals(provider.getStockQuote("AAPL", LocalDate.parse("2019-01-15"),
+        LocalDate.parse("2019-03-15")).size(), widened.size());
+  }
+
+  @Test
+  void disjointFetchesDoNotCoverTheDaysBetweenThem() throws Exception {
+    // As a full fetch racing with another thread's first fetch of a distant range would
+    OffHeapCandleCache cache = new OffHeapCandleCache(1 << 20);
+    LocalDate january = LocalDate.parse("2019-01-01");
+    LocalDate march = LocalDate.parse("2019-03-01");
+    cache.merge("IBM", january, january.plusDays(30), CandleSeries.of(
+        provider.getStockQuote("IBM", january, january.plusDays(30))));
+    CandleSeries merged = cache.merge("IBM", march, march.plusDays(30), CandleSeries.of(
+        provider.getStockQuote("IBM", march, march.plusDays(30))));
+
+    assertEquals(44, merged.size());
+    assertEquals(january.plusDays(30), cache.getCoverage("IBM").getTo());
+    assertNull(cache.get("IBM", january, march.plusDays(30)));
+
+    requests.clear();
+    new OffHeapCandleCacheService(cache, provider)
+        .getStockQuote("IBM", january, march.plusDays(30));
+    assertEquals(List.of("IBM:2019-02-01:2019-03-31"), requests);
+  }
+
+  @Test
+  void evictsLeastRecentlyUsedSymbolsWithinTheByteCeiling() throws Exception {
+    // A year of weekdays takes three blocks, so only one symbol fits
+    OffHeapCandleCache cache = new OffHeapCandleCache(4 * OffHeapCandleCache.BLOCK_BYTES);
+    OffHeapCandleCacheService service = new OffHeapCandleCacheService(cache, provider);
+    LocalDate from = LocalDate.parse("2019-01-01");
+    LocalDate to = LocalDate.parse("2019-12-31");
+
+    service.getStockQuote("AAPL", from, to);
+    service.getStockQuote("MSFT", from, to);
+    assertEquals(1, cache.getCachedSymbolCount());
+    assertTrue(cache.getUsedBytes() <= cache.getMaxBytes());
+
+    service.getStockQuote("MSFT", from, to);
+    service.getStockQuote("AAPL", from, to);
+    assertEquals(List.of("AAPL:" + from + ":" + to, "MSFT:" + from + ":" + to,
+        "AAPL:" + from + ":" + to), requests);
+  }
+
+  @Test
+  void rangesLargerThanTheCacheAreServedWithoutCaching() throws Exception {
+    OffHeapCandleCache cache = new OffHeapCandleCache(OffHeapCandleCache.BLOCK_BYTES);
+    OffHeapCandleCacheService service = new OffHeapCandleCacheService(cache, provider);
+
+    List<Candle> candles = service
+        .getStockQuote("AAPL", LocalDate.parse("2019-01-01"), LocalDate.parse("2019-12-31"));
+
+    assertEquals(261, candles.size());
+    assertEquals(0, cache.getCachedSymbolCount());
+    assertEquals(0, cache.getUsedBytes());
+  }
+}
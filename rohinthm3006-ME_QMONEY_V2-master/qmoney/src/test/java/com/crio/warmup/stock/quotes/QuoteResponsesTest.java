@@ -0,0 +1,51 @@
+package com.crio.warmup.stock.quotes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.crio.warmup.stock.dto.TiingoCandle;
+import com.crio.warmup.stock.exception.StockQuoteServiceException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.ResponseExtractor;
+
+class QuoteResponsesTest {
+
+  private final String candles = "[{\"date\":\"2019-01-02T00:00:00.000Z\",\"open\":1027.2,"
+      + "\"close\":1054.68,\"adjClose\":1054.68},{\"date\":\"2019-01-03T00:00:00.000Z\","
+      + "\"open\":1050.67,\"close\":1025.47,\"adjClose\":1025.47}]";
+
+  private final ObjectReader reader =
+      new ObjectMapper().registerModule(new JavaTimeModule()).readerFor(TiingoCandle[].class);
+
+  private final ResponseExtractor<TiingoCandle[]> extractor =
+      QuoteResponses.decoding(body -> reader.readValue(body));
+
+  @Test
+  void decodesPlainAndGzippedBodies() throws Exception {
+    ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(gzipped)) {
+      gzip.write(candles.getBytes(StandardCharsets.UTF_8));
+    }
+
+    TiingoCandle[] plain = extractor.extractData(new StubClientHttpResponse(candles));
+    TiingoCandle[] inflated = extractor.extractData(
+        new StubClientHttpResponse(gzipped.toByteArray(), "gzip"));
+
+    assertEquals(2, inflated.length);
+    assertEquals(LocalDate.parse("2019-01-03"), inflated[1].getDate());
+    assertEquals(plain[1].getClose(), inflated[1].getClose(), 0.0);
+  }
+
+  @Test
+  void reportsBrokenBodies() {
+    assertThrows(StockQuoteServiceException.class,
+        () -> extractor.extractData(new StubClientHttpResponse("[{\"date\":")));
+  }
+}
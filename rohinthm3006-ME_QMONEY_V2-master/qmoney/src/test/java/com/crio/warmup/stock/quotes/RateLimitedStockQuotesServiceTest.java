@@ -0,0 +1,134 @@
+package com.crio.warmup.stock.quotes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.crio.warmup.stock.dto.Candle;
+import com.crio.warmup.stock.dto.TiingoCandle;
+import com.crio.warmup.stock.exception.StockQuoteRateLimitException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class RateLimitedStockQuotesServiceTest {
+
+  private final AtomicInteger providerCalls = new AtomicInteger();
+  private final LocalDate from = LocalDate.parse("2019-01-02");
+  private final LocalDate to = LocalDate.parse("2019-12-12");
+
+  // Rejects the first `rejections` calls as rate limited, then answers with one candle.
+  private StockQuotesService throttlingProvider(int rejections) {
+    return (symbol, from, to) -> {
+      if (providerCalls.incrementAndGet() <= rejections) {
+        throw new StockQuoteRateLimitException("TooManyRequests: 429 Unknown Status Code",
+            Duration.ofMillis(20), null);
+      }
+      TiingoCandle candle = new TiingoCandle();
+      candle.setDate(from);
+      candle.setOpen(100.0);
+      candle.setClose(110.0);
+      return Collections.singletonList(candle);
+    };
+  }
+
+  @Test
+  void permitsBeyondTheBurstWaitForTheRefill() {
+    RateLimiter rateLimiter = new RateLimiter(20, 2, 0);
+
+    assertEquals(0, rateLimiter.reserve());
+    assertEquals(0, rateLimiter.reserve());
+    long third = rateLimiter.reserve();
+    long fourth = rateLimiter.reserve();
+
+    assertTrue(third > TimeUnit.MILLISECONDS.toNanos(30), third + "ns");
+    assertTrue(fourth - third > TimeUnit.MILLISECONDS.toNanos(40), (fourth - third) + "ns");
+    assertEquals(0.0, rateLimiter.getAvailablePermits(), 0.0);
+    assertTrue(rateLimiter.getWaitTime().toMillis() > 100, rateLimiter.getWaitTime().toString());
+  }
+
+  @Test
+  void exhaustedDailyQuotaFailsWithoutWaiting() {
+    RateLimiter rateLimiter = new RateLimiter(1000, 10, 3);
+    RateLimitedStockQuotesService service =
+        new RateLimitedStockQuotesService(throttlingProvider(0), rateLimiter);
+
+    for (int i = 0; i < 3; i++) {
+      rateLimiter.reserve();
+    }
+    StockQuoteRateLimitException e = assertThrows(StockQuoteRateLimitException.class,
+        () -> service.getStockQuote("AAPL", from, to));
+
+    assertEquals(0, providerCalls.get());
+    assertEquals(0, rateLimiter.getRemainingDailyQuota());
+    assertTrue(e.getRetryAfter().toHours() < 24);
+  }
+
+  @Test
+  void retriesThrottledRequestsAndSlowsDown() throws Exception {
+    RateLimiter rateLimiter = new RateLimiter(100, 10, 0);
+    RateLimitedStockQuotesService service =
+        new RateLimitedStockQuotesService(throttlingProvider(2), rateLimiter);
+
+    long start = System.nanoTime();
+    List<Candle> candles = service.getStockQuote("AAPL", from, to);
+    long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+    assertEquals(1, candles.size());
+    assertEquals(3, providerCalls.get());
+    assertTrue(elapsedMillis >= 40, elapsedMillis + "ms");
+    assertTrue(rateLimiter.getPermitsPerSecond() < 100);
+  }
+
+  @Test
+  void givesUpAfterMaxRetries() {
+    RateLimitedStockQuotesService service = new RateLimitedStockQuotesService(
+        throttlingProvider(Integer.MAX_VALUE), new RateLimiter(100, 10, 0), 2,
+        Duration.ofMillis(1), Duration.ofMillis(5));
+
+    assertThrows(StockQuoteRateLimitException.class,
+        () -> service.getStockQuote("AAPL", from, to));
+    assertEquals(3, providerCalls.get());
+  }
+
+  @Test
+  void retryAfterIsCappedAtTheMaximumBackoff() throws Exception {
+    RateLimiter rateLimiter = new RateLimiter(100, 10, 0);
+    RateLimitedStockQuotesService service = new RateLimitedStockQuotesService(
+        (symbol, from, to) -> {
+          if (providerCalls.incrementAndGet() == 1) {
+            throw new StockQuoteRateLimitException("TooManyRequests", Duration.ofHours(1), null);
+          }
+          return Collections.emptyList();
+        }, rateLimiter, 2, Duration.ofMillis(1), Duration.ofMillis(50));
+
+    long start = System.nanoTime();
+    service.getStockQuote("AAPL", from, to);
+    long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+    assertEquals(2, providerCalls.get());
+    assertTrue(elapsedMillis < 1000, elapsedMillis + "ms");
+    assertTrue(rateLimiter.getWaitTime().toMillis() < 1000);
+  }
+
+  @Test
+  void asyncRequestsRetryWithoutBlockingTheCaller() throws Exception {
+    RateLimitedStockQuotesService service =
+        new RateLimitedStockQuotesService(throttlingProvider(1), new RateLimiter(100, 10, 0));
+
+    assertEquals(1, service.getStockQuoteAsync("AAPL", from, to).get(5, TimeUnit.SECONDS).size());
+    assertEquals(2, providerCalls.get());
+
+    RateLimitedStockQuotesService failing = new RateLimitedStockQuotesService(
+        throttlingProvider(Integer.MAX_VALUE), new RateLimiter(100, 10, 0), 1,
+        Duration.ofMillis(1), Duration.ofMillis(5));
+    ExecutionException e = assertThrows(ExecutionException.class,
+        () -> failing.getStockQuoteAsync("AAPL", from, to).get(5, TimeUnit.SECONDS));
+    assertTrue(e.getCause() instanceof StockQuoteRateLimitException);
+  }
+}
@@ -0,0 +1,122 @@
+package com.crio.warmup.stock.quotes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.crio.warmup.stock.dto.Candle;
+import com.crio.warmup.stock.dto.TiingoCandle;
+import com.crio.warmup.stock.exception.StockQuoteNotFoundException;
+import com.crio.warmup.stock.exception.StockQuoteServiceException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ReplayStockQuotesServiceTest {
+
+  private static final LocalDate FROM = LocalDate.parse("2019-01-01");
+  private static final LocalDate TO = LocalDate.parse("2019-01-31");
+
+  @TempDir
+  Path recordings;
+
+  private final StockQuotesService provider = (symbol, from, to) -> {
+    if (symbol.equals("CISCO")) {
+      throw new StockQuoteNotFoundException("Unknown symbol " + symbol);
+    }
+    List<Candle> candles = new ArrayList<>();
+    for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+      TiingoCandle candle = new TiingoCandle();
+      candle.setDate(date);
+      candle.setOpen(100.0 + date.getDayOfMonth());
+      candle.setHigh(110.25 + date.getDayOfMonth());
+      candle.setLow(90.5 + date.getDayOfMonth());
+      candle.setClose(date.getDayOfMonth() == 15 ? null : 105.1 + date.getDayOfMonth());
+      candles.add(candle);
+    }
+    return candles;
+  };
+
+  private void record() throws Exception {
+    RecordingStockQuotesService recorder = new RecordingStockQuotesService(provider, recordings);
+    recorder.getStockQuote("AAPL", FROM, TO);
+    recorder.getStockQuote("msft", FROM, TO);
+    assertThrows(StockQuoteNotFoundException.class,
+        () -> recorder.getStockQuote("CISCO", FROM, TO));
+  }
+
+  @Test
+  void replaysRecordedResponsesAndFailures() throws Exception {
+    record();
+    ReplayStockQuotesService replay = new ReplayStockQuotesService(recordings);
+
+    List<Candle> candles = replay.getStockQuote("AAPL", FROM, TO);
+    List<Candle> live = provider.getStockQuote("AAPL", FROM, TO);
+    assertEquals(live.size(), candles.size());
+    for (int i = 0; i < live.size(); i++) {
+      assertEquals(live.get(i).getDate(), candles.get(i).getDate());
+      assertEquals(live.get(i).getOpen(), candles.get(i).getOpen());
+      assertEquals(live.get(i).getHigh(), candles.get(i).getHigh());
+      assertEquals(live.get(i).getLow(), candles.get(i).getLow());
+    }
+    assertEquals(106.1, candles.get(0).getClose(), 0.0);
+    assertTrue(candles.get(14).getClose() == null || candles.get(14).getClose().isNaN());
+
+    assertEquals(31, replay.getStockQuoteAsync("MSFT", FROM, TO).get().size());
+    assertThrows(StockQuoteNotFoundException.class, () -> replay.getStockQuote("CISCO", FROM, TO));
+    assertThrows(StockQuoteServiceException.class,
+        () -> replay.getStockQuote("AAPL", FROM, LocalDate.parse("2019-02-28")));
+  }
+
+  // Which requests fail, and how long each takes, is the same on every run with the same seed.
+  private String outcomes(ReplayStockQuotesService replay) throws Exception {
+    List<CompletableFuture<List<Candle>>> calls = new ArrayList<>();
+    for (int i = 0; i < 40; i++) {
+      calls.add(replay.getStockQuoteAsync(i % 2 == 0 ? "AAPL" : "MSFT", FROM, TO));
+    }
+    StringBuilder outcomes = new StringBuilder();
+    for (CompletableFuture<List<Candle>> call : calls) {
+      try {
+        outcomes.append(call.get().size());
+      } catch (ExecutionException e) {
+        outcomes.append(e.getCause().getClass().getSimpleName());
+      }
+      outcomes.append(',');
+    }
+    return outcomes.toString();
+  }
+
+  @Test
+  void injectedFailuresAreReproducible() throws Exception {
+    record();
+    ReplayStockQuotesService replay = new ReplayStockQuotesService(recordings, 7);
+    replay.setLatency(LatencyDistribution.uniform(Duration.ZERO, Duration.ofMillis(5)));
+    replay.setErrorRate(0.2);
+    replay.setRateLimitRate(0.1);
+
+    String first = outcomes(replay);
+    replay.reset();
+    String second = outcomes(replay);
+
+    assertEquals(first, second);
+    assertTrue(first.contains("StockQuoteServiceException"), first);
+    assertTrue(first.contains("31"), first);
+  }
+
+  @Test
+  void latencyFollowsTheConfiguredDistribution() throws Exception {
+    record();
+    ReplayStockQuotesService replay = new ReplayStockQuotesService(recordings);
+    replay.setLatency(LatencyDistribution.fixed(Duration.ofMillis(30)));
+
+    long start = System.nanoTime();
+    replay.getStockQuote("AAPL", FROM, TO);
+    assertTrue(System.nanoTime() - start >= Duration.ofMillis(30).toNanos());
+  }
+}
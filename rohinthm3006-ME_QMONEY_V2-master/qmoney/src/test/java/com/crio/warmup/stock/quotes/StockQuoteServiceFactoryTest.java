@@ -31,4 +31,10 @@ class StockQuoteServiceFactoryTest {
     assertTrue(StockQuoteServiceFactory.INSTANCE.getService("", new RestTemplate())
         instanceof AlphavantageService);
   }
+
+  @Test
+  void getCoalescingService() {
+    assertTrue(StockQuoteServiceFactory.INSTANCE.getCoalescingService("tiingo", new RestTemplate())
+        instanceof CoalescingStockQuotesService);
+  }
 }
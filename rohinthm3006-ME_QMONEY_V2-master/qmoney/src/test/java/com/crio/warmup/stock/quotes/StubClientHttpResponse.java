@@ -0,0 +1,65 @@
+package com.crio.warmup.stock.quotes;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import org.mockito.stubbing.Answer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.ResponseExtractor;
+
+/**
+ * A 200 response with a fixed body, for stubbing {@code RestTemplate#execute} in provider tests.
+ */
+class StubClientHttpResponse implements ClientHttpResponse {
+
+  private final byte[] body;
+  private final HttpHeaders headers = new HttpHeaders();
+
+  StubClientHttpResponse(String body) {
+    this(body.getBytes(StandardCharsets.UTF_8), null);
+  }
+
+  StubClientHttpResponse(byte[] body, String contentEncoding) {
+    this.body = body;
+    if (contentEncoding != null) {
+      headers.set(HttpHeaders.CONTENT_ENCODING, contentEncoding);
+    }
+  }
+
+  // Runs the provider's response extractor over the given body.
+  static Answer<Object> respondingWith(String body) {
+    return invocation -> invocation.<ResponseExtractor<?>>getArgument(3)
+        .extractData(new StubClientHttpResponse(body));
+  }
+
+  @Override
+  public HttpHeaders getHeaders() {
+    return headers;
+  }
+
+  @Override
+  public InputStream getBody() {
+    return new ByteArrayInputStream(body);
+  }
+
+  @Override
+  public HttpStatus getStatusCode() {
+    return HttpStatus.OK;
+  }
+
+  @Override
+  public int getRawStatusCode() {
+    return 200;
+  }
+
+  @Override
+  public String getStatusText() {
+    return "OK";
+  }
+
+  @Override
+  public void close() {
+  }
+}
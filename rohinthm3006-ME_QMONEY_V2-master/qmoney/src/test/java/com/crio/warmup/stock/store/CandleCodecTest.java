@@ -0,0 +1,78 @@
+package com.crio.warmup.stock.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.crio.warmup.stock.dto.CandleSeries;
+import java.nio.ByteBuffer;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import org.junit.jupiter.api.Test;
+
+class CandleCodecTest {
+
+  private final LocalDate start = LocalDate.parse("2015-01-01");
+
+  // Weekday candles quoted in cents, drifting by a few cents a day.
+  private CandleSeries quotedInCents(int days) {
+    CandleSeries.Builder builder = CandleSeries.builder(days);
+    long cents = 15_000;
+    for (int i = 0; i < days; i++) {
+      LocalDate date = start.plusDays(i);
+      if (date.getDayOfWeek() != DayOfWeek.SATURDAY && date.getDayOfWeek() != DayOfWeek.SUNDAY) {
+        cents += (i * 37) % 301 - 150;
+        builder.add(date, cents / 100.0, (cents + 120) / 100.0, (cents - 95) / 100.0,
+            (cents + 40) / 100.0);
+      }
+    }
+    return builder.build();
+  }
+
+  private static void assertSameCandles(CandleSeries expected, CandleSeries actual) {
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.epochDay(i), actual.epochDay(i));
+      assertEquals(Double.doubleToRawLongBits(expected.open(i)),
+          Double.doubleToRawLongBits(actual.open(i)));
+      assertEquals(Double.doubleToRawLongBits(expected.high(i)),
+          Double.doubleToRawLongBits(actual.high(i)));
+      assertEquals(Double.doubleToRawLongBits(expected.low(i)),
+          Double.doubleToRawLongBits(actual.low(i)));
+      assertEquals(Double.doubleToRawLongBits(expected.close(i)),
+          Double.doubleToRawLongBits(actual.close(i)));
+    }
+  }
+
+  @Test
+  void roundTripsDecimalAndArbitraryPricesExactly() {
+    CandleSeries decimal = quotedInCents(3000);
+    byte[] encoded = CandleCodec.encode(decimal);
+    assertSameCandles(decimal, CandleCodec.decode(ByteBuffer.wrap(encoded), 0));
+    assertTrue(encoded.length * 4 < decimal.size() * CandleRecords.RECORD_BYTES,
+        encoded.length + " bytes for " + decimal.size() + " candles");
+
+    // Adjusted prices, a missing price and a negative zero fall back to the XOR encoding
+    CandleSeries arbitrary = CandleSeries.builder(3)
+        .add(start, 148.25999450683594, Double.NaN, 0.1 + 0.2, -0.0)
+        .add(start.plusDays(1), 148.3000030517578, 149.0, 1.0 / 3, 0.0)
+        .add(start.plusDays(4), 1e300, Double.MIN_VALUE, Double.NEGATIVE_INFINITY, 147.5)
+        .build();
+    assertSameCandles(arbitrary, CandleCodec.decode(ByteBuffer.wrap(
+        CandleCodec.encode(arbitrary)), 0));
+    assertEquals(0, CandleCodec.decode(ByteBuffer.wrap(
+        CandleCodec.encode(CandleSeries.empty())), 0).size());
+  }
+
+  @Test
+  void decodesOnlyTheRequestedRange() {
+    CandleSeries series = quotedInCents(3000);
+    byte[] encoded = CandleCodec.encode(series);
+    LocalDate from = LocalDate.parse("2017-03-04");
+    LocalDate to = LocalDate.parse("2017-09-30");
+
+    assertSameCandles(series.slice(from, to), CandleCodec.decode(encoded, from, to));
+    assertSameCandles(series.slice(start, start), CandleCodec.decode(encoded, start, start));
+    assertEquals(0, CandleCodec.decode(encoded, start.minusDays(30), start.minusDays(1)).size());
+    assertEquals(0, CandleCodec.decode(encoded, start.plusYears(20), start.plusYears(21)).size());
+  }
+}
@@ -0,0 +1,152 @@
+package com.crio.warmup.stock.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.crio.warmup.stock.dto.Candle;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class EodSnapshotIngesterTest {
+
+  private static final String[] SYMBOLS = {"AAPL", "MSFT", "GOOGL"};
+
+  @TempDir
+  Path directory;
+
+  // One CSV snapshot per weekday of January 2019, with every symbol on each day.
+  private void writeCsvSnapshots(Path snapshots) throws IOException {
+    Files.createDirectories(snapshots);
+    for (LocalDate date = LocalDate.parse("2019-01-01"); date.getMonthValue() == 1;
+        date = date.plusDays(1)) {
+      if (date.getDayOfWeek() == DayOfWeek.SATURDAY || date.getDayOfWeek() == DayOfWeek.SUNDAY) {
+        continue;
+      }
+      StringBuilder csv = new StringBuilder("Date,Ticker,Open,High,Low,Close,Volume\r\n");
+      for (int s = 0; s < SYMBOLS.length; s++) {
+        double base = 100 * (s + 1) + date.getDayOfMonth();
+        csv.append(date).append(",\"").append(SYMBOLS[s]).append("\",").append(base).append(',')
+            .append(base + 2.25).append(',').append(base - 1.5).append(',').append(base + 0.1)
+            .append(",1000\r\n");
+      }
+      Files.writeString(snapshots.resolve(date + ".csv"), csv);
+    }
+  }
+
+  @Test
+  void csvSnapshotsAreParsedInChunksIntoTheStore() throws Exception {
+    Path snapshots = directory.resolve("snapshots");
+    writeCsvSnapshots(snapshots);
+    CandleStore store = new CandleStore(directory.resolve("store"));
+
+    // Chunks of a few lines each, so rows of a file are spread over several threads
+    long rows = new EodSnapshotIngester(store, 4, 64).ingestDirectory(snapshots);
+
+    assertEquals(23 * SYMBOLS.length, rows);
+    assertEquals(LocalDate.parse("2019-01-01"), store.getCoverage("msft").getFrom());
+    assertEquals(LocalDate.parse("2019-01-31"), store.getCoverage("msft").getTo());
+    List<Candle> candles = store.read("MSFT", LocalDate.parse("2019-01-14"),
+        LocalDate.parse("2019-01-18"));
+    assertEquals(5, candles.size());
+    assertEquals(LocalDate.parse("2019-01-14"), candles.get(0).getDate());
+    assertEquals(214.0, candles.get(0).getOpen(), 0.0);
+    assertEquals(216.25, candles.get(0).getHigh(), 0.0);
+    assertEquals(212.5, candles.get(0).getLow(), 0.0);
+    assertEquals(218.1, candles.get(4).getClose(), 0.0);
+  }
+
+  @Test
+  void jsonLinesExtendWhatIsStored() throws Exception {
+    CandleStore store = new CandleStore(directory.resolve("store"));
+    Path january = directory.resolve("2019-01.jsonl");
+    Files.writeString(january,
+        "{\"symbol\":\"AAPL\",\"date\":\"2019-01-30\",\"open\":154.2,\"high\":158.1,"
+            + "\"low\":153.9,\"close\":\"157.5\",\"adjusted\":{\"close\":157.1}}\n"
+            + "{\"symbol\":\"AAPL\",\"date\":\"2019-01-31\",\"open\":166.1,\"high\":169.0,"
+            + "\"low\":164.6,\"close\":null}\n",
+        StandardCharsets.UTF_8);
+    Path february = directory.resolve("2019-02.ndjson");
+    Files.writeString(february,
+        "{\"ticker\":\"aapl\",\"date\":\"2019-02-04T00:00:00.000Z\",\"open\":167.4,"
+            + "\"high\":171.7,\"low\":167.3,\"close\":171.3}\n",
+        StandardCharsets.UTF_8);
+
+    EodSnapshotIngester ingester = new EodSnapshotIngester(store);
+    assertEquals(2, ingester.ingest(january));
+    assertEquals(1, ingester.ingest(february));
+
+    // The weekend between the two files is covered, as no row means no trading
+    List<Candle> candles = store.read("AAPL", LocalDate.parse("2019-01-30"),
+        LocalDate.parse("2019-02-04"));
+    assertEquals(3, candles.size());
+    assertEquals(157.5, candles.get(0).getClose(), 0.0);
+    assertTrue(candles.get(1).getClose() == null || candles.get(1).getClose().isNaN());
+    assertEquals(171.3, candles.get(2).getClose(), 0.0);
+    assertEquals(LocalDate.parse("2019-02-04"), store.getCoverage("AAPL").getTo());
+  }
+
+  @Test
+  void quotedCommasDoNotShiftColumns() throws Exception {
+    Path file = directory.resolve("2019-01-02.csv");
+    Files.writeString(file, "symbol,\"name, as listed\",date,open,high,low,close\n"
+        + "AAPL,\"Apple, Inc.\",2019-01-02,154.89,158.85,154.23,157.92\n"
+        + "BRK.B,\"Berkshire Hathaway, \"\"B\"\", Inc.\",2019-01-02,201.4,203.8,199.9,202.8\n");
+    CandleStore store = new CandleStore(directory.resolve("store"));
+
+    assertEquals(2, new EodSnapshotIngester(store).ingest(file));
+
+    List<Candle> apple = store.read("AAPL", LocalDate.parse("2019-01-02"),
+        LocalDate.parse("2019-01-02"));
+    assertEquals(154.89, apple.get(0).getOpen(), 0.0);
+    assertEquals(157.92, apple.get(0).getClose(), 0.0);
+    List<Candle> berkshire = store.read("BRK.B", LocalDate.parse("2019-01-02"),
+        LocalDate.parse("2019-01-02"));
+    assertEquals(201.4, berkshire.get(0).getOpen(), 0.0);
+    assertEquals(202.8, berkshire.get(0).getClose(), 0.0);
+  }
+
+  @Test
+  void malformedRowsFailWithTheirPosition() throws Exception {
+    Path file = directory.resolve("bad.csv");
+    Files.writeString(file, "symbol,date,open,high,low,close\nAAPL,2019-01-02,1,2,0.5,abc\n");
+
+    IOException e = assertThrows(IOException.class,
+        () -> new EodSnapshotIngester(new CandleStore(directory.resolve("store"))).ingest(file));
+    assertTrue(e.getMessage().contains("byte 32"), e.getMessage());
+  }
+
+  @Test
+  void failedIngestsCommitNoCoverage() throws Exception {
+    CandleStore store = new CandleStore(directory.resolve("store"));
+    Path january = directory.resolve("2019-01.csv");
+    Files.writeString(january, "symbol,date,open,high,low,close\nAAPL,2019-01-31,1,2,0.5,1.5\n");
+    new EodSnapshotIngester(store).ingest(january);
+
+    // The good rows land in earlier chunks than the bad one
+    Path february = directory.resolve("2019-02.csv");
+    Files.writeString(february, "symbol,date,open,high,low,close\n"
+        + "AAPL,2019-02-01,1,2,0.5,1.5\nMSFT,2019-02-01,1,2,0.5,1.5\n"
+        + "AAPL,2019-02-04,1,2,0.5,1.5\nMSFT,2019-02-04,1,2,0.5,abc\n");
+    assertThrows(IOException.class, () -> new EodSnapshotIngester(store, 1, 16).ingest(february));
+
+    assertEquals(LocalDate.parse("2019-01-31"), store.getCoverage("AAPL").getTo());
+    assertNull(store.getCoverage("MSFT"));
+
+    Files.writeString(february, "symbol,date,open,high,low,close\n"
+        + "AAPL,2019-02-01,1,2,0.5,1.5\nMSFT,2019-02-01,1,2,0.5,1.5\n");
+    new EodSnapshotIngester(store, 1, 16).ingest(february);
+    assertEquals(LocalDate.parse("2019-02-01"), store.getCoverage("AAPL").getTo());
+    assertEquals(LocalDate.parse("2019-02-01"), store.getCoverage("MSFT").getFrom());
+    assertEquals(2, store.read("AAPL", LocalDate.parse("2019-01-31"),
+        LocalDate.parse("2019-02-01")).size());
+  }
+}